@@ -22,6 +22,10 @@ dependencies {
     implementation("org.springframework.boot:spring-boot-starter-data-jpa")
     implementation("org.springframework.boot:spring-boot-starter-validation")
     implementation("org.springframework.boot:spring-boot-starter-security")
+    implementation("org.springframework.boot:spring-boot-starter-actuator")
+    // AspectJ support for the @Timed annotations on the cart and checkout services
+    implementation("org.springframework.boot:spring-boot-starter-aop")
+    runtimeOnly("io.micrometer:micrometer-registry-prometheus")
 
     // Development and runtime dependencies
     developmentOnly("org.springframework.boot:spring-boot-devtools")
@@ -29,6 +33,8 @@ dependencies {
 
     // Testing dependencies
     testImplementation("org.springframework.boot:spring-boot-starter-test")
+    // Gradle no longer supplies the JUnit Platform launcher itself
+    testRuntimeOnly("org.junit.platform:junit-platform-launcher")
 }
 
 // Application configuration
@@ -59,6 +65,118 @@ tasks.named<Javadoc>("javadoc").configure {
     exclude("app/internal/*")
 }
 
+// JMH micro-benchmarks live in their own source set (src/jmh/java) and run against the embedded H2 database.
+// Similar to a separate BenchmarkDotNet console project referencing the web project.
+val jmh: SourceSet by sourceSets.creating {
+    compileClasspath += sourceSets.main.get().output
+    runtimeClasspath += sourceSets.main.get().output
+}
+configurations["jmhImplementation"].extendsFrom(configurations.implementation.get())
+configurations["jmhRuntimeOnly"].extendsFrom(configurations.runtimeOnly.get())
+
+dependencies {
+    "jmhImplementation"("org.openjdk.jmh:jmh-core:1.37")
+    "jmhAnnotationProcessor"("org.openjdk.jmh:jmh-generator-annprocess:1.37")
+}
+
+// Runs the benchmarks with the GC profiler and writes JSON results that can be compared between releases.
+// ./gradlew jmh -PjmhIncludes=CartBenchmark -PjmhArgs="-p cartLines=10"
+tasks.register<JavaExec>("jmh") {
+    description = "Runs the JMH benchmarks"
+    group = "Benchmark"
+    classpath = jmh.runtimeClasspath
+    mainClass = "org.openjdk.jmh.Main"
+    val resultsFile = layout.buildDirectory.file("results/jmh/results.json")
+    args(providers.gradleProperty("jmhIncludes").getOrElse(".*"))
+    args("-prof", "gc", "-rf", "json", "-rff", resultsFile.get().asFile.absolutePath)
+    args(providers.gradleProperty("jmhArgs").getOrElse("").split(" ").filter { it.isNotBlank() })
+    doFirst { resultsFile.get().asFile.parentFile.mkdirs() }
+}
+
+// HTTP load test of /api/cart and /api/orders/checkout with platform threads and then with virtual threads.
+// ./gradlew loadTest -PloadTestArgs="clients=5000 duration=PT60S"
+tasks.register<JavaExec>("loadTest") {
+    description = "Compares p99 latency of platform and virtual thread request handling"
+    group = "Benchmark"
+    classpath = jmh.runtimeClasspath
+    mainClass = "com.shop.bench.LoadTest"
+    args(providers.gradleProperty("loadTestArgs").getOrElse("").split(" ").filter { it.isNotBlank() })
+}
+
+// Concurrent checkouts of one SKU against limited stock; fails the build step if anything is oversold.
+// ./gradlew stockStressTest -PstockStressArgs="checkouts=1000 stock=100"
+tasks.register<JavaExec>("stockStressTest") {
+    description = "Checks that parallel checkouts never oversell a limited stock"
+    group = "Benchmark"
+    classpath = jmh.runtimeClasspath
+    mainClass = "com.shop.bench.StockStressTest"
+    args(providers.gradleProperty("stockStressArgs").getOrElse("").split(" ").filter { it.isNotBlank() })
+}
+
+// Concurrent checkouts of the same users against a slow outbox consumer; fails if an event is lost, duplicated or
+// out of order. ./gradlew outboxStressTest -PoutboxStressArgs="users=50 threads=4 rounds=20 consumerDelay=PT0.002S"
+tasks.register<JavaExec>("outboxStressTest") {
+    description = "Checks that every order is published once and in order per user"
+    group = "Benchmark"
+    classpath = jmh.runtimeClasspath
+    mainClass = "com.shop.bench.OutboxStressTest"
+    args(providers.gradleProperty("outboxStressArgs").getOrElse("").split(" ").filter { it.isNotBlank() })
+}
+
+// Fast-start build for instances added by the autoscaler, enabled with -PfastStart (see application-faststart.yml).
+// Spring AOT generates the bean definitions at build time instead of scanning and evaluating conditions at start-up,
+// and a training run records the loaded classes in a Class Data Sharing archive, similar to ReadyToRun in .NET.
+// ./gradlew -PfastStart startupBenchmark -PstartupArgs="runs=5"
+if (providers.gradleProperty("fastStart").isPresent) {
+    apply(plugin = "org.springframework.boot.aot")
+
+    // The beans are chosen here, once: add properties such as --shop.cart.store=write-behind to these arguments
+    tasks.named<org.springframework.boot.gradle.tasks.aot.ProcessAot>("processAot") {
+        args("--spring.profiles.active=faststart")
+    }
+
+    val bootJar = tasks.named<org.springframework.boot.gradle.tasks.bundling.BootJar>("bootJar")
+    val fastStartDir = layout.buildDirectory.dir("faststart")
+    val fastStartJar = fastStartDir.zip(bootJar.flatMap { it.archiveFileName }) { dir, name -> dir.file(name) }
+    val cdsFile = fastStartDir.map { it.file("application.jsa") }
+
+    // CDS cannot map classes from jars nested in the boot jar, so it is unpacked into an application jar plus lib/
+    val extractFastStartJar = tasks.register<JavaExec>("extractFastStartJar") {
+        description = "Unpacks the boot jar into build/faststart"
+        group = "Build"
+        classpath(bootJar)
+        mainClass = "org.springframework.boot.loader.launch.JarLauncher"
+        jvmArgs("-Djarmode=tools")
+        args("extract", "--force", "--destination", fastStartDir.get().asFile.absolutePath)
+        outputs.dir(fastStartDir)
+    }
+
+    // Training run: starts the context once and writes the archive of every class it loaded on exit
+    val cdsArchive = tasks.register<JavaExec>("cdsArchive") {
+        description = "Creates the class data sharing archive of the fast-start build"
+        group = "Build"
+        dependsOn(extractFastStartJar)
+        classpath(fastStartJar)
+        mainClass = "com.shop.Application"
+        jvmArgs("-XX:ArchiveClassesAtExit=" + cdsFile.get().asFile.absolutePath,
+                "-Dspring.aot.enabled=true", "-Dspring.context.exit=onRefresh")
+        args("--spring.profiles.active=faststart", "--server.port=0")
+        outputs.file(cdsFile)
+    }
+
+    tasks.register<JavaExec>("startupBenchmark") {
+        description = "Compares time to first request and RSS of the default and fast-start builds"
+        group = "Benchmark"
+        dependsOn(cdsArchive)
+        classpath = jmh.runtimeClasspath
+        mainClass = "com.shop.bench.StartupBenchmark"
+        args("defaultJar=" + bootJar.get().archiveFile.get().asFile.absolutePath,
+                "fastStartJar=" + fastStartJar.get().asFile.absolutePath,
+                "archive=" + cdsFile.get().asFile.absolutePath)
+        args(providers.gradleProperty("startupArgs").getOrElse("").split(" ").filter { it.isNotBlank() })
+    }
+}
+
 // Custom task for creating reports archive
 tasks.register<Zip>("zip-reports") {
     description = "Zips the reports directory"
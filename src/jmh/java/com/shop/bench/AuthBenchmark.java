@@ -0,0 +1,68 @@
+package com.shop.bench;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.provisioning.UserDetailsManager;
+
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Authenticated requests per second against GET /api/cart/summary: HTTP Basic, which verifies the bcrypt hash
+ * on every request, versus a bearer token issued once by POST /api/auth/token.
+ * Run with -t to add client threads, e.g. -PjmhArgs="-t 4".
+ */
+@State(Scope.Benchmark)
+@Warmup(iterations = 2)
+@Measurement(iterations = 3)
+@Fork(1)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class AuthBenchmark {
+
+    private ShopContext shop;
+    private HttpClient client;
+    private HttpRequest basic;
+    private HttpRequest bearer;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        shop = ShopContext.start();
+        PasswordEncoder encoder = shop.bean(PasswordEncoder.class);
+        shop.bean(UserDetailsManager.class).createUser(
+                User.withUsername(ShopContext.USER).password(encoder.encode("password")).roles("USER").build());
+        client = HttpClient.newHttpClient();
+
+        String credentials = "Basic " + Base64.getEncoder().encodeToString(
+                (ShopContext.USER + ":password").getBytes(StandardCharsets.UTF_8));
+        String issued = client.send(HttpRequest.newBuilder(shop.uri("/api/auth/token"))
+                .header("Authorization", credentials)
+                .POST(HttpRequest.BodyPublishers.noBody())
+                .build(), HttpResponse.BodyHandlers.ofString()).body();
+        String token = new ObjectMapper().readTree(issued).get("token").asText();
+
+        basic = HttpRequest.newBuilder(shop.uri("/api/cart/summary")).header("Authorization", credentials).build();
+        bearer = HttpRequest.newBuilder(shop.uri("/api/cart/summary")).header("Authorization", "Bearer " + token).build();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        shop.close();
+    }
+
+    @Benchmark
+    public int basicAuth() throws Exception {
+        return client.send(basic, HttpResponse.BodyHandlers.discarding()).statusCode();
+    }
+
+    @Benchmark
+    public int bearerToken() throws Exception {
+        return client.send(bearer, HttpResponse.BodyHandlers.discarding()).statusCode();
+    }
+}
@@ -0,0 +1,58 @@
+package com.shop.bench;
+
+import com.shop.cart.CartService;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cart view and cart mutation throughput for growing cart and catalog sizes.
+ */
+@State(Scope.Benchmark)
+@Warmup(iterations = 2)
+@Measurement(iterations = 3)
+@Fork(1)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class CartBenchmark {
+
+    @Param({"1", "10", "100", "1000"})
+    public int cartLines;
+
+    @Param({"1000", "100000"})
+    public int catalogSize;
+
+    @Param({"database", "write-behind"})
+    public String cartStore;
+
+    private ShopContext shop;
+    private CartService cartService;
+    private List<Long> productIds;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        shop = ShopContext.start("shop.cart.store=" + cartStore);
+        cartService = shop.bean(CartService.class);
+        productIds = shop.seedCatalog(catalogSize);
+        shop.fillCart(productIds, cartLines);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        shop.close();
+    }
+
+    @Benchmark
+    public CartService.CartView getCart() {
+        return cartService.getCart(ShopContext.USER);
+    }
+
+    @Benchmark
+    public void addOrUpdate() {
+        // Cycles over the products already in the cart, so the cart size stays fixed
+        next = (next + 1) % cartLines;
+        cartService.addOrUpdate(ShopContext.USER, productIds.get(next), 1);
+    }
+}
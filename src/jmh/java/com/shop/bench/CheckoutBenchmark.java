@@ -0,0 +1,53 @@
+package com.shop.bench;
+
+import com.shop.order.CheckoutService;
+import com.shop.order.Order;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Checkout latency for growing cart sizes. Checkout empties the cart, so it is refilled
+ * with plain JDBC before every invocation; the refill is not part of the measurement.
+ */
+@State(Scope.Benchmark)
+@Warmup(iterations = 2)
+@Measurement(iterations = 3)
+@Fork(1)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class CheckoutBenchmark {
+
+    @Param({"1", "10", "100", "1000"})
+    public int cartLines;
+
+    @Param({"1000", "100000"})
+    public int catalogSize;
+
+    private ShopContext shop;
+    private CheckoutService checkoutService;
+    private List<Long> productIds;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        shop = ShopContext.start();
+        checkoutService = shop.bean(CheckoutService.class);
+        productIds = shop.seedCatalog(catalogSize);
+    }
+
+    @Setup(Level.Invocation)
+    public void refillCart() {
+        shop.fillCart(productIds, cartLines);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        shop.close();
+    }
+
+    @Benchmark
+    public Order checkout() {
+        return checkoutService.checkout(ShopContext.USER);
+    }
+}
@@ -0,0 +1,176 @@
+package com.shop.bench;
+
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.provisioning.UserDetailsManager;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Closed-loop HTTP load test comparing platform-thread and virtual-thread request handling.
+ *
+ * For each mode it boots the application on a random port, then runs "clients" concurrent users; each one loops
+ * add-to-cart, GET /api/cart and POST /api/orders/checkout and records the latency of the last two.
+ * Latencies from the warm-up period are discarded; p50/p99/max and error counts are printed per mode.
+ * Run with ./gradlew loadTest -PloadTestArgs="clients=5000 duration=PT60S".
+ */
+public final class LoadTest {
+
+    private record Settings(int clients, int users, Duration warmup, Duration duration) {}
+
+    private record Result(String endpoint, long[] latenciesNanos, long errors) {}
+
+    public static void main(String[] args) throws Exception {
+        Settings settings = parse(args);
+        System.out.printf("clients=%d users=%d warmup=%s duration=%s%n",
+                settings.clients(), settings.users(), settings.warmup(), settings.duration());
+        for (boolean virtual : new boolean[]{false, true}) {
+            List<Result> results = run(settings, virtual);
+            String mode = virtual ? "virtual" : "platform";
+            for (Result result : results) {
+                long[] sorted = result.latenciesNanos();
+                Arrays.sort(sorted);
+                System.out.printf("%-9s %-22s requests=%8d errors=%6d p50=%8.2fms p99=%8.2fms max=%8.2fms%n",
+                        mode, result.endpoint(), sorted.length, result.errors(),
+                        percentile(sorted, 0.50), percentile(sorted, 0.99), percentile(sorted, 1.0));
+            }
+        }
+        System.exit(0);
+    }
+
+    private static List<Result> run(Settings settings, boolean virtualThreads) throws Exception {
+        try (ShopContext shop = ShopContext.start(
+                "spring.threads.virtual.enabled=" + virtualThreads,
+                // Measures what the server can take, not the configured limits
+                "shop.rate-limit.enabled=false",
+                "server.tomcat.max-connections=" + (settings.clients() + 1000),
+                "server.tomcat.accept-count=" + settings.clients())) {
+            List<Long> productIds = shop.seedCatalog(1000);
+            UserDetailsManager users = shop.bean(UserDetailsManager.class);
+            for (int i = 0; i < settings.users(); i++) {
+                if (!users.userExists("load" + i)) {
+                    users.createUser(User.withUsername("load" + i).password("{noop}password").roles("USER").build());
+                }
+            }
+
+            var cart = new ConcurrentLinkedQueue<long[]>();
+            var checkout = new ConcurrentLinkedQueue<long[]>();
+            var cartErrors = new LongAdder();
+            var checkoutErrors = new LongAdder();
+            HttpClient client = HttpClient.newBuilder()
+                    .executor(Executors.newVirtualThreadPerTaskExecutor())
+                    .version(HttpClient.Version.HTTP_1_1)
+                    .connectTimeout(Duration.ofSeconds(30))
+                    .build();
+
+            long start = System.nanoTime();
+            long measureFrom = start + settings.warmup().toNanos();
+            long end = measureFrom + settings.duration().toNanos();
+            try (var clients = Executors.newVirtualThreadPerTaskExecutor()) {
+                for (int c = 0; c < settings.clients(); c++) {
+                    final int clientId = c;
+                    clients.execute(() -> {
+                        String auth = "Basic " + Base64.getEncoder().encodeToString(
+                                ("load" + clientId % settings.users() + ":password").getBytes(StandardCharsets.UTF_8));
+                        long[] cartLatencies = new long[1024];
+                        long[] checkoutLatencies = new long[1024];
+                        int cartCount = 0;
+                        int checkoutCount = 0;
+                        int iteration = 0;
+                        while (System.nanoTime() < end) {
+                            long productId = productIds.get((clientId + iteration++) % productIds.size());
+                            send(client, HttpRequest.newBuilder(shop.uri("/api/cart/items"))
+                                    .header("Authorization", auth)
+                                    .header("Content-Type", "application/json")
+                                    .POST(HttpRequest.BodyPublishers.ofString("{\"productId\":" + productId + ",\"quantity\":1}")));
+
+                            long t0 = System.nanoTime();
+                            boolean ok = send(client, HttpRequest.newBuilder(shop.uri("/api/cart")).header("Authorization", auth).GET());
+                            long t1 = System.nanoTime();
+                            if (t0 >= measureFrom && t1 <= end) {
+                                if (!ok) cartErrors.increment();
+                                if (cartCount == cartLatencies.length) cartLatencies = Arrays.copyOf(cartLatencies, cartCount * 2);
+                                cartLatencies[cartCount++] = t1 - t0;
+                            }
+
+                            t0 = System.nanoTime();
+                            ok = send(client, HttpRequest.newBuilder(shop.uri("/api/orders/checkout")).header("Authorization", auth)
+                                    .POST(HttpRequest.BodyPublishers.noBody()));
+                            t1 = System.nanoTime();
+                            if (t0 >= measureFrom && t1 <= end) {
+                                // Users are shared between clients, so an empty cart (500) is expected now and then
+                                if (!ok) checkoutErrors.increment();
+                                if (checkoutCount == checkoutLatencies.length) checkoutLatencies = Arrays.copyOf(checkoutLatencies, checkoutCount * 2);
+                                checkoutLatencies[checkoutCount++] = t1 - t0;
+                            }
+                        }
+                        cart.add(Arrays.copyOf(cartLatencies, cartCount));
+                        checkout.add(Arrays.copyOf(checkoutLatencies, checkoutCount));
+                    });
+                }
+            }
+            return List.of(
+                    new Result("GET /api/cart", merge(cart), cartErrors.sum()),
+                    new Result("POST /api/orders/checkout", merge(checkout), checkoutErrors.sum()));
+        }
+    }
+
+    private static boolean send(HttpClient client, HttpRequest.Builder request) {
+        try {
+            return client.send(request.timeout(Duration.ofSeconds(60)).build(), HttpResponse.BodyHandlers.discarding()).statusCode() < 400;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    private static long[] merge(ConcurrentLinkedQueue<long[]> parts) {
+        long[] all = new long[parts.stream().mapToInt(part -> part.length).sum()];
+        int offset = 0;
+        for (long[] part : parts) {
+            System.arraycopy(part, 0, all, offset, part.length);
+            offset += part.length;
+        }
+        return all;
+    }
+
+    private static double percentile(long[] sorted, double p) {
+        if (sorted.length == 0) {
+            return Double.NaN;
+        }
+        int index = (int) Math.min(sorted.length - 1, Math.ceil(p * sorted.length) - 1);
+        return sorted[Math.max(0, index)] / 1_000_000.0;
+    }
+
+    private static Settings parse(String[] args) {
+        int clients = 5000;
+        int users = 500;
+        Duration warmup = Duration.ofSeconds(10);
+        Duration duration = Duration.ofSeconds(30);
+        List<String> unknown = new ArrayList<>();
+        for (String arg : args) {
+            String[] kv = arg.split("=", 2);
+            switch (kv[0]) {
+                case "clients" -> clients = Integer.parseInt(kv[1]);
+                case "users" -> users = Integer.parseInt(kv[1]);
+                case "warmup" -> warmup = Duration.parse(kv[1]);
+                case "duration" -> duration = Duration.parse(kv[1]);
+                default -> unknown.add(arg);
+            }
+        }
+        if (!unknown.isEmpty()) {
+            throw new IllegalArgumentException("Unknown arguments " + unknown + "; expected clients=, users=, warmup=, duration=");
+        }
+        return new Settings(clients, users, warmup, duration);
+    }
+}
@@ -0,0 +1,62 @@
+package com.shop.bench;
+
+import com.shop.common.Money;
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cart total computation the old way (BigDecimal multiply/add per line, boxed quantity) against
+ * long minor-unit arithmetic with a single BigDecimal at the end. Compare gc.alloc.rate.norm between the two.
+ */
+@State(Scope.Benchmark)
+@Warmup(iterations = 2)
+@Measurement(iterations = 3)
+@Fork(1)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class MoneyBenchmark {
+
+    @Param({"10", "100", "1000"})
+    public int lines;
+
+    private BigDecimal[] prices;
+    private long[] priceMinorUnits;
+    private Integer[] boxedQuantities;
+    private int[] quantities;
+
+    @Setup
+    public void setUp() {
+        var random = ThreadLocalRandom.current();
+        prices = new BigDecimal[lines];
+        priceMinorUnits = new long[lines];
+        boxedQuantities = new Integer[lines];
+        quantities = new int[lines];
+        for (int i = 0; i < lines; i++) {
+            prices[i] = BigDecimal.valueOf(random.nextLong(100, 100_000), Money.SCALE);
+            priceMinorUnits[i] = Money.toMinorUnits(prices[i]);
+            quantities[i] = random.nextInt(1, 10);
+            boxedQuantities[i] = quantities[i];
+        }
+    }
+
+    @Benchmark
+    public BigDecimal bigDecimalTotal() {
+        BigDecimal total = BigDecimal.ZERO;
+        for (int i = 0; i < lines; i++) {
+            total = total.add(prices[i].multiply(BigDecimal.valueOf(boxedQuantities[i])));
+        }
+        return total;
+    }
+
+    @Benchmark
+    public BigDecimal minorUnitsTotal() {
+        long total = 0;
+        for (int i = 0; i < lines; i++) {
+            total = Money.add(total, Money.multiply(priceMinorUnits[i], quantities[i]));
+        }
+        return Money.toBigDecimal(total);
+    }
+}
@@ -0,0 +1,163 @@
+package com.shop.bench;
+
+import com.shop.order.CheckoutService;
+import com.shop.outbox.InMemoryOutboxPublisher;
+import com.shop.outbox.OutboxMessage;
+import com.shop.outbox.OutboxRelay;
+import org.springframework.dao.TransientDataAccessException;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Outbox delivery check: "users" users each run "threads" concurrent loops of "rounds" refill-and-checkout, so
+ * checkouts of one user race each other, while a consumer takes the order.placed events from the in-memory
+ * publisher with consumerDelay per event. Every placed order must be published exactly once, and each user's
+ * events must arrive with sequence 1, 2, 3... in order; checkouts rolled back by a lock conflict are counted, and
+ * must leave no event behind. The checkout latency percentiles are printed; compare a
+ * slow consumer with consumerDelay=PT0S to see that checkout does not wait for it. Exits with status 1 on failure.
+ *
+ * ./gradlew outboxStressTest -PoutboxStressArgs="users=50 threads=4 rounds=20 consumerDelay=PT0.002S"
+ */
+public final class OutboxStressTest {
+
+    public static void main(String[] args) throws Exception {
+        int users = 50;
+        int threads = 4;
+        int rounds = 20;
+        Duration consumerDelay = Duration.ofMillis(2);
+        for (String arg : args) {
+            String[] pair = arg.split("=", 2);
+            switch (pair[0]) {
+                case "users" -> users = Integer.parseInt(pair[1]);
+                case "threads" -> threads = Integer.parseInt(pair[1]);
+                case "rounds" -> rounds = Integer.parseInt(pair[1]);
+                case "consumerDelay" -> consumerDelay = Duration.parse(pair[1]);
+                default -> throw new IllegalArgumentException("Unknown argument: " + arg);
+            }
+        }
+
+        boolean ok;
+        // A small queue, so a slow consumer pushes back on the relay. One product per user keeps the stock rows
+        // out of the race, and the longer lock timeout lets a user's loops queue up on their cart rows on one CPU
+        try (ShopContext shop = ShopContext.startOn(ShopContext.newDatabase() + ";LOCK_TIMEOUT=10000",
+                "shop.outbox.publisher=memory", "shop.outbox.memory.capacity=200")) {
+            List<Long> skus = shop.seedCatalog(users);
+            CheckoutService checkoutService = shop.bean(CheckoutService.class);
+            InMemoryOutboxPublisher publisher = shop.bean(InMemoryOutboxPublisher.class);
+            OutboxRelay relay = shop.bean(OutboxRelay.class);
+
+            var received = new ConcurrentLinkedQueue<OutboxMessage>();
+            var consuming = new AtomicBoolean(true);
+            Duration delay = consumerDelay;
+            Thread consumer = Thread.ofPlatform().name("outbox-consumer").start(() -> {
+                try {
+                    while (consuming.get()) {
+                        OutboxMessage message = publisher.take(Duration.ofMillis(100));
+                        if (message != null) {
+                            received.add(message);
+                            Thread.sleep(delay);
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+
+            var placed = new LongAdder();
+            var emptyCart = new LongAdder();
+            var conflicts = new LongAdder();
+            var otherErrors = new LongAdder();
+            var latencies = new ConcurrentLinkedQueue<Long>();
+            var start = new CountDownLatch(1);
+            int loops = rounds;
+            long began;
+            try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+                for (int u = 0; u < users; u++) {
+                    String username = "outbox" + u;
+                    Long sku = skus.get(u);
+                    for (int t = 0; t < threads; t++) {
+                        executor.execute(() -> {
+                            try {
+                                start.await();
+                                for (int r = 0; r < loops; r++) {
+                                    shop.jdbc().update("""
+                                            merge into cart_item (username, product_id, quantity, name_snapshot, price_snapshot, product_version, last_modified, version)
+                                            key (username, product_id)
+                                            select ?, id, 1, name, price, version, current_timestamp, 0 from product where id = ?
+                                            """, username, sku);
+                                    long t0 = System.nanoTime();
+                                    try {
+                                        checkoutService.checkout(username);
+                                        placed.increment();
+                                    } catch (IllegalStateException e) {
+                                        // Another loop of the same user checked the cart out first
+                                        emptyCart.increment();
+                                    } catch (TransientDataAccessException e) {
+                                        // Loops of one user racing for its stock rows; rolled back, so no event
+                                        conflicts.increment();
+                                    }
+                                    latencies.add(System.nanoTime() - t0);
+                                }
+                            } catch (Exception e) {
+                                otherErrors.increment();
+                                System.err.println(username + ": " + e);
+                            }
+                        });
+                    }
+                }
+                began = System.nanoTime();
+                start.countDown();
+            }
+            long checkoutMillis = (System.nanoTime() - began) / 1_000_000;
+            long deadline = System.nanoTime() + Duration.ofMinutes(1).toNanos();
+            while (received.size() < placed.sum() && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            // Anything published twice or too many would show up now
+            Thread.sleep(500);
+            consuming.set(false);
+            consumer.join();
+            long deliveredMillis = (System.nanoTime() - began) / 1_000_000;
+
+            Integer orders = shop.jdbc().queryForObject("select count(*) from orders", Integer.class);
+            Map<String, List<Long>> sequences = new HashMap<>();
+            for (OutboxMessage message : received) {
+                sequences.computeIfAbsent(message.key(), k -> new ArrayList<>()).add(message.sequence());
+            }
+            int outOfOrder = 0;
+            for (List<Long> perUser : sequences.values()) {
+                for (int i = 0; i < perUser.size(); i++) {
+                    if (perUser.get(i) != i + 1) {
+                        outOfOrder++;
+                        break;
+                    }
+                }
+            }
+            long[] sorted = latencies.stream().mapToLong(Long::longValue).sorted().toArray();
+            System.out.printf("orders=%d placed=%d emptyCart=%d conflicts=%d errors=%d published=%d usersOutOfOrder=%d "
+                            + "failedPublishes=%d checkouts done in %d ms, all delivered in %d ms%n",
+                    orders, placed.sum(), emptyCart.sum(), conflicts.sum(), otherErrors.sum(), received.size(), outOfOrder,
+                    relay.stats().failures(), checkoutMillis, deliveredMillis);
+            System.out.printf("checkout latency p50=%.1f ms p99=%.1f ms max=%.1f ms%n",
+                    percentile(sorted, 0.50), percentile(sorted, 0.99), percentile(sorted, 1.0));
+            ok = orders == placed.sum() && received.size() == orders && outOfOrder == 0 && otherErrors.sum() == 0
+                    && Arrays.stream(sorted).count() == (long) users * threads * rounds;
+        }
+        System.out.println(ok ? "OK: every order published once, in order per user" : "FAILED");
+        System.exit(ok ? 0 : 1);
+    }
+
+    private static double percentile(long[] sorted, double p) {
+        return sorted[Math.max(0, (int) Math.ceil(p * sorted.length) - 1)] / 1e6;
+    }
+}
@@ -0,0 +1,70 @@
+package com.shop.bench;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of serving /api/products over HTTP, including JSON serialization: the first catalog page
+ * and the full NDJSON export, which is what dominates heap usage for large catalogs.
+ * responseCache=false renders every page (query + Jackson); true answers repeats from CatalogResponseCache.
+ * The gzip variant asks for the compressed copy, as browsers and CDNs do.
+ */
+@State(Scope.Benchmark)
+@Warmup(iterations = 2)
+@Measurement(iterations = 3)
+@Fork(1)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ProductListingBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    public int catalogSize;
+
+    @Param({"true", "false"})
+    public boolean responseCache;
+
+    private ShopContext shop;
+    private HttpClient client;
+    private HttpRequest firstPage;
+    private HttpRequest firstPageGzip;
+    private HttpRequest export;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        shop = ShopContext.start("shop.catalog-http-cache.enabled=" + responseCache);
+        shop.seedCatalog(catalogSize);
+        client = HttpClient.newHttpClient();
+        firstPage = HttpRequest.newBuilder(shop.uri("/api/products")).build();
+        firstPageGzip = HttpRequest.newBuilder(shop.uri("/api/products")).header("Accept-Encoding", "gzip").build();
+        export = HttpRequest.newBuilder(shop.uri("/api/products/export")).build();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        shop.close();
+    }
+
+    @Benchmark
+    public byte[] listFirstPage() throws Exception {
+        return client.send(firstPage, HttpResponse.BodyHandlers.ofByteArray()).body();
+    }
+
+    @Benchmark
+    public byte[] listFirstPageGzip() throws Exception {
+        return client.send(firstPageGzip, HttpResponse.BodyHandlers.ofByteArray()).body();
+    }
+
+    @Benchmark
+    public long exportCatalog() throws Exception {
+        try (InputStream body = client.send(export, HttpResponse.BodyHandlers.ofInputStream()).body()) {
+            return body.transferTo(OutputStream.nullOutputStream());
+        }
+    }
+}
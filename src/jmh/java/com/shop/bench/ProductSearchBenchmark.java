@@ -0,0 +1,82 @@
+package com.shop.bench;
+
+import com.shop.product.ProductSearchIndex;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Query latency of {@link ProductSearchIndex} over a synthetic catalog (default one million products).
+ * Names combine common words, so "kettle" alone matches about one product in 40; descriptions draw from a
+ * vocabulary of 5000 made-up words, most of them rare. The index is used directly, without Spring or a database,
+ * so the numbers are the search itself; the build time is printed during setup.
+ */
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ProductSearchBenchmark {
+
+    private static final String[] ADJECTIVES = {"black", "white", "classic", "compact", "large", "small", "deluxe",
+            "vintage", "modern", "electric", "manual", "premium", "travel", "family", "professional", "mini",
+            "smart", "rustic", "nordic", "glossy"};
+    private static final String[] MATERIALS = {"steel", "ceramic", "glass", "bamboo", "copper", "cast iron",
+            "porcelain", "aluminium", "oak", "walnut", "silicone", "linen", "cotton", "marble", "stoneware"};
+    private static final String[] NOUNS = {"kettle", "mug", "teapot", "grinder", "espresso machine", "french press",
+            "cup", "saucer", "tray", "jar", "canister", "scale", "thermometer", "pitcher", "carafe", "dripper",
+            "filter", "tamper", "spoon", "whisk", "bowl", "plate", "knife", "board", "pan", "skillet", "wok", "pot",
+            "lid", "strainer", "funnel", "tumbler", "bottle", "flask", "apron", "towel", "coaster", "rack", "timer",
+            "brush"};
+    private static final String[] SYLLABLES = {"ka", "ro", "mi", "ten", "sal", "vo", "dre", "lun", "pa", "zi",
+            "mor", "ex", "qua", "bel", "tor", "nu", "fi", "gra", "sto", "wen"};
+
+    @Param({"1000000"})
+    public int catalogSize;
+
+    @Param({"kettle", "steel kettle", "black ceramic mug", "espr", "kettel", "rare"})
+    public String query;
+
+    private ProductSearchIndex index;
+    private String text;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(42);
+        String[] vocabulary = new String[5000];
+        for (int i = 0; i < vocabulary.length; i++) {
+            vocabulary[i] = SYLLABLES[i % 20] + SYLLABLES[(i / 20) % 20] + SYLLABLES[(i / 400) % 20];
+        }
+        long started = System.nanoTime();
+        index = new ProductSearchIndex();
+        StringBuilder description = new StringBuilder();
+        for (int id = 1; id <= catalogSize; id++) {
+            String name = ADJECTIVES[random.nextInt(ADJECTIVES.length)] + " "
+                    + MATERIALS[random.nextInt(MATERIALS.length)] + " "
+                    + NOUNS[random.nextInt(NOUNS.length)];
+            description.setLength(0);
+            for (int w = 0; w < 12; w++) {
+                // Zipf-like: low word numbers are common, high ones rare
+                int word = (int) Math.min(vocabulary.length - 1, Math.abs(random.nextGaussian()) * 800);
+                description.append(vocabulary[word]).append(' ');
+            }
+            index.put(id, name, description.toString());
+        }
+        System.out.printf("%nIndexed %d products in %d ms%n", catalogSize,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+        // "rare" stands for a word from the tail of the description vocabulary
+        text = query.equals("rare") ? vocabulary[2500] : query;
+    }
+
+    @Benchmark
+    public ProductSearchIndex.Result firstPage() {
+        return index.search(text, 0, 20);
+    }
+
+    @Benchmark
+    public ProductSearchIndex.Result fifthPage() {
+        return index.search(text, 80, 20);
+    }
+}
@@ -0,0 +1,64 @@
+package com.shop.bench;
+
+import com.shop.ratelimit.RateLimiter;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.core.env.StandardEnvironment;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Cost the rate limit adds to a request, with 4 threads hitting the same endpoint:
+ * - allowed: every thread its own user, all sharing one global bucket that never runs dry, so the global CAS is
+ *   contended on every call;
+ * - rejected: the per-user buckets are empty, which only reads the bucket state.
+ * Each thread plays one user, as a request thread would for one client.
+ */
+@State(Scope.Benchmark)
+@Warmup(iterations = 2)
+@Measurement(iterations = 3)
+@Fork(1)
+@Threads(4)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class RateLimiterBenchmark {
+
+    @State(Scope.Thread)
+    public static class User {
+        private static final AtomicInteger NEXT = new AtomicInteger();
+        final String name = "user" + NEXT.incrementAndGet();
+    }
+
+    private RateLimiter generous;
+    private RateLimiter exhausted;
+
+    @Setup
+    public void setUp() {
+        generous = limiter(Long.toString((1L << 23) - 1), "1.0E9");
+        exhausted = limiter("1", "1.0E-6");
+    }
+
+    @Benchmark
+    public long allowed(User user) {
+        return generous.acquire("POST", "/api/cart/items", user.name);
+    }
+
+    @Benchmark
+    public long rejected(User user) {
+        return exhausted.acquire("POST", "/api/cart/items", user.name);
+    }
+
+    private static RateLimiter limiter(String capacity, String refillPerSecond) {
+        var environment = new StandardEnvironment();
+        environment.getPropertySources().addFirst(new MapPropertySource("bench", Map.of(
+                "shop.rate-limit.endpoints.cart-items.method", "POST",
+                "shop.rate-limit.endpoints.cart-items.path", "/api/cart/items",
+                "shop.rate-limit.endpoints.cart-items.per-user.capacity", capacity,
+                "shop.rate-limit.endpoints.cart-items.per-user.refill-per-second", refillPerSecond,
+                "shop.rate-limit.endpoints.cart-items.global.capacity", Long.toString((1L << 23) - 1),
+                "shop.rate-limit.endpoints.cart-items.global.refill-per-second", "1.0E9")));
+        return new RateLimiter(environment, true);
+    }
+}
@@ -0,0 +1,133 @@
+package com.shop.bench;
+
+import com.shop.analytics.SalesAnalyticsService;
+import com.shop.analytics.SalesBucket;
+import com.shop.analytics.TopSeller;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sales reports from the in-memory rollups versus the GROUP BY queries they replace, over an order history of
+ * "orders" orders (three lines each on average) spread across the last 180 days.
+ * The orders are inserted before the application starts, so the startup rebuild scans them; the time it takes
+ * with rebuildThreads scan threads is printed during setup.
+ */
+@State(Scope.Benchmark)
+@Warmup(iterations = 2)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SalesAnalyticsBenchmark {
+
+    private static final int CATALOG_SIZE = 10_000;
+    private static final int DAYS = 180;
+
+    @Param({"200000"})
+    public int orders;
+
+    @Param({"1", "4"})
+    public int rebuildThreads;
+
+    private ShopContext shop;
+    private SalesAnalyticsService analytics;
+    private JdbcTemplate jdbc;
+    private Timestamp thirtyDaysAgo;
+
+    @Setup(Level.Trial)
+    public void setUp() throws InterruptedException {
+        String database = ShopContext.newDatabase();
+        try (ShopContext seeding = ShopContext.startOn(database)) {
+            seeding.seedCatalog(CATALOG_SIZE);
+            seedOrders(seeding.jdbc());
+        }
+        shop = ShopContext.startOn(database, "shop.analytics.rebuild-threads=" + rebuildThreads);
+        analytics = shop.bean(SalesAnalyticsService.class);
+        while (!analytics.stats().ready()) {
+            Thread.sleep(10);
+        }
+        System.out.printf("%nRebuilt %d orders with %d threads in %d ms%n", analytics.stats().orders(),
+                rebuildThreads, analytics.stats().rebuildMillis());
+        jdbc = shop.jdbc();
+        thirtyDaysAgo = Timestamp.from(Instant.now().minus(Duration.ofDays(30)));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        shop.close();
+    }
+
+    @Benchmark
+    public List<TopSeller> topSellersRollup() {
+        return analytics.topSellers(10);
+    }
+
+    @Benchmark
+    public List<Map<String, Object>> topSellersSql() {
+        return jdbc.queryForList("""
+                select product_id, sum(quantity) as units from order_item
+                group by product_id order by units desc limit 10
+                """);
+    }
+
+    @Benchmark
+    public List<SalesBucket> dailySalesRollup() {
+        return analytics.sales(SalesAnalyticsService.Granularity.DAY, 30, Instant.now());
+    }
+
+    @Benchmark
+    public List<Map<String, Object>> dailySalesSql() {
+        return jdbc.queryForList("""
+                select cast(o.created_at as date) as sales_day, sum(i.quantity * i.unit_price_snapshot) as revenue
+                from orders o join order_item i on i.order_id = o.id
+                where o.created_at >= ? group by cast(o.created_at as date) order by sales_day
+                """, thirtyDaysAgo);
+    }
+
+    // Explicit ids: nothing in this benchmark places orders through Hibernate, so the sequences are not needed
+    private void seedOrders(JdbcTemplate jdbc) {
+        Random random = new Random(42);
+        long now = Instant.now().getEpochSecond();
+        List<Object[]> orderRows = new ArrayList<>();
+        List<Object[]> itemRows = new ArrayList<>();
+        long itemId = 0;
+        for (long orderId = 1; orderId <= orders; orderId++) {
+            Instant createdAt = Instant.ofEpochSecond(now - random.nextLong(DAYS * 86_400L));
+            int lines = 1 + random.nextInt(5);
+            BigDecimal total = BigDecimal.ZERO;
+            for (int line = 0; line < lines; line++) {
+                // Skewed towards low ids, so there are clear top sellers
+                long productId = 1 + (long) Math.min(CATALOG_SIZE - 1, Math.abs(random.nextGaussian()) * 1500);
+                BigDecimal price = BigDecimal.valueOf(100 + productId % 5000, 2);
+                int quantity = 1 + random.nextInt(3);
+                total = total.add(price.multiply(BigDecimal.valueOf(quantity)));
+                itemRows.add(new Object[]{++itemId, orderId, productId, "Product " + productId, price, quantity});
+            }
+            orderRows.add(new Object[]{orderId, "user" + orderId % 1000, Timestamp.from(createdAt), total});
+            if (orderRows.size() == 1000) {
+                flush(jdbc, orderRows, itemRows);
+            }
+        }
+        flush(jdbc, orderRows, itemRows);
+    }
+
+    private static void flush(JdbcTemplate jdbc, List<Object[]> orderRows, List<Object[]> itemRows) {
+        jdbc.batchUpdate("insert into orders (id, username, created_at, total) values (?, ?, ?, ?)", orderRows);
+        jdbc.batchUpdate("""
+                insert into order_item (id, order_id, product_id, product_name_snapshot, unit_price_snapshot, quantity)
+                values (?, ?, ?, ?, ?, ?)
+                """, itemRows);
+        orderRows.clear();
+        itemRows.clear();
+    }
+}
@@ -0,0 +1,106 @@
+package com.shop.bench;
+
+import com.shop.Application;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Boots the application against a fresh in-memory H2 database for one benchmark trial
+ * and offers JDBC helpers to seed catalogs and carts quickly.
+ * The embedded web server listens on a random port; benchmarks call beans directly.
+ */
+final class ShopContext implements AutoCloseable {
+
+    static final String USER = "bench";
+
+    private final ConfigurableApplicationContext context;
+    private final JdbcTemplate jdbc;
+
+    private ShopContext(ConfigurableApplicationContext context) {
+        this.context = context;
+        this.jdbc = context.getBean(JdbcTemplate.class);
+    }
+
+    static ShopContext start(String... extraProperties) {
+        return startOn(newDatabase(), extraProperties);
+    }
+
+    /**
+     * A fresh in-memory database URL; it outlives a context started on it, so a second context sees the same data.
+     */
+    static String newDatabase() {
+        return "jdbc:h2:mem:bench-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1";
+    }
+
+    static ShopContext startOn(String databaseUrl, String... extraProperties) {
+        List<String> properties = new ArrayList<>(List.of(
+                "spring.datasource.url=" + databaseUrl,
+                "spring.h2.console.enabled=false",
+                "server.port=0",
+                "logging.level.root=WARN"));
+        properties.addAll(List.of(extraProperties));
+        // Passed as command-line arguments, not default properties, so they win over application.yml
+        var context = new SpringApplicationBuilder(Application.class)
+                .run(properties.stream().map(property -> "--" + property).toArray(String[]::new));
+        return new ShopContext(context);
+    }
+
+    <T> T bean(Class<T> type) {
+        return context.getBean(type);
+    }
+
+    URI uri(String path) {
+        return URI.create("http://localhost:" + context.getEnvironment().getProperty("local.server.port") + path);
+    }
+
+    JdbcTemplate jdbc() {
+        return jdbc;
+    }
+
+    /**
+     * Inserts products until the catalog holds catalogSize rows and returns their ids in id order.
+     */
+    List<Long> seedCatalog(int catalogSize) {
+        int existing = jdbc.queryForObject("select count(*) from product", Integer.class);
+        List<Object[]> rows = new ArrayList<>();
+        for (int i = existing; i < catalogSize; i++) {
+            rows.add(new Object[]{"Product " + i, "Benchmark product number " + i, BigDecimal.valueOf(100 + i % 5000, 2)});
+            if (rows.size() == 1000) {
+                jdbc.batchUpdate("insert into product (name, description, price) values (?, ?, ?)", rows);
+                rows.clear();
+            }
+        }
+        if (!rows.isEmpty()) {
+            jdbc.batchUpdate("insert into product (name, description, price) values (?, ?, ?)", rows);
+        }
+        return jdbc.queryForList("select id from product order by id", Long.class);
+    }
+
+    /**
+     * Replaces the benchmark user's cart with one line for each of the first cartLines products.
+     */
+    void fillCart(List<Long> productIds, int cartLines) {
+        jdbc.update("delete from cart_item where username = ?", USER);
+        List<Object[]> rows = new ArrayList<>(cartLines);
+        for (int i = 0; i < cartLines; i++) {
+            rows.add(new Object[]{USER, 1 + i % 3, productIds.get(i)});
+        }
+        // Snapshots are taken from the product rows, so checkout finds every line current
+        jdbc.batchUpdate("""
+                insert into cart_item (username, quantity, product_id, name_snapshot, price_snapshot, product_version, last_modified, version)
+                select ?, ?, id, name, price, version, current_timestamp, 0 from product where id = ?
+                """, rows);
+    }
+
+    @Override
+    public void close() {
+        context.close();
+    }
+}
@@ -0,0 +1,144 @@
+package com.shop.bench;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Start-up comparison of the plain boot jar and the fast-start build (Spring AOT + CDS archive + faststart profile).
+ *
+ * Each mode is started "runs" times as a separate JVM on a free port. Time-to-first-request is measured from
+ * launching the process to the first 200 from GET /api/products; "started" is Spring's own "process running for"
+ * figure, and RSS is the resident set size (VmRSS, Linux only) right after that first request. Medians are printed.
+ * Run with ./gradlew -PfastStart startupBenchmark -PstartupArgs="runs=5", which builds the archive first.
+ */
+public final class StartupBenchmark {
+
+    private record Mode(String name, List<String> command) {}
+
+    private record Run(long firstRequestMillis, long startedMillis, long rssKb) {}
+
+    private static final Pattern STARTED = Pattern.compile("process running for ([0-9.]+)\\)");
+    private static final Duration TIMEOUT = Duration.ofMinutes(3);
+
+    public static void main(String[] args) throws Exception {
+        int runs = 3;
+        Path defaultJar = null;
+        Path fastStartJar = null;
+        Path archive = null;
+        for (String arg : args) {
+            String[] pair = arg.split("=", 2);
+            switch (pair[0]) {
+                case "runs" -> runs = Integer.parseInt(pair[1]);
+                case "defaultJar" -> defaultJar = Path.of(pair[1]);
+                case "fastStartJar" -> fastStartJar = Path.of(pair[1]);
+                case "archive" -> archive = Path.of(pair[1]);
+                default -> throw new IllegalArgumentException("Unknown argument: " + arg);
+            }
+        }
+        if (defaultJar == null || fastStartJar == null || archive == null) {
+            throw new IllegalArgumentException("defaultJar, fastStartJar and archive are required");
+        }
+
+        // The same JVM that runs the benchmark, so the archive was written by the same Java version
+        String java = ProcessHandle.current().info().command().orElse("java");
+        List<Mode> modes = List.of(
+                new Mode("default", List.of(java, "-jar", defaultJar.toString())),
+                new Mode("fast-start", List.of(java, "-XX:SharedArchiveFile=" + archive, "-Dspring.aot.enabled=true",
+                        "-jar", fastStartJar.toString(), "--spring.profiles.active=faststart")));
+
+        HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(1)).build();
+        for (Mode mode : modes) {
+            List<Run> results = new ArrayList<>();
+            for (int i = 0; i < runs; i++) {
+                Run run = start(mode, client);
+                System.out.printf("%-10s run %d: first request %6d ms, started %6d ms, rss %7d kB%n",
+                        mode.name(), i + 1, run.firstRequestMillis(), run.startedMillis(), run.rssKb());
+                results.add(run);
+            }
+            System.out.printf("%-10s median: first request %6d ms, started %6d ms, rss %7d kB%n", mode.name(),
+                    median(results.stream().mapToLong(Run::firstRequestMillis).toArray()),
+                    median(results.stream().mapToLong(Run::startedMillis).toArray()),
+                    median(results.stream().mapToLong(Run::rssKb).toArray()));
+        }
+    }
+
+    private static Run start(Mode mode, HttpClient client) throws Exception {
+        int port = freePort();
+        Path log = Files.createTempFile("startup-" + mode.name(), ".log");
+        List<String> command = new ArrayList<>(mode.command());
+        command.add("--server.port=" + port);
+        long began = System.nanoTime();
+        Process process = new ProcessBuilder(command).redirectErrorStream(true).redirectOutput(log.toFile()).start();
+        try {
+            URI products = URI.create("http://localhost:" + port + "/api/products");
+            long deadline = began + TIMEOUT.toNanos();
+            while (!answers(client, products)) {
+                if (!process.isAlive() || System.nanoTime() > deadline) {
+                    throw new IllegalStateException(mode.name() + " did not start, see " + log);
+                }
+                Thread.sleep(20);
+            }
+            long firstRequestMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - began);
+            long rssKb = rssKb(process.pid());
+            Matcher started = STARTED.matcher(Files.readString(log));
+            long startedMillis = started.find() ? Math.round(Double.parseDouble(started.group(1)) * 1000) : -1;
+            Files.delete(log);
+            return new Run(firstRequestMillis, startedMillis, rssKb);
+        } finally {
+            process.destroy();
+            if (!process.waitFor(30, TimeUnit.SECONDS)) {
+                process.destroyForcibly();
+            }
+        }
+    }
+
+    private static boolean answers(HttpClient client, URI uri) {
+        try {
+            HttpRequest request = HttpRequest.newBuilder(uri).timeout(Duration.ofSeconds(5)).GET().build();
+            return client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode() == 200;
+        } catch (IOException e) {
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private static long rssKb(long pid) throws IOException {
+        Path status = Path.of("/proc/" + pid + "/status");
+        if (!Files.exists(status)) {
+            return -1;
+        }
+        for (String line : Files.readAllLines(status)) {
+            if (line.startsWith("VmRSS:")) {
+                return Long.parseLong(line.replaceAll("[^0-9]", ""));
+            }
+        }
+        return -1;
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private static long median(long[] values) {
+        long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+}
@@ -0,0 +1,88 @@
+package com.shop.bench;
+
+import com.shop.inventory.InsufficientStockException;
+import com.shop.inventory.InventoryService;
+import com.shop.order.CheckoutService;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Oversell check: N users each hold one unit of the same SKU in their cart and all check out at once
+ * against a smaller stock. Exactly `stock` orders must succeed, every other checkout must fail with
+ * InsufficientStockException, and the stock must end at zero. Exits with status 1 otherwise.
+ * The default size runs on every build as StockOversellTest; this main is for trying other sizes.
+ *
+ * ./gradlew stockStressTest -PstockStressArgs="checkouts=1000 stock=100"
+ */
+public final class StockStressTest {
+
+    public static void main(String[] args) throws Exception {
+        int checkouts = 1000;
+        int stock = 100;
+        for (String arg : args) {
+            String[] pair = arg.split("=", 2);
+            switch (pair[0]) {
+                case "checkouts" -> checkouts = Integer.parseInt(pair[1]);
+                case "stock" -> stock = Integer.parseInt(pair[1]);
+                default -> throw new IllegalArgumentException("Unknown argument: " + arg);
+            }
+        }
+
+        boolean ok;
+        try (ShopContext shop = ShopContext.start()) {
+            Long sku = shop.seedCatalog(1).get(0);
+            InventoryService inventory = shop.bean(InventoryService.class);
+            CheckoutService checkoutService = shop.bean(CheckoutService.class);
+            inventory.setStock(sku, stock);
+
+            List<Object[]> carts = new ArrayList<>(checkouts);
+            for (int i = 0; i < checkouts; i++) {
+                carts.add(new Object[]{"stress" + i, sku});
+            }
+            shop.jdbc().batchUpdate("""
+                    insert into cart_item (username, product_id, quantity, name_snapshot, price_snapshot, product_version, last_modified, version)
+                    select ?, id, 1, name, price, version, current_timestamp, 0 from product where id = ?
+                    """, carts);
+
+            var placed = new LongAdder();
+            var soldOut = new LongAdder();
+            var otherErrors = new LongAdder();
+            var start = new CountDownLatch(1);
+            long began;
+            try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+                for (int i = 0; i < checkouts; i++) {
+                    String username = "stress" + i;
+                    executor.execute(() -> {
+                        try {
+                            start.await();
+                            checkoutService.checkout(username);
+                            placed.increment();
+                        } catch (InsufficientStockException e) {
+                            soldOut.increment();
+                        } catch (Exception e) {
+                            otherErrors.increment();
+                            System.err.println(username + ": " + e);
+                        }
+                    });
+                }
+                began = System.nanoTime();
+                start.countDown();
+            }
+            long millis = (System.nanoTime() - began) / 1_000_000;
+
+            int left = inventory.available(sku).orElseThrow();
+            Integer sold = shop.jdbc().queryForObject(
+                    "select coalesce(sum(quantity), 0) from order_item where product_id = ?", Integer.class, sku);
+            System.out.printf("checkouts=%d stock=%d placed=%d soldOut=%d errors=%d sold=%d left=%d in %d ms%n",
+                    checkouts, stock, placed.sum(), soldOut.sum(), otherErrors.sum(), sold, left, millis);
+            ok = sold == Math.min(stock, checkouts) && placed.sum() == sold && left == stock - sold
+                    && soldOut.sum() == checkouts - sold && otherErrors.sum() == 0;
+        }
+        System.out.println(ok ? "OK: no oversell" : "FAILED");
+        System.exit(ok ? 0 : 1);
+    }
+}
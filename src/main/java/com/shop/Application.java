@@ -2,8 +2,11 @@ package com.shop;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
+// @EnableScheduling turns on @Scheduled background jobs, similar to registering a hosted service in .NET
 @SpringBootApplication
+@EnableScheduling
 public class Application {
   public static void main(String[] args) {
     // Run the application
@@ -0,0 +1,53 @@
+package com.shop.analytics;
+
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Sales reports over all committed orders, read from memory; none of them touches the database.
+ * Admin only, see SecurityConfig.
+ */
+@RestController
+@RequestMapping("/api/analytics")
+public class AnalyticsController {
+
+    static final int DEFAULT_TOP_SELLERS = 10;
+    // A month of hours or a year of days
+    static final int MAX_HOURS = 31 * 24;
+    static final int MAX_DAYS = 366;
+
+    private final SalesAnalyticsService analytics;
+
+    public AnalyticsController(SalesAnalyticsService analytics) {
+        this.analytics = analytics;
+    }
+
+    @GetMapping("/top-sellers")
+    public List<TopSeller> topSellers(@RequestParam(defaultValue = "" + DEFAULT_TOP_SELLERS) int limit) {
+        return analytics.topSellers(Math.max(1, Math.min(limit, analytics.maxTopSellers())));
+    }
+
+    /**
+     * Revenue, units and orders per hour or per UTC day: the last "last" buckets up to the one containing until
+     * (default now), oldest first. Empty buckets are included, so a chart needs no gap filling.
+     */
+    @GetMapping("/sales")
+    public List<SalesBucket> sales(@RequestParam(defaultValue = "DAY") SalesAnalyticsService.Granularity granularity,
+                                   @RequestParam(defaultValue = "30") int last,
+                                   @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant until) {
+        int max = granularity == SalesAnalyticsService.Granularity.HOUR ? MAX_HOURS : MAX_DAYS;
+        return analytics.sales(granularity, Math.max(1, Math.min(last, max)), until == null ? Instant.now() : until);
+    }
+
+    @GetMapping("/products/{productId}")
+    public ProductSales product(@PathVariable Long productId, @RequestParam(defaultValue = "30") int days) {
+        return analytics.product(productId, Math.max(1, Math.min(days, analytics.maxProductDays())));
+    }
+}
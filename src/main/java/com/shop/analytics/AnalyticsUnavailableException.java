@@ -0,0 +1,14 @@
+package com.shop.analytics;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * Thrown while the sales rollups are still being built from the order table; reports would undercount until then.
+ */
+@ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+public class AnalyticsUnavailableException extends RuntimeException {
+    public AnalyticsUnavailableException() {
+        super("Sales analytics are being rebuilt, please retry");
+    }
+}
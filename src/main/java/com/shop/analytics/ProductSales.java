@@ -0,0 +1,13 @@
+package com.shop.analytics;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * One product's all-time sales and its units on each of the last days, oldest day first.
+ */
+public record ProductSales(Long productId, long units, BigDecimal revenue, List<Day> days) {
+
+    public record Day(LocalDate date, int units) { }
+}
@@ -0,0 +1,55 @@
+package com.shop.analytics;
+
+import java.util.Set;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Fork-join rebuild of a {@link SalesRollup}: splits an order id range in halves until a half is at most chunk ids
+ * wide, reads each such slice into its own rollup, and merges the results on the way back up.
+ * Slices share nothing while they are read, so they need no locking and run as wide as the pool allows.
+ */
+final class RollupScan extends RecursiveTask<RollupScan.Slice> {
+
+    /**
+     * The rollup of one id range, plus the ids of its recently created orders; a committed-order event for one
+     * of those may have arrived during the scan and must not be counted twice.
+     */
+    record Slice(SalesRollup rollup, Set<Long> recentOrderIds) {
+
+        Slice merge(Slice other) {
+            rollup.merge(other.rollup);
+            recentOrderIds.addAll(other.recentOrderIds);
+            return this;
+        }
+    }
+
+    @FunctionalInterface
+    interface SliceReader {
+        // Both ends inclusive
+        Slice read(long fromId, long toId);
+    }
+
+    private final SliceReader reader;
+    private final long fromId;
+    private final long toId;
+    private final long chunk;
+
+    RollupScan(SliceReader reader, long fromId, long toId, long chunk) {
+        this.reader = reader;
+        this.fromId = fromId;
+        this.toId = toId;
+        this.chunk = chunk;
+    }
+
+    @Override
+    protected Slice compute() {
+        if (toId - fromId < chunk) {
+            return reader.read(fromId, toId);
+        }
+        long middle = fromId + (toId - fromId) / 2;
+        var lower = new RollupScan(reader, fromId, middle, chunk);
+        lower.fork();
+        Slice upper = new RollupScan(reader, middle + 1, toId, chunk).compute();
+        return lower.join().merge(upper);
+    }
+}
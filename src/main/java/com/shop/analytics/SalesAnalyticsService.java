@@ -0,0 +1,259 @@
+package com.shop.analytics;
+
+import com.shop.common.Money;
+import com.shop.order.OrderPlacedEvent;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sales reports (top sellers, revenue per hour or day, one product's units) answered from an in-memory
+ * {@link SalesRollup} instead of GROUP BY queries against the orders table that checkout writes to.
+ *
+ * - At startup the rollup is rebuilt from the table by a {@link RollupScan} on its own fork-join pool, each slice
+ *   in a read-only transaction, so with replicas configured the scan runs on a replica.
+ * - Every committed order ({@link OrderPlacedEvent}, after commit) is added to it in O(top-sellers) time.
+ * - Orders that commit while the scan runs are held back and added once it is done, except those the scan
+ *   already counted. The scan remembers the ids of the orders created within REBUILD_OVERLAP before it started,
+ *   which covers any checkout transaction shorter than that.
+ * Reports are refused with 503 until the first rebuild is done. Hours and days are UTC.
+ * .NET equivalent is a singleton hosted service fed by a domain event handler, with Parallel.For for the rebuild.
+ */
+@Service
+public class SalesAnalyticsService {
+
+    public enum Granularity {
+        HOUR(1), DAY(SalesRollup.HOURS_PER_DAY);
+
+        private final int hours;
+
+        Granularity(int hours) {
+            this.hours = hours;
+        }
+    }
+
+    public record Stats(long orders, int products, boolean ready, long rebuildMillis) {}
+
+    private static final Logger log = LoggerFactory.getLogger(SalesAnalyticsService.class);
+    private static final Duration REBUILD_OVERLAP = Duration.ofMinutes(5);
+
+    // Ordered by order id, so the lines of one order are adjacent and each order is counted once
+    private static final String SCAN = """
+            SELECT o.id, o.created_at, i.product_id, i.quantity, i.unit_price_snapshot
+            FROM orders o JOIN order_item i ON i.order_id = o.id
+            WHERE o.id BETWEEN ? AND ?
+            ORDER BY o.id
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate readOnly;
+    private final int topSize;
+    private final int productDays;
+    private final long rebuildChunk;
+    private final Duration rebuildRetry;
+    // Own pool: the scan holds a connection per thread, so its width is capped below the connection pool's
+    private final ForkJoinPool scanPool;
+    private final ScheduledExecutorService rebuilder = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().name("sales-analytics-rebuild").daemon().factory());
+
+    private final Object lock = new Object();
+    // Guarded by lock; pending holds the orders committed before the first rebuild finished, and is null after
+    private SalesRollup rollup;
+    private List<OrderPlacedEvent> pending = new ArrayList<>();
+    private long rebuildMillis;
+
+    public SalesAnalyticsService(JdbcTemplate jdbcTemplate,
+                                 PlatformTransactionManager transactionManager,
+                                 @Value("${shop.analytics.top-sellers:100}") int topSize,
+                                 @Value("${shop.analytics.product-days:90}") int productDays,
+                                 @Value("${shop.analytics.rebuild-threads:4}") int rebuildThreads,
+                                 @Value("${shop.analytics.rebuild-chunk:10000}") long rebuildChunk,
+                                 @Value("${shop.analytics.rebuild-retry:PT30S}") Duration rebuildRetry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.readOnly = new TransactionTemplate(transactionManager);
+        this.readOnly.setReadOnly(true);
+        this.topSize = topSize;
+        this.productDays = productDays;
+        this.rebuildChunk = rebuildChunk;
+        this.rebuildRetry = rebuildRetry;
+        this.rollup = new SalesRollup(topSize, productDays);
+        ClassLoader classLoader = getClass().getClassLoader();
+        this.scanPool = new ForkJoinPool(rebuildThreads,
+                pool -> {
+                    ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+                    thread.setName("sales-analytics-scan-" + thread.getPoolIndex());
+                    // Same reason as the catalog import pool: JDBC and Hibernate classes come from the fat jar
+                    thread.setContextClassLoader(classLoader);
+                    return thread;
+                },
+                null, false);
+    }
+
+    /**
+     * The best-selling products by units, at most shop.analytics.top-sellers of them.
+     */
+    public List<TopSeller> topSellers(int limit) {
+        synchronized (lock) {
+            requireReady();
+            return rollup.topSellers(limit);
+        }
+    }
+
+    /**
+     * The last count hours or days up to and including the one containing until, oldest first.
+     */
+    public List<SalesBucket> sales(Granularity granularity, int count, Instant until) {
+        long lastHour = SalesRollup.hourOf(until.getEpochSecond());
+        long lastStart = Math.floorDiv(lastHour, granularity.hours) * granularity.hours;
+        long fromHour = lastStart - (long) (count - 1) * granularity.hours;
+        synchronized (lock) {
+            requireReady();
+            return rollup.buckets(fromHour, count, granularity.hours);
+        }
+    }
+
+    /**
+     * The product's totals and its daily units for the last days days (at most shop.analytics.product-days).
+     */
+    public ProductSales product(Long productId, int days) {
+        long today = Math.floorDiv(SalesRollup.hourOf(Instant.now().getEpochSecond()), SalesRollup.HOURS_PER_DAY);
+        synchronized (lock) {
+            requireReady();
+            return rollup.product(productId, today, Math.min(days, productDays));
+        }
+    }
+
+    public int maxTopSellers() {
+        return topSize;
+    }
+
+    public int maxProductDays() {
+        return productDays;
+    }
+
+    public Stats stats() {
+        synchronized (lock) {
+            return new Stats(rollup.orders(), rollup.products(), pending == null, rebuildMillis);
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    void onOrderPlaced(OrderPlacedEvent event) {
+        synchronized (lock) {
+            if (pending != null) {
+                pending.add(event);
+                return;
+            }
+            add(rollup, event);
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    void rebuildOnStartup() {
+        rebuilder.execute(this::rebuild);
+    }
+
+    private void rebuild() {
+        long started = System.nanoTime();
+        Instant recentSince = Instant.now().minus(REBUILD_OVERLAP);
+        RollupScan.Slice scanned;
+        try {
+            Map<String, Object> range = readOnly.execute(status ->
+                    jdbcTemplate.queryForMap("SELECT MIN(id) AS low, MAX(id) AS high FROM orders"));
+            Number low = (Number) range.get("low");
+            Number high = (Number) range.get("high");
+            scanned = low == null
+                    ? new RollupScan.Slice(new SalesRollup(topSize, productDays), new HashSet<>())
+                    : scanPool.invoke(new RollupScan((from, to) -> readSlice(from, to, recentSince),
+                            low.longValue(), high.longValue(), rebuildChunk));
+        } catch (RuntimeException e) {
+            log.warn("Sales analytics rebuild failed, retrying in {}", rebuildRetry, e);
+            rebuilder.schedule(this::rebuild, rebuildRetry.toMillis(), TimeUnit.MILLISECONDS);
+            return;
+        }
+
+        SalesRollup rebuilt = scanned.rollup();
+        rebuilt.rank();
+        int held;
+        long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+        synchronized (lock) {
+            held = pending.size();
+            for (OrderPlacedEvent event : pending) {
+                if (!scanned.recentOrderIds().contains(event.orderId())) {
+                    add(rebuilt, event);
+                }
+            }
+            rollup = rebuilt;
+            pending = null;
+            rebuildMillis = millis;
+        }
+        log.info("Sales analytics rebuilt: {} orders in {} ms, {} committed meanwhile",
+                rebuilt.orders(), millis, held);
+    }
+
+    private RollupScan.Slice readSlice(long fromId, long toId, Instant recentSince) {
+        return readOnly.execute(status -> {
+            var slice = new SalesRollup(topSize, productDays);
+            var recent = new HashSet<Long>();
+            long[] current = {Long.MIN_VALUE, 0};
+            jdbcTemplate.query(SCAN, rs -> {
+                long orderId = rs.getLong(1);
+                if (orderId != current[0]) {
+                    Instant createdAt = rs.getObject(2, OffsetDateTime.class).toInstant();
+                    current[0] = orderId;
+                    current[1] = createdAt.getEpochSecond();
+                    slice.addOrder(current[1]);
+                    if (!createdAt.isBefore(recentSince)) {
+                        recent.add(orderId);
+                    }
+                }
+                int quantity = rs.getInt(4);
+                long unitMinorUnits = Money.toMinorUnits(rs.getBigDecimal(5));
+                slice.addLine(current[1], rs.getLong(3), quantity, Money.multiply(unitMinorUnits, quantity));
+            }, fromId, toId);
+            return new RollupScan.Slice(slice, recent);
+        });
+    }
+
+    private static void add(SalesRollup target, OrderPlacedEvent event) {
+        long epochSecond = event.createdAt().getEpochSecond();
+        target.addOrder(epochSecond);
+        for (OrderPlacedEvent.Line line : event.lines()) {
+            target.addLine(epochSecond, line.productId(), line.quantity(),
+                    Money.multiply(line.unitPriceMinorUnits(), line.quantity()));
+        }
+    }
+
+    private void requireReady() {
+        if (pending != null) {
+            throw new AnalyticsUnavailableException();
+        }
+    }
+
+    @PreDestroy
+    void stop() {
+        rebuilder.shutdownNow();
+        scanPool.shutdownNow();
+    }
+}
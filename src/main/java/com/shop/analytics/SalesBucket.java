@@ -0,0 +1,9 @@
+package com.shop.analytics;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+
+/**
+ * Sales of one hour or one UTC day, starting at start; orders counts the orders placed in it.
+ */
+public record SalesBucket(Instant start, BigDecimal revenue, long units, long orders) { }
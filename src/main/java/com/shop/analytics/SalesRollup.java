@@ -0,0 +1,354 @@
+package com.shop.analytics;
+
+import com.shop.common.Money;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Sales totals held as parallel primitive arrays (columns) instead of rows, so a report reads a few array slots
+ * rather than grouping order items:
+ * - per UTC hour, from the hour of the first order: revenue in minor units, units sold and orders placed;
+ * - per product id: units sold and revenue over all time;
+ * - per product id and UTC day, for the last productDays days: units sold, one sparse table per day in a ring.
+ * The all-time top sellers by units are kept ranked as lines are added. Unit counts only grow, so a product can
+ * only enter the ranking by its own sale, and checking that one product against the last place keeps it exact.
+ *
+ * Not thread-safe: {@link SalesAnalyticsService} guards the live instance, and a rebuild fills one instance per
+ * slice of the order table and merges them.
+ */
+final class SalesRollup {
+
+    static final long SECONDS_PER_HOUR = 3600;
+    static final int HOURS_PER_DAY = 24;
+
+    private final int topSize;
+    private final int productDays;
+
+    // Slot i is hour firstHour + i, counted in hours since the epoch; hourSpan slots are in use
+    private long firstHour;
+    private int hourSpan;
+    private long[] hourRevenue = new long[0];
+    private long[] hourUnits = new long[0];
+    private int[] hourOrders = new int[0];
+
+    // Indexed by product id, which the sequence keeps dense
+    private long[] productUnits = new long[0];
+    private long[] productRevenue = new long[0];
+
+    // Day d lives in slot floorMod(d, productDays) as long as slotDay[slot] == d; a newer day takes the slot over
+    private final long[] slotDay;
+    private final DayUnits[] dayUnits;
+
+    // Product ids ranked by productUnits, best first; ties keep the product that got there first
+    private final int[] top;
+    private int topCount;
+    private long orders;
+
+    SalesRollup(int topSize, int productDays) {
+        this.topSize = topSize;
+        this.productDays = productDays;
+        this.slotDay = new long[productDays];
+        Arrays.fill(slotDay, Long.MIN_VALUE);
+        this.dayUnits = new DayUnits[productDays];
+        this.top = new int[topSize];
+    }
+
+    static long hourOf(long epochSecond) {
+        return Math.floorDiv(epochSecond, SECONDS_PER_HOUR);
+    }
+
+    /**
+     * Counts one order in the hour it was created; its lines are added separately.
+     */
+    void addOrder(long epochSecond) {
+        // The slot first: hourSlot may replace the array, and hourOrders[hourSlot(...)] would read the old one
+        int slot = hourSlot(hourOf(epochSecond));
+        hourOrders[slot]++;
+        orders++;
+    }
+
+    void addLine(long epochSecond, Long productId, int quantity, long lineMinorUnits) {
+        long hour = hourOf(epochSecond);
+        int slot = hourSlot(hour);
+        hourRevenue[slot] = Money.add(hourRevenue[slot], lineMinorUnits);
+        hourUnits[slot] += quantity;
+
+        int product = productSlot(productId);
+        productUnits[product] += quantity;
+        productRevenue[product] = Money.add(productRevenue[product], lineMinorUnits);
+        addDayUnits(Math.floorDiv(hour, HOURS_PER_DAY), product, quantity);
+        offerTop(product);
+    }
+
+    /**
+     * Adds everything counted by the other rollup. The ranking is not updated; call {@link #rank()} once the
+     * merging is done.
+     */
+    void merge(SalesRollup other) {
+        if (other.hourSpan > 0) {
+            hourSlot(other.firstHour);
+            int offset = hourSlot(other.firstHour + other.hourSpan - 1) - (other.hourSpan - 1);
+            for (int i = 0; i < other.hourSpan; i++) {
+                hourRevenue[offset + i] = Money.add(hourRevenue[offset + i], other.hourRevenue[i]);
+                hourUnits[offset + i] += other.hourUnits[i];
+                hourOrders[offset + i] += other.hourOrders[i];
+            }
+        }
+        if (other.productUnits.length > productUnits.length) {
+            productUnits = Arrays.copyOf(productUnits, other.productUnits.length);
+            productRevenue = Arrays.copyOf(productRevenue, other.productUnits.length);
+        }
+        for (int i = 0; i < other.productUnits.length; i++) {
+            productUnits[i] += other.productUnits[i];
+            productRevenue[i] = Money.add(productRevenue[i], other.productRevenue[i]);
+        }
+        for (int slot = 0; slot < productDays; slot++) {
+            DayUnits day = other.dayUnits[slot];
+            if (day == null || other.slotDay[slot] < slotDay[slot]) {
+                continue;
+            }
+            if (other.slotDay[slot] > slotDay[slot]) {
+                slotDay[slot] = other.slotDay[slot];
+                dayUnits[slot] = day.copy();
+                continue;
+            }
+            dayUnits[slot].addAll(day);
+        }
+        orders += other.orders;
+    }
+
+    /**
+     * Ranks the top sellers from scratch, after merging.
+     */
+    void rank() {
+        topCount = 0;
+        for (int product = 0; product < productUnits.length; product++) {
+            offerTop(product);
+        }
+    }
+
+    long orders() {
+        return orders;
+    }
+
+    int products() {
+        int sold = 0;
+        for (long units : productUnits) {
+            if (units > 0) {
+                sold++;
+            }
+        }
+        return sold;
+    }
+
+    List<TopSeller> topSellers(int limit) {
+        int count = Math.min(limit, topCount);
+        List<TopSeller> sellers = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int product = top[i];
+            sellers.add(new TopSeller((long) product, productUnits[product],
+                    Money.toBigDecimal(productRevenue[product])));
+        }
+        return sellers;
+    }
+
+    /**
+     * count buckets of hoursPerBucket hours each, the first starting at fromHour.
+     */
+    List<SalesBucket> buckets(long fromHour, int count, int hoursPerBucket) {
+        List<SalesBucket> buckets = new ArrayList<>(count);
+        for (int b = 0; b < count; b++) {
+            long start = fromHour + (long) b * hoursPerBucket;
+            long revenue = 0;
+            long units = 0;
+            long placed = 0;
+            // Only the part of the bucket that overlaps the hour columns has anything to add
+            long from = Math.max(start, firstHour);
+            long to = Math.min(start + hoursPerBucket, firstHour + hourSpan);
+            for (long hour = from; hour < to; hour++) {
+                int slot = (int) (hour - firstHour);
+                revenue = Money.add(revenue, hourRevenue[slot]);
+                units += hourUnits[slot];
+                placed += hourOrders[slot];
+            }
+            buckets.add(new SalesBucket(Instant.ofEpochSecond(start * SECONDS_PER_HOUR),
+                    Money.toBigDecimal(revenue), units, placed));
+        }
+        return buckets;
+    }
+
+    /**
+     * The product's all-time totals and its units on each of the days days up to lastDay (days since the epoch).
+     */
+    ProductSales product(Long productId, long lastDay, int days) {
+        int product = productId > 0 && productId < productUnits.length ? (int) (long) productId : -1;
+        List<ProductSales.Day> daily = new ArrayList<>(days);
+        for (long day = lastDay - days + 1; day <= lastDay; day++) {
+            int slot = Math.floorMod(day, productDays);
+            DayUnits sold = slotDay[slot] == day ? dayUnits[slot] : null;
+            int units = sold != null && product >= 0 ? sold.get(product) : 0;
+            daily.add(new ProductSales.Day(LocalDate.ofEpochDay(day), units));
+        }
+        return product < 0
+                ? new ProductSales(productId, 0, Money.toBigDecimal(0), daily)
+                : new ProductSales(productId, productUnits[product], Money.toBigDecimal(productRevenue[product]), daily);
+    }
+
+    private void addDayUnits(long day, int product, int quantity) {
+        int slot = Math.floorMod(day, productDays);
+        if (slotDay[slot] != day) {
+            if (slotDay[slot] > day) {
+                // Further back than the ring reaches
+                return;
+            }
+            slotDay[slot] = day;
+            dayUnits[slot] = new DayUnits();
+        }
+        dayUnits[slot].add(product, quantity);
+    }
+
+    private void offerTop(int product) {
+        long units = productUnits[product];
+        if (units == 0) {
+            return;
+        }
+        int position = -1;
+        for (int i = 0; i < topCount; i++) {
+            if (top[i] == product) {
+                position = i;
+                break;
+            }
+        }
+        if (position < 0) {
+            if (topCount < topSize) {
+                position = topCount++;
+            } else if (topSize > 0 && units > productUnits[top[topCount - 1]]) {
+                position = topCount - 1;
+            } else {
+                return;
+            }
+            top[position] = product;
+        }
+        while (position > 0 && productUnits[top[position - 1]] < units) {
+            top[position] = top[position - 1];
+            top[--position] = product;
+        }
+    }
+
+    private int productSlot(Long productId) {
+        int product = Math.toIntExact(productId);
+        if (product >= productUnits.length) {
+            int capacity = Math.max(product + 1, productUnits.length * 2);
+            productUnits = Arrays.copyOf(productUnits, capacity);
+            productRevenue = Arrays.copyOf(productRevenue, capacity);
+        }
+        return product;
+    }
+
+    // Grows the hour columns at either end so they cover the hour, and returns its slot
+    private int hourSlot(long hour) {
+        if (hourSpan == 0) {
+            firstHour = hour;
+        }
+        if (hour < firstHour) {
+            int shift = Math.toIntExact(firstHour - hour);
+            // Doubles only when the span outgrows the arrays; a rebuild meets a new earliest hour now and then
+            int needed = hourSpan + shift;
+            resizeHours(needed <= hourRevenue.length ? hourRevenue.length : Math.max(needed, hourRevenue.length * 2), shift);
+            firstHour = hour;
+            hourSpan += shift;
+        }
+        int slot = Math.toIntExact(hour - firstHour);
+        if (slot >= hourRevenue.length) {
+            resizeHours(Math.max(slot + 1, hourRevenue.length * 2), 0);
+        }
+        hourSpan = Math.max(hourSpan, slot + 1);
+        return slot;
+    }
+
+    private void resizeHours(int capacity, int shift) {
+        long[] revenue = new long[capacity];
+        long[] units = new long[capacity];
+        int[] placed = new int[capacity];
+        System.arraycopy(hourRevenue, 0, revenue, shift, hourSpan);
+        System.arraycopy(hourUnits, 0, units, shift, hourSpan);
+        System.arraycopy(hourOrders, 0, placed, shift, hourSpan);
+        hourRevenue = revenue;
+        hourUnits = units;
+        hourOrders = placed;
+    }
+
+    /**
+     * Product id -> units sold on one day, open addressing over primitive arrays. Only the products sold that day
+     * take a slot, so a day costs about 16 bytes per product sold rather than 4 bytes per product id in the catalog.
+     * Units only grow and nothing is removed, so a slot is free exactly while its units are 0.
+     */
+    private static final class DayUnits {
+        private int[] products = new int[16];
+        private int[] units = new int[16];
+        private int size;
+
+        void add(int product, int quantity) {
+            if (quantity == 0) {
+                return;
+            }
+            if ((size + 1) * 2 > products.length) {
+                resize(products.length * 2);
+            }
+            int i = index(product);
+            while (units[i] != 0 && products[i] != product) {
+                i = (i + 1) & (products.length - 1);
+            }
+            if (units[i] == 0) {
+                products[i] = product;
+                size++;
+            }
+            units[i] += quantity;
+        }
+
+        int get(int product) {
+            int i = index(product);
+            while (units[i] != 0) {
+                if (products[i] == product) {
+                    return units[i];
+                }
+                i = (i + 1) & (products.length - 1);
+            }
+            return 0;
+        }
+
+        void addAll(DayUnits other) {
+            for (int i = 0; i < other.products.length; i++) {
+                add(other.products[i], other.units[i]);
+            }
+        }
+
+        DayUnits copy() {
+            DayUnits copy = new DayUnits();
+            copy.products = products.clone();
+            copy.units = units.clone();
+            copy.size = size;
+            return copy;
+        }
+
+        private int index(int product) {
+            int h = product * 0x9E3779B9;
+            return (h ^ (h >>> 16)) & (products.length - 1);
+        }
+
+        private void resize(int capacity) {
+            int[] oldProducts = products;
+            int[] oldUnits = units;
+            products = new int[capacity];
+            units = new int[capacity];
+            size = 0;
+            for (int i = 0; i < oldProducts.length; i++) {
+                add(oldProducts[i], oldUnits[i]);
+            }
+        }
+    }
+}
@@ -0,0 +1,8 @@
+package com.shop.analytics;
+
+import java.math.BigDecimal;
+
+/**
+ * A product's place in GET /api/analytics/top-sellers: all-time units sold and the revenue they brought.
+ */
+public record TopSeller(Long productId, long units, BigDecimal revenue) { }
@@ -0,0 +1,71 @@
+package com.shop.cart;
+
+import com.shop.cart.CartService.CartChange;
+import com.shop.cart.CartService.ChangeType;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Validation and folding of bulk cart changes, shared by the {@link CartService} implementations.
+ */
+final class CartChanges {
+
+    private CartChanges() {}
+
+    /**
+     * Reduces the changes to one final change per product, in the order products first appear.
+     *
+     * @throws InvalidCartChangeException when a change is malformed
+     */
+    static Map<Long, CartChange> fold(List<CartChange> changes) {
+        Map<Long, CartChange> folded = new LinkedHashMap<>();
+        for (CartChange change : changes) {
+            if (change == null || change.type() == null || change.productId() == null) {
+                throw new InvalidCartChangeException("Each change needs a type and a productId");
+            }
+            if (change.type() != ChangeType.REMOVE) {
+                requireQuantity(change.productId(), change.quantity());
+            }
+            folded.merge(change.productId(), change, CartChanges::fold);
+        }
+        return folded;
+    }
+
+    /**
+     * The native MERGE and bulk updates bypass bean validation on CartItem, so every write path checks this first.
+     *
+     * @throws InvalidCartChangeException when quantity is missing or below 1
+     */
+    static void requireQuantity(Long productId, Integer quantity) {
+        if (quantity == null || quantity < 1) {
+            throw new InvalidCartChangeException("Quantity must be at least 1 for product: " + productId);
+        }
+    }
+
+    /**
+     * A line's quantity plus an added one; the MERGE would fail on an INTEGER overflow, and Math.addExact with a 500.
+     *
+     * @throws InvalidCartChangeException when the sum does not fit in an int
+     */
+    static int addQuantities(Long productId, int quantity, int added) {
+        long sum = (long) quantity + added;
+        if (sum != (int) sum) {
+            throw new InvalidCartChangeException("Quantity too large for product: " + productId);
+        }
+        return (int) sum;
+    }
+
+    // The result of applying "next" after "previous" to the same product
+    private static CartChange fold(CartChange previous, CartChange next) {
+        if (next.type() != ChangeType.ADD) {
+            return next;
+        }
+        return switch (previous.type()) {
+            case ADD -> new CartChange(ChangeType.ADD, next.productId(), addQuantities(next.productId(), previous.quantity(), next.quantity()));
+            case SET -> new CartChange(ChangeType.SET, next.productId(), addQuantities(next.productId(), previous.quantity(), next.quantity()));
+            case REMOVE -> new CartChange(ChangeType.SET, next.productId(), next.quantity());
+        };
+    }
+}
@@ -1,14 +1,20 @@
 package com.shop.cart;
 
+import jakarta.validation.Valid;
 import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.List;
+
 @RestController
 @RequestMapping("/api/cart")
 public class CartController {
 
+    static final int MAX_BULK_CHANGES = 500;
+
     private final CartService cartService;
 
     public CartController(CartService service) {
@@ -19,18 +25,45 @@ public class CartController {
         return userDetails.getUsername();
     }
 
-    public record AddItem(Long productId, @Min(1) Integer quantity) { }
+    public record AddItem(@NotNull Long productId, @NotNull @Min(1) Integer quantity) { }
 
     @GetMapping
     public CartService.CartView view(@AuthenticationPrincipal UserDetails userDetails) {
         return cartService.getCart(getUserName(userDetails));
     }
 
+    @GetMapping("/summary")
+    public CartService.CartSummary summary(@AuthenticationPrincipal UserDetails userDetails) {
+        return cartService.getSummary(getUserName(userDetails));
+    }
+
     @PostMapping("/items")
-    public void add(@AuthenticationPrincipal UserDetails userDetails, @RequestBody AddItem req) {
+    public void add(@AuthenticationPrincipal UserDetails userDetails, @Valid @RequestBody AddItem req) {
         cartService.addOrUpdate(getUserName(userDetails), req.productId(), req.quantity());
     }
 
+    /**
+     * Bulk add/set/remove in one transaction, e.g. re-ordering a previous order or importing a shopping list:
+     * [{"type":"ADD","productId":1,"quantity":2},{"type":"REMOVE","productId":3}]
+     * Returns the cart as it is after the changes.
+     */
+    @PatchMapping("/items")
+    public CartService.CartView change(@AuthenticationPrincipal UserDetails userDetails, @RequestBody List<CartService.CartChange> changes) {
+        if (changes.size() > MAX_BULK_CHANGES) {
+            throw new InvalidCartChangeException("At most " + MAX_BULK_CHANGES + " changes per request");
+        }
+        return cartService.applyChanges(getUserName(userDetails), changes);
+    }
+
+    /**
+     * Moves every line to its product's current name and price, and drops lines whose product was deleted.
+     * Checkout refuses a cart with stale lines, so the client calls this after showing the user the new prices.
+     */
+    @PostMapping("/refresh-prices")
+    public CartService.CartView refreshPrices(@AuthenticationPrincipal UserDetails userDetails) {
+        return cartService.refreshPrices(getUserName(userDetails));
+    }
+
     @PutMapping("/items/{productId}")
     public void update(@AuthenticationPrincipal UserDetails userDetails, @PathVariable Long productId, @RequestParam @Min(1) Integer quantity) {
         cartService.setQuantity(getUserName(userDetails), productId, quantity);
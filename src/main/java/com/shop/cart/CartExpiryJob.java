@@ -0,0 +1,194 @@
+package com.shop.cart;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Deletes abandoned carts: those whose every cart_item row is older than shop.cart.expiry.ttl by lastModified.
+ * A cart goes as a whole or not at all, so a user who touched one line keeps the others.
+ *
+ * Every interval the job walks the carts in username order. Each step takes the users of the next batch-size
+ * cart_item rows, expired or not, so a step reads a bounded range however few carts have expired; the expired
+ * ones among them are deleted in one short transaction, so it never holds many row locks nor one long
+ * transaction. That transaction locks the carts' rows before the delete re-checks lastModified, so a cart written
+ * after its user was picked is kept, even while that write is not yet committed. Between batches the job sleeps
+ * at least as long as the batch took, and never less than batch-pause, so it uses at most half of one connection
+ * and lets checkout traffic through. The {@link CartService} is told which carts went, after each batch commits.
+ * .NET equivalent is a BackgroundService on a PeriodicTimer running ExecuteDeleteAsync in chunks.
+ */
+@Component
+public class CartExpiryJob {
+
+    private static final Logger log = LoggerFactory.getLogger(CartExpiryJob.class);
+
+    // The unique (username, productId) index serves the keyset walk, the range scan and the per-user delete.
+    // The last user among the next batch-size rows ends the step's range
+    private static final String NEXT_RANGE_END = """
+            SELECT MAX(username) FROM (
+                SELECT username FROM cart_item WHERE username > ? ORDER BY username LIMIT ?
+            ) AS next_rows
+            """;
+
+    private static final String FIND_EXPIRED = """
+            SELECT username FROM cart_item
+            WHERE username > ? AND username <= ?
+            GROUP BY username
+            HAVING MAX(last_modified) < ?
+            """;
+
+    // Rows of the batch's carts, locked in index order; a write to them waits until the batch commits, and one
+    // that committed first is seen by the delete's re-check
+    private static final String LOCK_CARTS = """
+            SELECT id FROM cart_item WHERE username IN (%s) ORDER BY username, product_id FOR UPDATE
+            """;
+
+    private static final String DELETE_EXPIRED = """
+            DELETE FROM cart_item
+            WHERE username = ?
+              AND NOT EXISTS (SELECT 1 FROM cart_item r WHERE r.username = ? AND r.last_modified >= ?)
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final CartService cartService;
+    private final boolean enabled;
+    private final Duration ttl;
+    private final Duration interval;
+    private final int batchSize;
+    private final Duration batchPause;
+    private final Counter purgedRows;
+    private final Counter purgedCarts;
+    private final Timer runTimer;
+    private final ScheduledExecutorService runner = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().name("cart-expiry").daemon().factory());
+
+    public CartExpiryJob(JdbcTemplate jdbcTemplate,
+                         PlatformTransactionManager transactionManager,
+                         CartService cartService,
+                         MeterRegistry meterRegistry,
+                         @Value("${shop.cart.expiry.enabled:true}") boolean enabled,
+                         @Value("${shop.cart.expiry.ttl:P30D}") Duration ttl,
+                         @Value("${shop.cart.expiry.interval:PT1H}") Duration interval,
+                         @Value("${shop.cart.expiry.batch-size:500}") int batchSize,
+                         @Value("${shop.cart.expiry.batch-pause:50ms}") Duration batchPause) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("shop.cart.expiry.batch-size must be at least 1");
+        }
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.cartService = cartService;
+        this.enabled = enabled;
+        this.ttl = ttl;
+        this.interval = interval;
+        this.batchSize = batchSize;
+        this.batchPause = batchPause;
+        this.purgedRows = Counter.builder("shop.cart.expiry.purged.rows")
+                .description("cart_item rows deleted because their cart expired")
+                .register(meterRegistry);
+        this.purgedCarts = Counter.builder("shop.cart.expiry.purged.carts")
+                .description("Carts deleted because they were idle longer than the TTL")
+                .register(meterRegistry);
+        this.runTimer = Timer.builder("shop.cart.expiry.run")
+                .description("Time for one pass of the cart expiry job, pauses included")
+                .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    void schedule() {
+        if (enabled) {
+            runner.scheduleWithFixedDelay(this::run, interval.toMillis(), interval.toMillis(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @PreDestroy
+    void stop() {
+        runner.shutdownNow();
+    }
+
+    /**
+     * One pass over all carts. Returns the number of cart_item rows deleted.
+     */
+    long run() {
+        long started = System.nanoTime();
+        // Fixed for the whole pass, so a cart is judged the same way in every batch
+        OffsetDateTime cutoff = Instant.now().minus(ttl).atOffset(ZoneOffset.UTC);
+        long rows = 0;
+        int carts = 0;
+        try {
+            String after = "";
+            while (!Thread.currentThread().isInterrupted()) {
+                long batchStarted = System.nanoTime();
+                String upTo = jdbcTemplate.queryForObject(NEXT_RANGE_END, String.class, after, batchSize);
+                if (upTo == null) {
+                    break;
+                }
+                List<String> usernames = jdbcTemplate.queryForList(FIND_EXPIRED, String.class, after, upTo, cutoff);
+                after = upTo;
+                if (!usernames.isEmpty()) {
+                    List<String> purged = new ArrayList<>();
+                    rows += purge(usernames, cutoff, purged);
+                    if (!purged.isEmpty()) {
+                        cartService.expired(purged);
+                    }
+                    carts += purged.size();
+                }
+                long busyNanos = System.nanoTime() - batchStarted;
+                Thread.sleep(Math.max(batchPause.toMillis(), TimeUnit.NANOSECONDS.toMillis(busyNanos)));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            // The next pass starts over from the first username
+            log.warn("Cart expiry pass stopped after {} carts", carts, e);
+        } finally {
+            runTimer.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+        }
+        if (carts > 0) {
+            log.info("Cart expiry removed {} carts ({} rows) idle since before {}", carts, rows, cutoff);
+        }
+        return rows;
+    }
+
+    // Deletes the batch in one transaction, adds the users whose rows went to purged and returns the rows deleted;
+    // counted only once committed
+    private long purge(List<String> usernames, OffsetDateTime cutoff, List<String> purged) {
+        int[] deleted = transactionTemplate.execute(status -> {
+            jdbcTemplate.query(LOCK_CARTS.formatted(String.join(", ", Collections.nCopies(usernames.size(), "?"))),
+                    rs -> { }, usernames.toArray());
+            return jdbcTemplate.batchUpdate(DELETE_EXPIRED,
+                    usernames.stream().map(username -> new Object[]{username, username, cutoff}).toList());
+        });
+        long rows = 0;
+        for (int i = 0; i < usernames.size(); i++) {
+            if (deleted[i] > 0) {
+                purged.add(usernames.get(i));
+                rows += deleted[i];
+            }
+        }
+        purgedRows.increment(rows);
+        purgedCarts.increment(purged.size());
+        return rows;
+    }
+}
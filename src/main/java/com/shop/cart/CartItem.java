@@ -3,6 +3,9 @@ package com.shop.cart;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.Min;
 
+import java.math.BigDecimal;
+import java.time.Instant;
+
 @Entity
 @Table(uniqueConstraints = @UniqueConstraint(columnNames = {"username", "productId"}))
 public class CartItem {
@@ -20,6 +23,24 @@ public class CartItem {
     @Min(1)
     private int quantity = 1;
 
+    // What the user was shown for the product when the line was added (see PriceSnapshot); null on rows
+    // written before snapshots existed, which checkout treats as out of date
+    private String nameSnapshot;
+
+    @Column(precision = 12, scale = 2)
+    private BigDecimal priceSnapshot;
+
+    private Long productVersion;
+
+    // When the line was last written; carts whose lines are all older than shop.cart.expiry.ttl are purged
+    // (CartExpiryJob). The bulk statements that write cart_item set it themselves
+    @Column(nullable = false)
+    private Instant lastModified = Instant.now();
+
+    // Optimistic locking: an UPDATE that lost a race fails instead of silently overwriting the other write
+    @Version
+    private Long version;
+
     protected CartItem() {}
     public CartItem(String username, Long productId, int quantity) {
         this.username = username;
@@ -46,4 +67,20 @@ public class CartItem {
     public void setQuantity(int quantity) {
         this.quantity = quantity;
     }
+
+    public Instant getLastModified() {
+        return lastModified;
+    }
+
+    @PreUpdate
+    void touch() {
+        lastModified = Instant.now();
+    }
+
+    /**
+     * The price snapshot of the line, or null for a line stored without one.
+     */
+    public PriceSnapshot getSnapshot() {
+        return productVersion == null ? null : new PriceSnapshot(nameSnapshot, priceSnapshot, productVersion);
+    }
 }
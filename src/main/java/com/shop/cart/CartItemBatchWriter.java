@@ -0,0 +1,121 @@
+package com.shop.cart;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Applies many cart line changes of one user as JDBC batches: one round trip per kind of statement instead of
+ * one per product. Runs on the connection of the caller's JPA transaction, so the batches commit or roll back
+ * together with it. The statements bypass the persistence context; load CartItem entities only afterwards.
+ * .NET equivalent is EF Core's ExecuteUpdate/ExecuteDelete or a SqlBulkCopy/MERGE.
+ */
+@Repository
+public class CartItemBatchWriter {
+
+    // Every upsert is this MERGE; they differ only in what an existing line keeps
+    private static final String MERGE = """
+            MERGE INTO cart_item t
+            USING (VALUES (CAST(? AS VARCHAR), CAST(? AS BIGINT), CAST(? AS INTEGER),
+                    CAST(? AS VARCHAR), CAST(? AS NUMERIC(12, 2)), CAST(? AS BIGINT)))
+                AS s(username, product_id, quantity, name_snapshot, price_snapshot, product_version)
+            ON t.username = s.username AND t.product_id = s.product_id
+            WHEN MATCHED THEN UPDATE SET %s, last_modified = CURRENT_TIMESTAMP, version = t.version + 1
+            WHEN NOT MATCHED THEN INSERT (username, product_id, quantity, name_snapshot, price_snapshot, product_version,
+                    last_modified, version)
+                VALUES (s.username, s.product_id, s.quantity, s.name_snapshot, s.price_snapshot, s.product_version,
+                    CURRENT_TIMESTAMP, 0)
+            """;
+
+    private static final String SNAPSHOT =
+            "name_snapshot = s.name_snapshot, price_snapshot = s.price_snapshot, product_version = s.product_version";
+
+    // Adding a product takes its current snapshot: whoever adds it has just seen its name and price
+    private static final String ADD = MERGE.formatted("quantity = t.quantity + s.quantity, " + SNAPSHOT);
+
+    // Setting a quantity keeps the snapshot of an existing line; only a new line takes the current one
+    private static final String SET = MERGE.formatted("quantity = s.quantity");
+
+    // Writes a line's whole state, snapshot included, for stores that keep the authoritative copy elsewhere
+    private static final String PUT = MERGE.formatted("quantity = s.quantity, " + SNAPSHOT);
+
+    private static final String REMOVE = "DELETE FROM cart_item WHERE username = ? AND product_id = ?";
+
+    /**
+     * One line of any user's cart, for writes that span several carts; snapshot is unused for deletes.
+     */
+    public record Line(String username, Long productId, int quantity, PriceSnapshot snapshot) {}
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public CartItemBatchWriter(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Atomic "insert or add to quantity" in a single statement, so concurrent adds cannot lose an increment.
+     * Two concurrent inserts of a new line can still collide on the unique constraint; callers retry those.
+     */
+    public void addQuantity(String username, Long productId, int quantity, PriceSnapshot snapshot) {
+        jdbcTemplate.update(ADD, row(username, productId, quantity, snapshot));
+    }
+
+    /**
+     * The stored quantities of the user's lines for these products, locked until commit (SELECT ... FOR UPDATE), so
+     * a sum checked against them still holds when the ADD batch runs. Products without a line are absent.
+     */
+    public Map<Long, Integer> lockQuantities(String username, Collection<Long> productIds) {
+        String sql = "SELECT product_id, quantity FROM cart_item WHERE username = ? AND product_id IN ("
+                + String.join(", ", Collections.nCopies(productIds.size(), "?")) + ") FOR UPDATE";
+        List<Object> args = new ArrayList<>(productIds.size() + 1);
+        args.add(username);
+        args.addAll(productIds);
+        Map<Long, Integer> quantities = new HashMap<>();
+        jdbcTemplate.query(sql, rs -> {
+            quantities.put(rs.getLong("product_id"), rs.getInt("quantity"));
+        }, args.toArray());
+        return quantities;
+    }
+
+    public void addQuantities(String username, Map<Long, Integer> quantities, Map<Long, PriceSnapshot> snapshots) {
+        jdbcTemplate.batchUpdate(ADD, rows(username, quantities, snapshots));
+    }
+
+    public void setQuantities(String username, Map<Long, Integer> quantities, Map<Long, PriceSnapshot> snapshots) {
+        jdbcTemplate.batchUpdate(SET, rows(username, quantities, snapshots));
+    }
+
+    public void removeAll(String username, List<Long> productIds) {
+        jdbcTemplate.batchUpdate(REMOVE, productIds.stream().map(id -> new Object[]{username, id}).toList());
+    }
+
+    public void putLines(List<Line> lines) {
+        jdbcTemplate.batchUpdate(PUT, lines.stream()
+                .map(l -> row(l.username(), l.productId(), l.quantity(), l.snapshot()))
+                .toList());
+    }
+
+    public void removeLines(List<Line> lines) {
+        jdbcTemplate.batchUpdate(REMOVE, lines.stream().map(l -> new Object[]{l.username(), l.productId()}).toList());
+    }
+
+    private static List<Object[]> rows(String username, Map<Long, Integer> quantities, Map<Long, PriceSnapshot> snapshots) {
+        List<Object[]> rows = new ArrayList<>(quantities.size());
+        quantities.forEach((productId, quantity) -> rows.add(row(username, productId, quantity, snapshots.get(productId))));
+        return rows;
+    }
+
+    // A line loaded without a snapshot is written back without one
+    private static Object[] row(String username, Long productId, int quantity, PriceSnapshot snapshot) {
+        if (snapshot == null) {
+            return new Object[]{username, productId, quantity, null, null, null};
+        }
+        return new Object[]{username, productId, quantity, snapshot.name(), snapshot.price(), snapshot.productVersion()};
+    }
+}
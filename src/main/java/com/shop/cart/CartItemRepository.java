@@ -1,15 +1,95 @@
 package com.shop.cart;
 
+import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+import java.math.BigDecimal;
 import java.util.List;
 import java.util.Optional;
 
 public interface CartItemRepository extends JpaRepository<CartItem, Long> {
+    // Read-only, so with replicas configured it is served by one unless the user just wrote (see ReplicaRouting);
+    // inside a write transaction it joins that transaction's connection as before
+    @Transactional(readOnly = true)
     List<CartItem> findByUsername(String username);
 
     Optional<CartItem> findByUsernameAndProductId(String username, Long productId);
 
-    void deleteByUsernameAndProductId(String username, Long productId);
+    // SELECT ... FOR UPDATE: holds the row until commit, so the quantity read is still current when we write
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    Optional<CartItem> findForUpdateByUsernameAndProductId(String username, Long productId);
 
-    void deleteByUsername(String username);
+    interface CartTotals {
+        long getLines();
+        Long getItems();
+        BigDecimal getTotal();
+    }
+
+    // Totals use the price snapshots the cart shows, so no join with product is needed
+    @Transactional(readOnly = true)
+    @Query("""
+            select count(c) as lines, sum(c.quantity) as items, sum(c.quantity * c.priceSnapshot) as total
+            from CartItem c
+            where c.username = :username
+            """)
+    CartTotals sumByUsername(@Param("username") String username);
+
+    /**
+     * The cart with each line's snapshot and the product's current version, in one query and without loading
+     * Product entities; checkout refuses the cart if any line's version differs.
+     */
+    @Query("""
+            select new com.shop.cart.CheckoutLine(c.productId, c.quantity, c.nameSnapshot, c.priceSnapshot,
+                c.productVersion, p.version)
+            from CartItem c left join Product p on p.id = c.productId
+            where c.username = :username
+            order by c.id
+            """)
+    List<CheckoutLine> findCheckoutLines(@Param("username") String username);
+
+    /**
+     * Re-takes every line's snapshot from the current product row, one statement for the whole cart.
+     * Lines of deleted products are left alone; see deleteOrphans.
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("""
+            update CartItem c set
+                c.nameSnapshot = (select p.name from Product p where p.id = c.productId),
+                c.priceSnapshot = (select p.price from Product p where p.id = c.productId),
+                c.productVersion = (select p.version from Product p where p.id = c.productId),
+                c.lastModified = instant,
+                c.version = c.version + 1
+            where c.username = :username and exists (select p from Product p where p.id = c.productId)
+            """)
+    int refreshSnapshots(@Param("username") String username);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("""
+            delete from CartItem c
+            where c.username = :username and not exists (select p from Product p where p.id = c.productId)
+            """)
+    int deleteOrphans(@Param("username") String username);
+
+    /**
+     * Blind update of an existing line; returns the number of rows changed (0 when the line does not exist).
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("""
+            update CartItem c set c.quantity = :quantity, c.lastModified = instant, c.version = c.version + 1
+            where c.username = :username and c.productId = :productId
+            """)
+    int updateQuantity(@Param("username") String username, @Param("productId") Long productId, @Param("quantity") int quantity);
+
+    // Derived deleteBy methods load every row and delete them one by one; a bulk JPQL delete is a single statement
+    @Modifying
+    @Query("delete from CartItem c where c.username = :username and c.productId = :productId")
+    void deleteByUsernameAndProductId(@Param("username") String username, @Param("productId") Long productId);
+
+    @Modifying
+    @Query("delete from CartItem c where c.username = :username")
+    void deleteByUsername(@Param("username") String username);
 }
@@ -1,15 +1,40 @@
 package com.shop.cart;
 
 import java.math.BigDecimal;
+import java.util.Collection;
 import java.util.List;
 
 public interface CartService {
 
-    record CartLine(Long productId, String name, BigDecimal price, Integer quantity, BigDecimal lineTotal) {}
-    record CartView(List<CartLine> items, BigDecimal total) {}
+    /**
+     * name and price are the snapshot taken when the line was added; stale means the product changed since
+     * (currentPrice is then its new price, or null when the product no longer exists).
+     */
+    record CartLine(Long productId, String name, BigDecimal price, int quantity, BigDecimal lineTotal,
+                    boolean stale, BigDecimal currentPrice) {}
+
+    /**
+     * stale is true when any line is; checkout refuses such a cart until {@link #refreshPrices} is called.
+     */
+    record CartView(List<CartLine> items, BigDecimal total, boolean stale) {}
+    record CartSummary(int lines, int items, BigDecimal total) {
+        public static final CartSummary EMPTY = new CartSummary(0, 0, BigDecimal.ZERO);
+    }
+
+    enum ChangeType { ADD, SET, REMOVE }
+
+    /**
+     * One operation of a bulk change; quantity is ignored for REMOVE.
+     */
+    record CartChange(ChangeType type, Long productId, Integer quantity) {}
 
     CartView getCart(String username);
 
+    /**
+     * Line count, item count and total only; cheap enough to poll (e.g. for a header badge).
+     */
+    CartSummary getSummary(String username);
+
     void addOrUpdate(String username, Long productId, int quantity);
 
     void setQuantity(String username, Long productId, int quantity);
@@ -18,4 +43,33 @@ public interface CartService {
 
     void clear(String username);
 
+    /**
+     * Applies the changes in order, all in one transaction, and returns the resulting cart.
+     * Changes to the same product are folded first, e.g. SET 2 then ADD 1 is written as SET 3.
+     *
+     * @throws InvalidCartChangeException when a change is malformed or names an unknown product
+     */
+    CartView applyChanges(String username, List<CartChange> changes);
+
+    /**
+     * Takes a new snapshot of every line from the current products and drops lines whose product is gone,
+     * then returns the cart. This is how a user accepts changed prices.
+     */
+    CartView refreshPrices(String username);
+
+    /**
+     * Makes sure the user's cart is written to the cart_item table, joining the caller's transaction if there is
+     * one. Code that reads cart_item directly, like checkout, calls this first. The database-backed
+     * implementation writes through on every call, so there is nothing to do.
+     */
+    default void flush(String username) {
+    }
+
+    /**
+     * Told by {@link CartExpiryJob} once it has deleted these users' cart_item rows, so nothing cached about their
+     * carts outlives the rows.
+     */
+    default void expired(Collection<String> usernames) {
+    }
+
 }
\ No newline at end of file
@@ -1,25 +1,46 @@
 package com.shop.cart;
 
-import com.shop.product.Product;
-import com.shop.product.ProductRepository;
+import com.shop.common.Money;
+import com.shop.product.CatalogProduct;
+import com.shop.product.ProductCatalogCache;
+import io.micrometer.core.annotation.Timed;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
 import jakarta.transaction.Transactional;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Service;
+
 import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * @Service marks a class as a service-layer bean (business logic component) and registers it in the Spring context for dependency injection.
  * Its .NET equivalent is simply registering a service with the DI container in Program.cs, e.g. builder.Services.AddScoped<UserService>(); (or IUserService with its implementation).
  */
 @Service
+@ConditionalOnProperty(name = "shop.cart.store", havingValue = "database", matchIfMissing = true)
+@Timed(value = "shop.cart", description = "CartService calls")
 public class CartServiceImpl implements CartService {
 
     private final CartItemRepository cartItemRepository;
-    private final ProductRepository productRepository;
+    private final ProductCatalogCache productCatalogCache;
+    private final ConcurrencyRetry concurrencyRetry;
+    private final CartSummaryStore cartSummaryStore;
+    private final DistributionSummary cartLines;
+    private final CartItemBatchWriter batchWriter;
 
-    public CartServiceImpl(CartItemRepository cartItemRepository, ProductRepository productRepository) {
+    public CartServiceImpl(CartItemRepository cartItemRepository, ProductCatalogCache productCatalogCache, ConcurrencyRetry concurrencyRetry, CartSummaryStore cartSummaryStore, MeterRegistry meterRegistry, CartItemBatchWriter batchWriter) {
         this.cartItemRepository = cartItemRepository;
-        this.productRepository = productRepository;
+        this.productCatalogCache = productCatalogCache;
+        this.concurrencyRetry = concurrencyRetry;
+        this.cartSummaryStore = cartSummaryStore;
+        this.cartLines = CartViews.linesSummary(meterRegistry);
+        this.batchWriter = batchWriter;
     }
 
     /**
@@ -31,49 +52,156 @@ public class CartServiceImpl implements CartService {
     @Override
     public CartView getCart(String username) {
         List<CartItem> items = cartItemRepository.findByUsername(username);
-        List<CartLine> lines = items.stream().map(item -> {
-            Product product = productRepository.findById(item.getProductId()).orElseThrow(() -> new IllegalStateException("Product not found: " + item.getProductId()));
-            BigDecimal lineTotal = product.getPrice().multiply(BigDecimal.valueOf(item.getQuantity()));
-            return new CartLine(product.getId(), product.getName(), product.getPrice(), item.getQuantity(), lineTotal);
-        }).toList();
-        BigDecimal total = lines.stream()
-                .map(CartLine::lineTotal)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
-        return new CartView(lines, total);
+        cartLines.record(items.size());
+        // Prices come from the lines' snapshots; the products are only needed to tell whether they changed since
+        Map<Long, CatalogProduct> products = productCatalogCache.getAll(items.stream().map(CartItem::getProductId).toList());
+        return CartViews.build(items.stream()
+                .map(item -> new CartViews.StoredLine(item.getProductId(), item.getQuantity(), item.getSnapshot()))
+                .toList(), products);
+    }
+
+    @Override
+    public CartSummary getSummary(String username) {
+        return cartSummaryStore.get(username, () -> {
+            var totals = cartItemRepository.sumByUsername(username);
+            if (totals.getLines() == 0) {
+                return CartSummary.EMPTY;
+            }
+            // Lines without a snapshot add nothing to the total; all of them without one sum to null
+            BigDecimal total = totals.getTotal() == null ? Money.toBigDecimal(0) : totals.getTotal();
+            return new CartSummary((int) totals.getLines(), totals.getItems().intValue(), total);
+        });
     }
 
     /**
-     * @Transactional marks a method or class to run inside a database transaction.
-     * Spring opens the transaction before the method, commits on success, and rolls back on failure.
-     * Its .NET equivalent is using an EF Core DbContext transaction (await context.Database.BeginTransactionAsync()).
+     * A single MERGE adds to the existing quantity in the database, so there is no read-modify-write window.
+     * ConcurrencyRetry runs it in its own transaction and retries when two first-time adds race on the unique constraint.
+     * The line takes the product's current snapshot, which also re-prices the quantity already in the cart.
      */
-    @Transactional
     @Override
     public void addOrUpdate(String username, Long productId, int quantity) {
-        CartItem item = cartItemRepository.findByUsernameAndProductId(username, productId)
-                .orElse(new CartItem(username, productId, 0));
-        item.setQuantity(item.getQuantity() + quantity);
-        cartItemRepository.save(item);
+        CartChanges.requireQuantity(productId, quantity);
+        PriceSnapshot snapshot = PriceSnapshot.of(CartViews.requireProducts(productCatalogCache, List.of(productId)).get(productId));
+        concurrencyRetry.inTransaction(() -> {
+            // Locks an existing line first, so the summary delta can account for its old quantity and price
+            CartItem previous = cartItemRepository.findForUpdateByUsernameAndProductId(username, productId).orElse(null);
+            int total = previous == null ? quantity : CartChanges.addQuantities(productId, previous.getQuantity(), quantity);
+            batchWriter.addQuantity(username, productId, quantity, snapshot);
+            if (previous == null) {
+                cartSummaryStore.apply(username, 1, quantity, Money.multiply(snapshot.priceMinorUnits(), quantity));
+                return;
+            }
+            if (previous.getSnapshot() == null) {
+                cartSummaryStore.invalidate(username);
+                return;
+            }
+            // The whole line moves to the new price, not only the added quantity
+            long before = Money.multiply(previous.getSnapshot().priceMinorUnits(), previous.getQuantity());
+            long after = Money.multiply(snapshot.priceMinorUnits(), total);
+            cartSummaryStore.apply(username, 0, quantity, after - before);
+        });
     }
 
-    @Transactional
     @Override
     public void setQuantity(String username, Long productId, int quantity) {
-        CartItem item = cartItemRepository.findByUsernameAndProductId(username, productId)
-                .orElseThrow(() -> new IllegalArgumentException("Cart item not found"));
-        item.setQuantity(quantity);
-        cartItemRepository.save(item);
+        CartChanges.requireQuantity(productId, quantity);
+        concurrencyRetry.inTransaction(() -> {
+            // Locking the row first gives the exact quantity delta for the cart summary
+            CartItem item = cartItemRepository.findForUpdateByUsernameAndProductId(username, productId)
+                    .orElseThrow(() -> new IllegalArgumentException("Cart item not found"));
+            int previous = item.getQuantity();
+            cartItemRepository.updateQuantity(username, productId, quantity);
+            applyToSummary(username, item, 0, quantity - previous);
+        });
     }
 
+    /**
+     * @Transactional marks a method or class to run inside a database transaction.
+     * Spring opens the transaction before the method, commits on success, and rolls back on failure.
+     * Its .NET equivalent is using an EF Core DbContext transaction (await context.Database.BeginTransactionAsync()).
+     */
     @Transactional
     @Override
     public void remove(String username, Long productId) {
-        cartItemRepository.deleteByUsernameAndProductId(username, productId);
+        cartItemRepository.findForUpdateByUsernameAndProductId(username, productId).ifPresent(item -> {
+            cartItemRepository.deleteByUsernameAndProductId(username, productId);
+            applyToSummary(username, item, -1, -item.getQuantity());
+        });
     }
 
     @Transactional
     @Override
     public void clear(String username) {
         cartItemRepository.deleteByUsername(username);
+        cartSummaryStore.reset(username);
+    }
+
+    /**
+     * Folds the changes into one final operation per product, then writes all upserts and deletes as three
+     * JDBC batches at most. The summary is invalidated rather than patched: the deltas of a whole batch are not
+     * known without reading every affected line first.
+     */
+    @Override
+    public CartView applyChanges(String username, List<CartChange> changes) {
+        Map<Long, CartChange> folded = CartChanges.fold(changes);
+        Map<Long, PriceSnapshot> snapshots = new HashMap<>();
+        CartViews.requireProducts(productCatalogCache, folded.keySet()).forEach((id, product) -> snapshots.put(id, PriceSnapshot.of(product)));
+
+        Map<Long, Integer> adds = new LinkedHashMap<>();
+        Map<Long, Integer> sets = new LinkedHashMap<>();
+        List<Long> removes = new ArrayList<>();
+        folded.forEach((productId, change) -> {
+            switch (change.type()) {
+                case ADD -> adds.put(productId, change.quantity());
+                case SET -> sets.put(productId, change.quantity());
+                case REMOVE -> removes.add(productId);
+            }
+        });
+
+        return concurrencyRetry.inTransaction(() -> {
+            if (!removes.isEmpty()) {
+                batchWriter.removeAll(username, removes);
+            }
+            if (!sets.isEmpty()) {
+                batchWriter.setQuantities(username, sets, snapshots);
+            }
+            if (!adds.isEmpty()) {
+                // The MERGE would fail on an INTEGER overflow of the stored quantity; check the locked lines first
+                batchWriter.lockQuantities(username, adds.keySet()).forEach((productId, quantity) ->
+                        CartChanges.addQuantities(productId, quantity, adds.get(productId)));
+                batchWriter.addQuantities(username, adds, snapshots);
+            }
+            cartSummaryStore.invalidate(username);
+            return getCart(username);
+        });
+    }
+
+    /**
+     * Two bulk statements: one re-takes every snapshot from the product table, one deletes the lines whose
+     * product is gone.
+     */
+    @Override
+    public CartView refreshPrices(String username) {
+        return concurrencyRetry.inTransaction(() -> {
+            cartItemRepository.refreshSnapshots(username);
+            cartItemRepository.deleteOrphans(username);
+            cartSummaryStore.invalidate(username);
+            return getCart(username);
+        });
+    }
+
+    @Override
+    public void expired(Collection<String> usernames) {
+        usernames.forEach(cartSummaryStore::invalidate);
+    }
+
+    // The line keeps its snapshot price, so the total moves by that price times the quantity change
+    private void applyToSummary(String username, CartItem item, int lineDelta, int itemDelta) {
+        PriceSnapshot snapshot = item.getSnapshot();
+        if (snapshot == null) {
+            cartSummaryStore.invalidate(username);
+            return;
+        }
+        cartSummaryStore.apply(username, lineDelta, itemDelta, Money.multiply(snapshot.priceMinorUnits(), itemDelta));
     }
 }
@@ -0,0 +1,114 @@
+package com.shop.cart;
+
+import com.shop.common.Money;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Per-user {@link CartService.CartSummary} kept in memory and updated with deltas as the cart changes,
+ * so GET /api/cart/summary does not rebuild the cart. A missing summary is computed once with an aggregate query.
+ *
+ * Deltas are applied after the writing transaction commits. Every change is stamped with a global sequence
+ * number; a summary loaded from the database is only stored if nothing changed that user's cart (and nothing
+ * invalidated the store) after the load started, so a slow load can never overwrite a newer delta. Nor is it
+ * stored while a transaction that registered a change for that user is still open: the load may have read that
+ * transaction's committed rows, and the delta applied after the commit would then count them a second time.
+ * Totals use the lines' price snapshots, so a product change leaves every summary valid.
+ */
+@Component
+public class CartSummaryStore {
+
+    // totalMinorUnits mirrors summary.total() so deltas are added with long math
+    private record Entry(CartService.CartSummary summary, long totalMinorUnits, long stamp) {}
+
+    private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+    // Users with changes registered by transactions that have not completed yet, and how many such transactions
+    private final ConcurrentHashMap<String, Integer> pending = new ConcurrentHashMap<>();
+    private final AtomicLong sequence = new AtomicLong();
+    private final int maxEntries;
+    private volatile long clearedAt;
+
+    public CartSummaryStore(@Value("${shop.cart.summary.max-entries:100000}") int maxEntries) {
+        this.maxEntries = maxEntries;
+    }
+
+    public CartService.CartSummary get(String username, Supplier<CartService.CartSummary> loader) {
+        Entry entry = entries.get(username);
+        if (entry != null && entry.summary() != null) {
+            return entry.summary();
+        }
+        long loadStarted = sequence.get();
+        CartService.CartSummary loaded = loader.get();
+        if (entries.size() >= maxEntries) {
+            invalidateAll();
+        }
+        entries.compute(username, (key, current) -> {
+            boolean unchanged = current == null ? clearedAt <= loadStarted : current.stamp() <= loadStarted;
+            return unchanged && !pending.containsKey(key) ? new Entry(loaded, Money.toMinorUnits(loaded.total()), loadStarted) : current;
+        });
+        return loaded;
+    }
+
+    /**
+     * Adds a delta to the user's summary once the current transaction commits (right away without one).
+     */
+    public void apply(String username, int lineDelta, int itemDelta, long totalDeltaMinorUnits) {
+        afterCommit(username, () -> entries.compute(username, (key, current) -> {
+            long stamp = sequence.incrementAndGet();
+            if (current == null || current.summary() == null) {
+                return new Entry(null, 0, stamp);
+            }
+            CartService.CartSummary summary = current.summary();
+            long totalMinorUnits = Money.add(current.totalMinorUnits(), totalDeltaMinorUnits);
+            return new Entry(new CartService.CartSummary(
+                    summary.lines() + lineDelta,
+                    summary.items() + itemDelta,
+                    Money.toBigDecimal(totalMinorUnits)), totalMinorUnits, stamp);
+        }));
+    }
+
+    public void reset(String username) {
+        afterCommit(username, () -> entries.put(username, new Entry(CartService.CartSummary.EMPTY, 0, sequence.incrementAndGet())));
+    }
+
+    public void invalidate(String username) {
+        afterCommit(username, () -> entries.put(username, new Entry(null, 0, sequence.incrementAndGet())));
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public void invalidateAll() {
+        clearedAt = sequence.incrementAndGet();
+        entries.clear();
+    }
+
+    // The user counts as pending from now until the transaction completes; the action runs first, so its new
+    // stamp is in place before a load may store again
+    private void afterCommit(String username, Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        pending.merge(username, 1, Integer::sum);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                try {
+                    if (status == STATUS_COMMITTED) {
+                        action.run();
+                    }
+                } finally {
+                    pending.computeIfPresent(username, (key, count) -> count == 1 ? null : count - 1);
+                }
+            }
+        });
+    }
+}
@@ -0,0 +1,83 @@
+package com.shop.cart;
+
+import com.shop.cart.CartService.CartLine;
+import com.shop.cart.CartService.CartView;
+import com.shop.common.Money;
+import com.shop.product.CatalogProduct;
+import com.shop.product.ProductCatalogCache;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Builds the {@link CartView} from stored lines, and the product lookup and metric that go with it, shared by
+ * the {@link CartService} implementations.
+ */
+final class CartViews {
+
+    /**
+     * A stored cart line; snapshot is null for lines written before snapshots existed.
+     */
+    record StoredLine(Long productId, int quantity, PriceSnapshot snapshot) {}
+
+    private CartViews() {}
+
+    // Lines per viewed cart, whichever store is active
+    static DistributionSummary linesSummary(MeterRegistry meterRegistry) {
+        return DistributionSummary.builder("shop.cart.lines")
+                .description("Lines in a cart when it is viewed")
+                .register(meterRegistry);
+    }
+
+    /**
+     * The products a cart change refers to, from the catalog cache.
+     *
+     * @throws InvalidCartChangeException when any of them does not exist
+     */
+    static Map<Long, CatalogProduct> requireProducts(ProductCatalogCache productCatalogCache, Collection<Long> productIds) {
+        Map<Long, CatalogProduct> products = productCatalogCache.getAll(productIds);
+        for (Long productId : productIds) {
+            if (!products.containsKey(productId)) {
+                throw new InvalidCartChangeException("Product not found: " + productId);
+            }
+        }
+        return products;
+    }
+
+    /**
+     * Prices every line from its snapshot and flags the lines whose product changed since.
+     *
+     * @param products the current products of the lines; missing ones were deleted
+     */
+    static CartView build(List<StoredLine> stored, Map<Long, CatalogProduct> products) {
+        List<CartLine> lines = new ArrayList<>(stored.size());
+        long totalMinorUnits = 0;
+        boolean anyStale = false;
+        for (StoredLine line : stored) {
+            CatalogProduct product = products.get(line.productId());
+            PriceSnapshot snapshot = line.snapshot();
+            if (snapshot == null && product != null) {
+                // No snapshot to compare: show the product as it is now, but make the user confirm it
+                snapshot = new PriceSnapshot(product.name(), product.price(), product.priceMinorUnits(), -1);
+            }
+            boolean stale = snapshot == null || !snapshot.isCurrent(product);
+            BigDecimal currentPrice = stale && product != null ? product.price() : null;
+            long lineMinorUnits = snapshot == null ? 0 : Money.multiply(snapshot.priceMinorUnits(), line.quantity());
+            totalMinorUnits = Money.add(totalMinorUnits, lineMinorUnits);
+            anyStale |= stale;
+            lines.add(new CartLine(line.productId(),
+                    snapshot == null ? null : snapshot.name(),
+                    snapshot == null ? null : snapshot.price(),
+                    line.quantity(),
+                    Money.toBigDecimal(lineMinorUnits),
+                    stale,
+                    currentPrice));
+        }
+        return new CartView(lines, Money.toBigDecimal(totalMinorUnits), anyStale);
+    }
+}
@@ -0,0 +1,15 @@
+package com.shop.cart;
+
+import java.math.BigDecimal;
+
+/**
+ * A cart line as checkout needs it: the snapshot the order is priced from, and the current version of the
+ * product (null when the product is gone) to check that snapshot against.
+ */
+public record CheckoutLine(Long productId, int quantity, String name, BigDecimal price,
+                           Long snapshotVersion, Long currentVersion) {
+
+    public boolean isCurrent() {
+        return snapshotVersion != null && snapshotVersion.equals(currentVersion);
+    }
+}
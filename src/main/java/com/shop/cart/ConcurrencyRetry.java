@@ -0,0 +1,102 @@
+package com.shop.cart;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Runs a unit of work in its own transaction and retries it when it loses a race with a concurrent writer:
+ * optimistic/pessimistic lock failures and unique-constraint collisions on concurrent inserts. Any other integrity
+ * violation (a NOT NULL, a foreign key, a value out of range) fails the same way on every attempt and is rethrown as is.
+ * Retries back off exponentially with jitter up to maxBackoff.
+ * .NET equivalent is an EF Core execution strategy (EnableRetryOnFailure) or a Polly retry policy.
+ */
+@Component
+public class ConcurrencyRetry {
+
+    // SQLState of a unique constraint violation; through JPA it arrives as a plain DataIntegrityViolationException
+    private static final String UNIQUE_VIOLATION = "23505";
+
+    private final TransactionTemplate transactionTemplate;
+    private final int maxAttempts;
+    private final long initialBackoffNanos;
+    private final long maxBackoffNanos;
+
+    public ConcurrencyRetry(PlatformTransactionManager transactionManager,
+                            @Value("${shop.cart.retry.max-attempts:5}") int maxAttempts,
+                            @Value("${shop.cart.retry.initial-backoff:5ms}") Duration initialBackoff,
+                            @Value("${shop.cart.retry.max-backoff:200ms}") Duration maxBackoff) {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.maxAttempts = maxAttempts;
+        this.initialBackoffNanos = initialBackoff.toNanos();
+        this.maxBackoffNanos = maxBackoff.toNanos();
+    }
+
+    public void inTransaction(Runnable work) {
+        inTransaction(() -> {
+            work.run();
+            return null;
+        });
+    }
+
+    public <T> T inTransaction(Supplier<T> work) {
+        return inTransaction(work, ConcurrentCartUpdateException::new);
+    }
+
+    /**
+     * As above, but once the attempts run out the last failure is wrapped by exhausted instead of in a
+     * {@link ConcurrentCartUpdateException}, for work that is not a cart update.
+     */
+    public <T> T inTransaction(Supplier<T> work, Function<RuntimeException, ? extends RuntimeException> exhausted) {
+        // Inside a caller's transaction a failed statement has already doomed it; only the caller can retry
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            return work.get();
+        }
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return transactionTemplate.execute(status -> work.get());
+            } catch (ConcurrencyFailureException | DataIntegrityViolationException e) {
+                if (!lostRace(e)) {
+                    throw e;
+                }
+                if (attempt >= maxAttempts) {
+                    throw exhausted.apply(e);
+                }
+                backOff(attempt);
+            }
+        }
+    }
+
+    private static boolean lostRace(RuntimeException e) {
+        if (e instanceof ConcurrencyFailureException || e instanceof DuplicateKeyException) {
+            return true;
+        }
+        for (Throwable cause = e.getCause(); cause != null; cause = cause.getCause()) {
+            if (cause instanceof SQLException sqlException && UNIQUE_VIOLATION.equals(sqlException.getSQLState())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void backOff(int attempt) {
+        long ceiling = Math.min(maxBackoffNanos, initialBackoffNanos << Math.min(attempt - 1, 20));
+        try {
+            Thread.sleep(Duration.ofNanos(ThreadLocalRandom.current().nextLong(ceiling + 1)));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while retrying cart update", e);
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package com.shop.cart;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * Thrown when a cart write still conflicts with concurrent writes after all retries.
+ * @ResponseStatus maps it to 409 Conflict instead of a 500.
+ */
+@ResponseStatus(HttpStatus.CONFLICT)
+public class ConcurrentCartUpdateException extends RuntimeException {
+    public ConcurrentCartUpdateException(Throwable cause) {
+        super("Cart was modified concurrently, please retry", cause);
+    }
+}
@@ -0,0 +1,14 @@
+package com.shop.cart;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * A cart change that cannot be applied (unknown product, quantity below 1, ...); nothing is written.
+ */
+@ResponseStatus(HttpStatus.BAD_REQUEST)
+public class InvalidCartChangeException extends RuntimeException {
+    public InvalidCartChangeException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,30 @@
+package com.shop.cart;
+
+import com.shop.common.Money;
+import com.shop.product.CatalogProduct;
+
+import java.math.BigDecimal;
+
+/**
+ * Name and price of a product as the user saw them when the line was put in the cart, plus the product version
+ * they belong to. The cart shows and totals these values; checkout turns them into the order's item snapshots
+ * after one version comparison, instead of loading the products again. The price in minor units is taken from
+ * the product, or converted once when a stored line is read, so totals only multiply longs.
+ */
+public record PriceSnapshot(String name, BigDecimal price, long priceMinorUnits, long productVersion) {
+
+    public PriceSnapshot(String name, BigDecimal price, long productVersion) {
+        this(name, price, Money.toMinorUnits(price), productVersion);
+    }
+
+    public static PriceSnapshot of(CatalogProduct product) {
+        return new PriceSnapshot(product.name(), product.price(), product.priceMinorUnits(), product.version());
+    }
+
+    /**
+     * True when the product has not been changed since this snapshot was taken.
+     */
+    public boolean isCurrent(CatalogProduct product) {
+        return product != null && product.version() == productVersion;
+    }
+}
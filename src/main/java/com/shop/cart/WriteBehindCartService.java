@@ -0,0 +1,640 @@
+package com.shop.cart;
+
+import com.shop.common.Money;
+import com.shop.config.ReplicaRouting;
+import com.shop.product.CatalogProduct;
+import com.shop.product.ProductCatalogCache;
+import io.micrometer.core.annotation.Timed;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * Write-behind CartService, enabled with shop.cart.store=write-behind. Carts live in memory, split over
+ * shards by username, each shard behind its own lock; cart calls change only memory and never wait for
+ * the database. Carts not in memory are loaded from cart_item on first use.
+ *
+ * Each cart remembers which of its products changed. A single flusher thread writes those lines, as their
+ * current quantity or as a delete, to cart_item in one transaction of JDBC batches. It runs every
+ * flush-interval, or sooner once max-dirty-carts carts are waiting, and one last time on shutdown.
+ * Checkout calls {@link #flush(String)} inside its own transaction first, so it always reads the current cart;
+ * until that transaction ends the flusher leaves the user's rows alone. A failed flush, or a rolled back
+ * checkout, puts the lines back as dirty and they are written on a later pass. When the checkout commits, only
+ * the lines it read leave the cart; a line added or changed while it ran stays.
+ *
+ * Crash-loss bound: if the process dies without shutting down, the changes made since the last successful
+ * flush are lost. That is at most about flush-interval of cart activity, and never more than max-dirty-carts
+ * carts unless the database is failing. Placed orders are never affected. Idle carts are dropped from memory
+ * after idle-timeout, once they are flushed.
+ * .NET equivalent is an in-memory ConcurrentDictionary of carts persisted by a BackgroundService on a PeriodicTimer.
+ */
+@Service
+@ConditionalOnProperty(name = "shop.cart.store", havingValue = "write-behind")
+@Timed(value = "shop.cart", description = "CartService calls")
+public class WriteBehindCartService implements CartService {
+
+    private static final Logger log = LoggerFactory.getLogger(WriteBehindCartService.class);
+
+    // One user's cart; guarded by the lock of its shard
+    private static final class UserCart {
+        final LinkedHashMap<Long, Line> lines = new LinkedHashMap<>();
+        // Products changed since the last flush; written as their current state, so repeated changes collapse
+        final Set<Long> dirty = new HashSet<>();
+        long lastAccessNanos;
+    }
+
+    private static final class Shard {
+        final ReentrantLock lock = new ReentrantLock();
+        final HashMap<String, UserCart> carts = new HashMap<>();
+        final LinkedHashSet<String> dirtyUsers = new LinkedHashSet<>();
+        // Users whose cart rows a checkout or clear is writing in a still open transaction; the flusher skips them
+        final HashMap<String, Integer> pins = new HashMap<>();
+        // Bumped whenever a cart is dropped, so a load that raced with the drop is not installed
+        long generation;
+    }
+
+    // Quantity and snapshot of one cart line; snapshot is null for rows stored before snapshots existed
+    private record Line(int quantity, PriceSnapshot snapshot) {}
+
+    // Lines taken out of the dirty sets by a flush, per user, to put back if the write fails
+    private record Taken(Map<String, Set<Long>> productIds, List<CartItemBatchWriter.Line> upserts,
+                         List<CartItemBatchWriter.Line> deletes) {
+        boolean isEmpty() {
+            return productIds.isEmpty();
+        }
+    }
+
+    private final CartItemRepository cartItemRepository;
+    private final ProductCatalogCache productCatalogCache;
+    private final CartItemBatchWriter batchWriter;
+    private final ReplicaRouting replicaRouting;
+    private final TransactionTemplate transactionTemplate;
+    private final Shard[] shards;
+    private final Duration flushInterval;
+    private final int maxDirtyCarts;
+    private final long idleTimeoutNanos;
+    private final AtomicInteger dirtyCarts = new AtomicInteger();
+    private final Semaphore wakeUp = new Semaphore(0);
+    // Background flushes run one at a time, so an older snapshot can never be written after a newer one
+    private final ReentrantLock flushLock = new ReentrantLock();
+    // Users taken by the background flush that is being written right now
+    private final Set<String> inFlight = ConcurrentHashMap.newKeySet();
+    private final DistributionSummary cartLines;
+    private final Timer flushTimer;
+    private final Counter flushFailures;
+    private long lastEvictionNanos = System.nanoTime();
+    private volatile boolean running;
+    private Thread flusher;
+
+    public WriteBehindCartService(CartItemRepository cartItemRepository,
+                                  ProductCatalogCache productCatalogCache,
+                                  CartItemBatchWriter batchWriter,
+                                  ReplicaRouting replicaRouting,
+                                  PlatformTransactionManager transactionManager,
+                                  MeterRegistry meterRegistry,
+                                  @Value("${shop.cart.write-behind.shards:64}") int shards,
+                                  @Value("${shop.cart.write-behind.flush-interval:PT1S}") Duration flushInterval,
+                                  @Value("${shop.cart.write-behind.max-dirty-carts:10000}") int maxDirtyCarts,
+                                  @Value("${shop.cart.write-behind.idle-timeout:PT30M}") Duration idleTimeout) {
+        this.cartItemRepository = cartItemRepository;
+        this.productCatalogCache = productCatalogCache;
+        this.batchWriter = batchWriter;
+        this.replicaRouting = replicaRouting;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.shards = new Shard[shards];
+        for (int i = 0; i < shards; i++) {
+            this.shards[i] = new Shard();
+        }
+        this.flushInterval = flushInterval;
+        this.maxDirtyCarts = maxDirtyCarts;
+        this.idleTimeoutNanos = idleTimeout.toNanos();
+        this.cartLines = CartViews.linesSummary(meterRegistry);
+        this.flushTimer = Timer.builder("shop.cart.write.behind.flush")
+                .description("Time to write the dirty carts to the database")
+                .register(meterRegistry);
+        this.flushFailures = Counter.builder("shop.cart.write.behind.flush.failures").register(meterRegistry);
+        Gauge.builder("shop.cart.write.behind.dirty.carts", dirtyCarts, AtomicInteger::get).register(meterRegistry);
+    }
+
+    @Override
+    public CartView getCart(String username) {
+        List<CartViews.StoredLine> stored = access(username, cart -> {
+            List<CartViews.StoredLine> lines = new ArrayList<>(cart.lines.size());
+            cart.lines.forEach((productId, line) ->
+                    lines.add(new CartViews.StoredLine(productId, line.quantity(), line.snapshot())));
+            return lines;
+        });
+        cartLines.record(stored.size());
+        return CartViews.build(stored, productCatalogCache.getAll(stored.stream().map(CartViews.StoredLine::productId).toList()));
+    }
+
+    /**
+     * Computed from memory each time, from the snapshots alone; like the aggregate query, lines without a
+     * snapshot are left out of the total.
+     */
+    @Override
+    public CartSummary getSummary(String username) {
+        return access(username, cart -> {
+            if (cart.lines.isEmpty()) {
+                return CartSummary.EMPTY;
+            }
+            int items = 0;
+            long totalMinorUnits = 0;
+            for (Line line : cart.lines.values()) {
+                items += line.quantity();
+                if (line.snapshot() != null) {
+                    totalMinorUnits = Money.add(totalMinorUnits, Money.multiply(line.snapshot().priceMinorUnits(), line.quantity()));
+                }
+            }
+            return new CartSummary(cart.lines.size(), items, Money.toBigDecimal(totalMinorUnits));
+        });
+    }
+
+    @Override
+    public void addOrUpdate(String username, Long productId, int quantity) {
+        CartChanges.requireQuantity(productId, quantity);
+        PriceSnapshot snapshot = PriceSnapshot.of(CartViews.requireProducts(productCatalogCache, Set.of(productId)).get(productId));
+        access(username, cart -> {
+            add(cart, productId, quantity, snapshot);
+            cart.dirty.add(productId);
+            return null;
+        });
+    }
+
+    @Override
+    public void setQuantity(String username, Long productId, int quantity) {
+        CartChanges.requireQuantity(productId, quantity);
+        access(username, cart -> {
+            Line line = cart.lines.get(productId);
+            if (line == null) {
+                throw new IllegalArgumentException("Cart item not found");
+            }
+            cart.lines.put(productId, new Line(quantity, line.snapshot()));
+            cart.dirty.add(productId);
+            return null;
+        });
+    }
+
+    @Override
+    public void remove(String username, Long productId) {
+        access(username, cart -> {
+            if (cart.lines.remove(productId) != null) {
+                cart.dirty.add(productId);
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Deletes the cart_item rows right away, in the caller's transaction (checkout) or a new one, and drops
+     * the in-memory cart once that commits. If the transaction flushed the cart first, as checkout does, only
+     * the lines that flush saw are dropped; the rest are written back by the next flush. On rollback the
+     * in-memory cart, including unflushed changes, stays.
+     */
+    @Override
+    public void clear(String username) {
+        transactionTemplate.executeWithoutResult(status -> {
+            Map<Long, Line> read = flushedInTransaction().get(username);
+            pin(username, () -> {
+                if (read == null) {
+                    drop(username);
+                } else {
+                    dropRead(username, read);
+                }
+            }, () -> { });
+            cartItemRepository.deleteByUsername(username);
+        });
+    }
+
+    @Override
+    public CartView applyChanges(String username, List<CartChange> changes) {
+        Map<Long, CartChange> folded = CartChanges.fold(changes);
+        Map<Long, CatalogProduct> products = CartViews.requireProducts(productCatalogCache, folded.keySet());
+        access(username, cart -> {
+            // Checked before anything changes, so an add that overflows rejects the whole batch
+            folded.forEach((productId, change) -> {
+                Line line = cart.lines.get(productId);
+                if (change.type() == ChangeType.ADD && line != null) {
+                    CartChanges.addQuantities(productId, line.quantity(), change.quantity());
+                }
+            });
+            folded.forEach((productId, change) -> {
+                PriceSnapshot snapshot = PriceSnapshot.of(products.get(productId));
+                switch (change.type()) {
+                    case ADD -> add(cart, productId, change.quantity(), snapshot);
+                    // Like the SQL path, an absolute quantity keeps the snapshot the line already has
+                    case SET -> cart.lines.compute(productId, (id, line) ->
+                            new Line(change.quantity(), line == null ? snapshot : line.snapshot()));
+                    case REMOVE -> cart.lines.remove(productId);
+                }
+                cart.dirty.add(productId);
+            });
+            return null;
+        });
+        return getCart(username);
+    }
+
+    /**
+     * Re-takes every snapshot from the catalog and drops the lines whose product is gone; all of them are
+     * written by the next flush.
+     */
+    @Override
+    public CartView refreshPrices(String username) {
+        List<Long> productIds = access(username, cart -> new ArrayList<>(cart.lines.keySet()));
+        Map<Long, CatalogProduct> products = productCatalogCache.getAll(productIds);
+        access(username, cart -> {
+            for (Long productId : productIds) {
+                Line line = cart.lines.get(productId);
+                if (line == null) {
+                    continue;
+                }
+                CatalogProduct product = products.get(productId);
+                if (product == null) {
+                    cart.lines.remove(productId);
+                } else {
+                    cart.lines.put(productId, new Line(line.quantity(), PriceSnapshot.of(product)));
+                }
+                cart.dirty.add(productId);
+            }
+            return null;
+        });
+        return getCart(username);
+    }
+
+    /**
+     * Writes the user's pending lines in the caller's transaction. If that transaction rolls back,
+     * the lines are marked dirty again so a later flush writes them. The lines as written are remembered
+     * until the transaction ends, for {@link #clear(String)}.
+     */
+    @Override
+    public void flush(String username) {
+        transactionTemplate.executeWithoutResult(status -> {
+            Taken[] taken = new Taken[1];
+            pin(username, () -> { }, () -> {
+                if (taken[0] != null) {
+                    restoreDirty(taken[0]);
+                }
+            });
+            Shard shard = shardFor(username);
+            UserCart cart = lockAndLoad(shard, username);
+            try {
+                taken[0] = takeDirty(List.of(username), false);
+                flushedInTransaction().put(username, new HashMap<>(cart.lines));
+            } finally {
+                shard.lock.unlock();
+            }
+            write(taken[0]);
+        });
+    }
+
+    /**
+     * A cart still in memory was used within idle-timeout, far less than the expiry TTL, so it was not abandoned
+     * after all: all its lines are marked dirty and the next flush writes them back. Carts not in memory are
+     * left deleted, and a load that read the rows before the delete is not installed.
+     */
+    @Override
+    public void expired(Collection<String> usernames) {
+        for (String username : usernames) {
+            Shard shard = shardFor(username);
+            shard.lock.lock();
+            try {
+                UserCart cart = shard.carts.get(username);
+                if (cart == null) {
+                    shard.generation++;
+                } else if (!cart.lines.isEmpty()) {
+                    cart.dirty.addAll(cart.lines.keySet());
+                    if (shard.dirtyUsers.add(username)) {
+                        dirtyCarts.incrementAndGet();
+                    }
+                }
+            } finally {
+                shard.lock.unlock();
+            }
+        }
+    }
+
+    @PostConstruct
+    void start() {
+        running = true;
+        flusher = Thread.ofPlatform().name("cart-flusher").daemon().start(this::flushLoop);
+    }
+
+    /**
+     * Stops the flusher and writes everything still pending, before the DataSource is closed.
+     */
+    @PreDestroy
+    void stop() throws InterruptedException {
+        running = false;
+        wakeUp.release();
+        flusher.join(TimeUnit.SECONDS.toMillis(30));
+        flushAll();
+    }
+
+    private void flushLoop() {
+        while (running) {
+            try {
+                wakeUp.tryAcquire(flushInterval.toMillis(), TimeUnit.MILLISECONDS);
+                wakeUp.drainPermits();
+                flushAll();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                log.error("Cart flush failed", e);
+            }
+        }
+    }
+
+    void flushAll() {
+        flushLock.lock();
+        try {
+            List<String> usernames = new ArrayList<>();
+            for (Shard shard : shards) {
+                shard.lock.lock();
+                try {
+                    usernames.addAll(shard.dirtyUsers);
+                } finally {
+                    shard.lock.unlock();
+                }
+            }
+            Taken taken = takeDirty(usernames, true);
+            if (!taken.isEmpty()) {
+                long started = System.nanoTime();
+                try {
+                    transactionTemplate.executeWithoutResult(status -> write(taken));
+                    flushTimer.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+                } catch (RuntimeException e) {
+                    flushFailures.increment();
+                    restoreDirty(taken);
+                    log.warn("Could not flush {} carts, will retry", taken.productIds().size(), e);
+                } finally {
+                    inFlight.clear();
+                }
+            }
+            evictIdle();
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    // Runs the function on the user's cart under its shard lock, loading the cart first if needed
+    private <T> T access(String username, Function<UserCart, T> function) {
+        Shard shard = shardFor(username);
+        UserCart cart = lockAndLoad(shard, username);
+        try {
+            T result = function.apply(cart);
+            cart.lastAccessNanos = System.nanoTime();
+            if (!cart.dirty.isEmpty() && shard.dirtyUsers.add(username)
+                    && dirtyCarts.incrementAndGet() >= maxDirtyCarts) {
+                wakeUp.release();
+            }
+            return result;
+        } finally {
+            shard.lock.unlock();
+        }
+    }
+
+    // Returns with the shard lock held; the database is read without it
+    private UserCart lockAndLoad(Shard shard, String username) {
+        while (true) {
+            shard.lock.lock();
+            UserCart cart = shard.carts.get(username);
+            if (cart != null) {
+                return cart;
+            }
+            long generation = shard.generation;
+            shard.lock.unlock();
+
+            // The flusher's writes carry no user, so read-your-writes does not cover them; a replica could
+            // return rows older than the last flush, which would then be written back
+            List<CartItem> rows = replicaRouting.onPrimary(() -> cartItemRepository.findByUsername(username));
+            shard.lock.lock();
+            cart = shard.carts.get(username);
+            if (cart != null) {
+                return cart;
+            }
+            if (shard.generation == generation) {
+                cart = new UserCart();
+                for (CartItem row : rows) {
+                    cart.lines.put(row.getProductId(), new Line(row.getQuantity(), row.getSnapshot()));
+                }
+                shard.carts.put(username, cart);
+                return cart;
+            }
+            shard.lock.unlock();
+        }
+    }
+
+    /**
+     * Takes the dirty lines of the given users out of their carts. The background flush skips pinned users,
+     * leaving them to the checkout that pinned them, and marks what it took as in flight.
+     */
+    private Taken takeDirty(Collection<String> usernames, boolean background) {
+        Map<String, Set<Long>> productIds = new HashMap<>();
+        List<CartItemBatchWriter.Line> upserts = new ArrayList<>();
+        List<CartItemBatchWriter.Line> deletes = new ArrayList<>();
+        for (String username : usernames) {
+            Shard shard = shardFor(username);
+            shard.lock.lock();
+            try {
+                if ((background && shard.pins.containsKey(username)) || !shard.dirtyUsers.remove(username)) {
+                    continue;
+                }
+                dirtyCarts.decrementAndGet();
+                if (background) {
+                    inFlight.add(username);
+                }
+                UserCart cart = shard.carts.get(username);
+                for (Long productId : cart.dirty) {
+                    Line line = cart.lines.get(productId);
+                    if (line == null) {
+                        deletes.add(new CartItemBatchWriter.Line(username, productId, 0, null));
+                    } else {
+                        upserts.add(new CartItemBatchWriter.Line(username, productId, line.quantity(), line.snapshot()));
+                    }
+                }
+                productIds.put(username, new HashSet<>(cart.dirty));
+                cart.dirty.clear();
+            } finally {
+                shard.lock.unlock();
+            }
+        }
+        return new Taken(productIds, upserts, deletes);
+    }
+
+    private void write(Taken taken) {
+        if (!taken.deletes().isEmpty()) {
+            batchWriter.removeLines(taken.deletes());
+        }
+        if (!taken.upserts().isEmpty()) {
+            batchWriter.putLines(taken.upserts());
+        }
+    }
+
+    /**
+     * Keeps the background flush away from the user's rows until the current transaction ends, then runs
+     * onCommit or onRollback. If the background flush already took this user's lines, waits for it to finish
+     * first, so its older snapshot cannot land after this transaction's writes. No lock is held while the
+     * transaction runs, so a checkout waiting on rows never blocks the flusher, nor the other way round.
+     */
+    private void pin(String username, Runnable onCommit, Runnable onRollback) {
+        Shard shard = shardFor(username);
+        shard.lock.lock();
+        try {
+            shard.pins.merge(username, 1, Integer::sum);
+        } finally {
+            shard.lock.unlock();
+        }
+        if (inFlight.contains(username)) {
+            flushLock.lock();
+            flushLock.unlock();
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_COMMITTED) {
+                    onCommit.run();
+                } else {
+                    onRollback.run();
+                }
+                shard.lock.lock();
+                try {
+                    shard.pins.computeIfPresent(username, (key, pins) -> pins == 1 ? null : pins - 1);
+                } finally {
+                    shard.lock.unlock();
+                }
+            }
+        });
+    }
+
+    private void restoreDirty(Taken taken) {
+        taken.productIds().forEach((username, productIds) -> {
+            Shard shard = shardFor(username);
+            shard.lock.lock();
+            try {
+                UserCart cart = shard.carts.get(username);
+                // A cart cleared in the meantime has nothing left to write
+                if (cart != null) {
+                    cart.dirty.addAll(productIds);
+                    if (shard.dirtyUsers.add(username)) {
+                        dirtyCarts.incrementAndGet();
+                    }
+                }
+            } finally {
+                shard.lock.unlock();
+            }
+        });
+    }
+
+    // Users flushed in the current transaction and their lines as flushed; Line instances are never modified,
+    // so a line still holding the same instance is unchanged since
+    @SuppressWarnings("unchecked")
+    private Map<String, Map<Long, Line>> flushedInTransaction() {
+        var flushed = (Map<String, Map<Long, Line>>) TransactionSynchronizationManager.getResource(this);
+        if (flushed == null) {
+            flushed = new HashMap<>();
+            TransactionSynchronizationManager.bindResource(this, flushed);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(WriteBehindCartService.this);
+                }
+            });
+        }
+        return flushed;
+    }
+
+    /**
+     * Drops the lines that are as they were read, once their rows are deleted. The cart_item rows are all gone,
+     * so whatever changed in the meantime is marked dirty to be written again.
+     */
+    private void dropRead(String username, Map<Long, Line> read) {
+        Shard shard = shardFor(username);
+        shard.lock.lock();
+        try {
+            UserCart cart = shard.carts.get(username);
+            if (cart != null) {
+                cart.lines.entrySet().removeIf(entry -> entry.getValue() == read.get(entry.getKey()));
+                cart.dirty.clear();
+                cart.dirty.addAll(cart.lines.keySet());
+                if (cart.dirty.isEmpty()) {
+                    if (shard.dirtyUsers.remove(username)) {
+                        dirtyCarts.decrementAndGet();
+                    }
+                } else if (shard.dirtyUsers.add(username)) {
+                    dirtyCarts.incrementAndGet();
+                }
+            }
+            shard.generation++;
+        } finally {
+            shard.lock.unlock();
+        }
+    }
+
+    private void drop(String username) {
+        Shard shard = shardFor(username);
+        shard.lock.lock();
+        try {
+            shard.carts.remove(username);
+            if (shard.dirtyUsers.remove(username)) {
+                dirtyCarts.decrementAndGet();
+            }
+            shard.generation++;
+        } finally {
+            shard.lock.unlock();
+        }
+    }
+
+    // Only flushed carts are dropped; called under flushLock, so no write of theirs is in flight
+    private void evictIdle() {
+        long now = System.nanoTime();
+        if (now - lastEvictionNanos < idleTimeoutNanos / 2) {
+            return;
+        }
+        lastEvictionNanos = now;
+        for (Shard shard : shards) {
+            shard.lock.lock();
+            try {
+                if (shard.carts.entrySet().removeIf(entry -> entry.getValue().dirty.isEmpty()
+                        && now - entry.getValue().lastAccessNanos > idleTimeoutNanos
+                        && !shard.pins.containsKey(entry.getKey()))) {
+                    shard.generation++;
+                }
+            } finally {
+                shard.lock.unlock();
+            }
+        }
+    }
+
+    // Adding re-prices the whole line at the product's current snapshot, as the MERGE does
+    private static void add(UserCart cart, Long productId, int quantity, PriceSnapshot snapshot) {
+        Line line = cart.lines.get(productId);
+        cart.lines.put(productId, new Line(line == null ? quantity : CartChanges.addQuantities(productId, line.quantity(), quantity), snapshot));
+    }
+
+    private Shard shardFor(String username) {
+        return shards[Math.floorMod(username.hashCode(), shards.length)];
+    }
+}
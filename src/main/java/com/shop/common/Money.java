@@ -0,0 +1,35 @@
+package com.shop.common;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Amounts of money held as long counts of minor units (cents) at {@link #SCALE}, the scale of
+ * Order.total and OrderItem.unitPriceSnapshot. Arithmetic is primitive and overflow-checked
+ * (ArithmeticException instead of silent wrap-around), and BigDecimal is only created at the JPA/JSON boundary.
+ *
+ * Hot loops keep amounts as plain longs, so nothing is allocated per line.
+ * .NET equivalent is decimal, which is a 128-bit value type and allocates nothing.
+ */
+public final class Money {
+
+    public static final int SCALE = 2;
+
+    private Money() {}
+
+    public static long toMinorUnits(BigDecimal amount) {
+        return amount.setScale(SCALE, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+    }
+
+    public static BigDecimal toBigDecimal(long minorUnits) {
+        return BigDecimal.valueOf(minorUnits, SCALE);
+    }
+
+    public static long add(long minorUnits, long otherMinorUnits) {
+        return Math.addExact(minorUnits, otherMinorUnits);
+    }
+
+    public static long multiply(long unitMinorUnits, int quantity) {
+        return Math.multiplyExact(unitMinorUnits, quantity);
+    }
+}
@@ -1,17 +1,36 @@
 package com.shop.config;
 
+import com.shop.inventory.InventoryService;
 import com.shop.product.Product;
+import com.shop.product.ProductImporter;
 import com.shop.product.ProductRepository;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.context.annotation.Bean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.provisioning.UserDetailsManager;
 
-import java.math.BigDecimal;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
 
 // This class loads initial data into the database
 // when the application starts, if the product table is empty.
 @Configuration
 public class DataLoader {
+    // A limited drop (French Press): few units, so selling out can be tried by hand
+    private static final Map<String, Integer> SEED_STOCK = Map.of(
+            "Coffe Beans", 500,
+            "Espresso Cup", 200,
+            "French Press", 5);
+
     // @Bean annotation indicates that this method produces a bean
     // to be managed by the Spring container.
     // A Bean is an object that is instantiated, assembled, and otherwise managed by a Spring IoC container.
@@ -19,14 +38,67 @@ public class DataLoader {
     // a bean should run when it is contained within a SpringApplication.
     // The run method of the CommandLineRunner interface is invoked
     // with command line arguments when the application starts.
+    // With shop.seed.background=true (the faststart profile) the seed runs on its own thread, so the application
+    // reports ready without waiting for it; the demo catalog shows up a moment later.
+    @Bean
+    CommandLineRunner seed(ProductRepository repo, ProductImporter importer, InventoryService inventory,
+                           @Value("${shop.seed.background:false}") boolean background) {
+        return args -> {
+            Runnable seed = () -> {
+                if (repo.count() == 0) {
+                    // Same path as a full catalog load: one batch insert instead of a save per product
+                    try (InputStream csv = new ClassPathResource("catalog/seed-products.csv").getInputStream()) {
+                        importer.importProducts(csv, ProductImporter.Format.CSV, null);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    for (Product product : repo.findAll()) {
+                        Integer stock = SEED_STOCK.get(product.getName());
+                        if (stock != null) {
+                            inventory.setStock(product.getId(), stock);
+                        }
+                    }
+                }
+            };
+            if (background) {
+                Thread.ofPlatform().name("catalog-seed").daemon().start(seed);
+            } else {
+                seed.run();
+            }
+        };
+    }
+
+    // Loads a catalog file at startup: --shop.catalog-import.file=products.csv (or .ndjson).
+    // Give --shop.catalog-import.id as well to resume an interrupted load where it stopped.
     @Bean
-    CommandLineRunner seed(ProductRepository repo) {
+    @ConditionalOnProperty("shop.catalog-import.file")
+    CommandLineRunner importCatalog(ProductImporter importer,
+                                    @Value("${shop.catalog-import.file}") Path file,
+                                    @Value("${shop.catalog-import.id:}") String importId) {
         return args -> {
-            if (repo.count() == 0) {
-                repo.save(new Product("Coffe Beans", BigDecimal.valueOf(11.2), "some coffee"));
-                repo.save(new Product("Espresso Cup", BigDecimal.valueOf(3.21), "cup"));
-                repo.save(new Product("French Press", BigDecimal.valueOf(231.6), "french press"));
+            try (InputStream input = Files.newInputStream(file)) {
+                importer.importProducts(input, ProductImporter.formatOf(file.getFileName().toString()), importId);
             }
         };
     }
+
+    // Demo logins; the passwords are stored as bcrypt hashes, never in plain text.
+    // alice and bob are shoppers; admin may also change the catalog and stock and read the sales reports.
+    @Bean
+    CommandLineRunner seedUsers(UserDetailsManager users, PasswordEncoder passwordEncoder) {
+        return args -> {
+            Map<String, String[]> seedUsers = Map.of(
+                    "alice", new String[]{"USER"},
+                    "bob", new String[]{"USER"},
+                    "admin", new String[]{"USER", "ADMIN"});
+            seedUsers.forEach((username, roles) -> {
+                if (!users.userExists(username)) {
+                    users.createUser(User.withUsername(username)
+                            .password(passwordEncoder.encode("password"))
+                            .roles(roles)
+                            .build());
+                }
+            });
+        };
+    }
 }
@@ -0,0 +1,137 @@
+package com.shop.config;
+
+import com.shop.analytics.SalesAnalyticsService;
+import com.shop.cart.CartSummaryStore;
+import com.shop.outbox.OutboxRelay;
+import com.shop.product.CatalogResponseCache;
+import com.shop.product.ProductCatalogCache;
+import com.shop.product.ProductSearchService;
+import com.shop.ratelimit.RateLimiter;
+import com.shop.security.TokenStore;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Application metrics on top of what Actuator already publishes (HTTP server requests, JVM, HikariCP pool
+ * and connection-acquire timers). Everything is scraped from /actuator/prometheus.
+ * The cache and store meters below are read from existing counters only when scraped, so they add
+ * nothing to the request path.
+ * .NET equivalent is registering a Meter with ObservableGauge/ObservableCounter callbacks and
+ * exposing it through the OpenTelemetry Prometheus exporter.
+ */
+@Configuration
+public class MetricsConfig {
+
+    @Bean
+    HibernatePropertiesCustomizer sqlStatementCounter() {
+        return properties -> properties.put(AvailableSettings.STATEMENT_INSPECTOR, new SqlStatementCounter());
+    }
+
+    @Bean
+    MeterBinder catalogCacheMetrics(ProductCatalogCache cache) {
+        return registry -> {
+            FunctionCounter.builder("shop.catalog.cache.requests", cache, c -> c.stats().hits())
+                    .tag("result", "hit").register(registry);
+            FunctionCounter.builder("shop.catalog.cache.requests", cache, c -> c.stats().misses())
+                    .tag("result", "miss").register(registry);
+            FunctionCounter.builder("shop.catalog.cache.evictions", cache, c -> c.stats().evictions()).register(registry);
+            Gauge.builder("shop.catalog.cache.size", cache, c -> c.stats().size()).register(registry);
+        };
+    }
+
+    // Absent when shop.catalog-http-cache.enabled=false
+    @Bean
+    MeterBinder catalogResponseCacheMetrics(ObjectProvider<CatalogResponseCache> cache) {
+        return registry -> cache.ifAvailable(c -> {
+            FunctionCounter.builder("shop.catalog.http.cache.requests", c, x -> x.stats().hits())
+                    .tag("result", "hit").register(registry);
+            FunctionCounter.builder("shop.catalog.http.cache.requests", c, x -> x.stats().misses())
+                    .tag("result", "miss").register(registry);
+            FunctionCounter.builder("shop.catalog.http.cache.not.modified", c, x -> x.stats().notModified())
+                    .description("Requests answered with 304 because the client's ETag still matched")
+                    .register(registry);
+            Gauge.builder("shop.catalog.http.cache.size", c, x -> x.stats().size()).register(registry);
+        });
+    }
+
+    @Bean
+    MeterBinder searchIndexMetrics(ProductSearchService search) {
+        return registry -> Gauge.builder("shop.search.index.products", search, ProductSearchService::indexedProducts)
+                .register(registry);
+    }
+
+    @Bean
+    MeterBinder salesAnalyticsMetrics(SalesAnalyticsService analytics) {
+        return registry -> {
+            FunctionCounter.builder("shop.analytics.orders", analytics, a -> a.stats().orders())
+                    .description("Committed orders counted in the sales rollups")
+                    .register(registry);
+            Gauge.builder("shop.analytics.products", analytics, a -> a.stats().products())
+                    .description("Products with at least one sale").register(registry);
+            Gauge.builder("shop.analytics.ready", analytics, a -> a.stats().ready() ? 1 : 0)
+                    .description("1 once the startup rebuild is done and reports are served").register(registry);
+        };
+    }
+
+    @Bean
+    MeterBinder outboxMetrics(OutboxRelay relay) {
+        return registry -> {
+            FunctionCounter.builder("shop.outbox.published", relay, r -> r.stats().published())
+                    .description("Outbox events handed to the publisher").register(registry);
+            FunctionCounter.builder("shop.outbox.publish.failures", relay, r -> r.stats().failures())
+                    .description("Publish attempts that failed and were retried").register(registry);
+            Gauge.builder("shop.outbox.backlog", relay, r -> r.stats().backlog())
+                    .description("Events waiting in the outbox when the relay last looked").register(registry);
+            Gauge.builder("shop.outbox.lag", relay, r -> r.stats().lag().toNanos() / 1e9)
+                    .description("Age of the oldest unpublished event")
+                    .baseUnit("seconds")
+                    .register(registry);
+        };
+    }
+
+    // One rejection counter per endpoint and bucket kind, e.g. shop.ratelimit.rejected{endpoint="checkout",scope="user"}
+    @Bean
+    MeterBinder rateLimitMetrics(RateLimiter rateLimiter) {
+        return registry -> {
+            for (RateLimiter.Endpoint endpoint : rateLimiter.endpoints()) {
+                FunctionCounter.builder("shop.ratelimit.rejected", endpoint, RateLimiter.Endpoint::rejectedPerUser)
+                        .description("Requests refused with 429 by a rate limit")
+                        .tags("endpoint", endpoint.name(), "scope", "user")
+                        .register(registry);
+                FunctionCounter.builder("shop.ratelimit.rejected", endpoint, RateLimiter.Endpoint::rejectedGlobal)
+                        .description("Requests refused with 429 by a rate limit")
+                        .tags("endpoint", endpoint.name(), "scope", "global")
+                        .register(registry);
+                Gauge.builder("shop.ratelimit.user.buckets", endpoint, RateLimiter.Endpoint::trackedUsers)
+                        .description("Per-user buckets that have not refilled yet")
+                        .tag("endpoint", endpoint.name())
+                        .register(registry);
+            }
+        };
+    }
+
+    @Bean
+    MeterBinder sessionMetrics(CartSummaryStore summaryStore, TokenStore tokenStore) {
+        return registry -> {
+            Gauge.builder("shop.cart.summary.entries", summaryStore, CartSummaryStore::size).register(registry);
+            Gauge.builder("shop.auth.tokens", tokenStore, TokenStore::size).register(registry);
+        };
+    }
+
+    // Only present in virtual-thread mode
+    @Bean
+    MeterBinder pinningMetrics(ObjectProvider<VirtualThreadPinningMonitor> monitor) {
+        return registry -> monitor.ifAvailable(m -> {
+            FunctionCounter.builder("shop.virtual.threads.pinned", m, VirtualThreadPinningMonitor::pinnedEvents)
+                    .register(registry);
+            FunctionCounter.builder("shop.virtual.threads.pinned.jdbc", m, VirtualThreadPinningMonitor::pinnedAcrossJdbc)
+                    .register(registry);
+        });
+    }
+}
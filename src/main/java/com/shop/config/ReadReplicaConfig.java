@@ -0,0 +1,121 @@
+package com.shop.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Replaces the single auto-configured DataSource with a primary pool plus one pool per read replica, enabled by
+ * setting shop.datasource.replica-urls (comma-separated JDBC URLs). {@link ReplicaRouting} picks the route for
+ * each connection, and replicas take turns.
+ *
+ * The routing sits behind a LazyConnectionDataSourceProxy: JPA opens its connection when the transaction begins,
+ * before Spring has marked the transaction read-only, so the real connection is only fetched (and routed) at the
+ * first statement. Pools are named primary, replica-1, replica-2, ..., which is the pool tag of the
+ * hikaricp.connections.* meters.
+ * .NET equivalent is registering two DbContext options (primary and read-only connection strings) and resolving
+ * one per operation.
+ */
+@Configuration
+@ConditionalOnProperty("shop.datasource.replica-urls")
+public class ReadReplicaConfig {
+
+    @Bean(destroyMethod = "close")
+    ReadReplicaDataSource dataSource(DataSourceProperties properties,
+                                     ReplicaRouting routing,
+                                     MeterRegistry meterRegistry,
+                                     @Value("${shop.datasource.replica-urls}") List<String> replicaUrls,
+                                     @Value("${shop.datasource.replica-username:}") String replicaUsername,
+                                     @Value("${shop.datasource.replica-password:}") String replicaPassword,
+                                     @Value("${shop.datasource.replica-pool-size:10}") int replicaPoolSize) {
+        var metrics = new MicrometerMetricsTrackerFactory(meterRegistry);
+        HikariDataSource primary = pool("primary", properties.determineUrl(), properties.determineUsername(),
+                properties.determinePassword(), properties.determineDriverClassName(), metrics);
+        List<HikariDataSource> replicas = new ArrayList<>();
+        for (String url : replicaUrls) {
+            HikariDataSource replica = pool("replica-" + (replicas.size() + 1), url.trim(),
+                    replicaUsername.isEmpty() ? properties.determineUsername() : replicaUsername,
+                    replicaUsername.isEmpty() ? properties.determinePassword() : replicaPassword,
+                    properties.determineDriverClassName(), metrics);
+            replica.setReadOnly(true);
+            replica.setMaximumPoolSize(replicaPoolSize);
+            replicas.add(replica);
+        }
+        return new ReadReplicaDataSource(primary, replicas, routing);
+    }
+
+    private static HikariDataSource pool(String name, String url, String username, String password,
+                                         String driverClassName, MicrometerMetricsTrackerFactory metrics) {
+        var pool = new HikariDataSource();
+        pool.setPoolName(name);
+        pool.setJdbcUrl(url);
+        pool.setUsername(username);
+        pool.setPassword(password);
+        pool.setDriverClassName(driverClassName);
+        pool.setMetricsTrackerFactory(metrics);
+        return pool;
+    }
+
+    /**
+     * The application's DataSource when replicas are configured; closes every pool on shutdown.
+     */
+    static final class ReadReplicaDataSource extends LazyConnectionDataSourceProxy implements AutoCloseable {
+
+        private final HikariDataSource primary;
+        private final List<HikariDataSource> replicas;
+
+        ReadReplicaDataSource(HikariDataSource primary, List<HikariDataSource> replicas, ReplicaRouting routing) {
+            this.primary = primary;
+            this.replicas = List.copyOf(replicas);
+            var router = new Router(routing, replicas.size());
+            Map<Object, Object> targets = new HashMap<>();
+            targets.put(ReplicaRouting.Route.PRIMARY, primary);
+            for (int i = 0; i < replicas.size(); i++) {
+                targets.put(i, replicas.get(i));
+            }
+            router.setTargetDataSources(targets);
+            router.afterPropertiesSet();
+            setTargetDataSource(router);
+        }
+
+        @Override
+        public void close() {
+            replicas.forEach(HikariDataSource::close);
+            primary.close();
+        }
+    }
+
+    // Lookup key: Route.PRIMARY, or the index of the replica whose turn it is
+    private static final class Router extends AbstractRoutingDataSource {
+
+        private final ReplicaRouting routing;
+        private final int replicaCount;
+        private final AtomicInteger next = new AtomicInteger();
+
+        Router(ReplicaRouting routing, int replicaCount) {
+            this.routing = routing;
+            this.replicaCount = replicaCount;
+        }
+
+        @Override
+        protected Object determineCurrentLookupKey() {
+            if (routing.route() == ReplicaRouting.Route.PRIMARY) {
+                return ReplicaRouting.Route.PRIMARY;
+            }
+            return Math.floorMod(next.getAndIncrement(), replicaCount);
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package com.shop.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Decides whether a connection opened on the current thread goes to the primary database or to a read replica
+ * (see {@link ReadReplicaConfig}). Work inside Spring's @Transactional(readOnly = true) goes to a replica:
+ * the inherited CrudRepository reads (findById, findAll...) and the query methods marked read-only, such as the
+ * catalog pages, the order history and the cart lines. jakarta.transaction.Transactional has no read-only flag,
+ * so it always means the primary, as do connections used without a transaction.
+ *
+ * A replica trails the primary by up to replica-max-lag, so two kinds of reads stay on the primary:
+ * - Read-your-writes: once a user's write transaction commits, that user reads from the primary for
+ *   replica-max-lag. Checkout also marks its user explicitly, so an order placed by an async worker is
+ *   visible in GET /api/orders right away.
+ * - {@link #onPrimary}: caches filled right after an invalidation, which could otherwise put back the row the
+ *   write just replaced.
+ * Without shop.datasource.replica-urls there is only the primary and all of this is a no-op.
+ * .NET equivalent is an EF Core DbContext factory choosing the connection string per unit of work.
+ */
+@Component
+public class ReplicaRouting {
+
+    public enum Route { PRIMARY, REPLICA }
+
+    // Expired stickiness entries are swept once the map grows past this
+    private static final int SWEEP_THRESHOLD = 10_000;
+
+    private final ThreadLocal<Boolean> pinned = new ThreadLocal<>();
+    private final ConcurrentHashMap<String, Long> stickyUntilNanos = new ConcurrentHashMap<>();
+    private final boolean enabled;
+    private final Duration maxLag;
+    private final Counter writes;
+    private final Counter pinnedReads;
+    private final Counter stickyReads;
+    private final Counter replicaReads;
+
+    public ReplicaRouting(@Value("${shop.datasource.replica-urls:}") List<String> replicaUrls,
+                          @Value("${shop.datasource.replica-max-lag:PT2S}") Duration maxLag,
+                          MeterRegistry meterRegistry) {
+        this.enabled = !replicaUrls.isEmpty();
+        this.maxLag = enabled ? maxLag : Duration.ZERO;
+        this.writes = routeCounter(meterRegistry, Route.PRIMARY, "write");
+        this.pinnedReads = routeCounter(meterRegistry, Route.PRIMARY, "pinned");
+        this.stickyReads = routeCounter(meterRegistry, Route.PRIMARY, "read_your_writes");
+        this.replicaReads = routeCounter(meterRegistry, Route.REPLICA, "read");
+    }
+
+    /**
+     * How far a replica may trail the primary; zero without replicas.
+     */
+    public Duration maxLag() {
+        return maxLag;
+    }
+
+    /**
+     * Runs the work with every connection it opens on the primary. A call that joins a transaction already
+     * running on a replica stays there, so call this outside read-only transactions.
+     */
+    public <T> T onPrimary(Supplier<T> work) {
+        if (pinned.get() != null) {
+            return work.get();
+        }
+        pinned.set(Boolean.TRUE);
+        try {
+            return work.get();
+        } finally {
+            pinned.remove();
+        }
+    }
+
+    /**
+     * Sends the user's reads to the primary for replica-max-lag, counted from the commit of the current
+     * transaction (from now without one).
+     */
+    public void stickToPrimary(String username) {
+        if (!enabled) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    stick(username);
+                }
+            });
+        } else {
+            stick(username);
+        }
+    }
+
+    /**
+     * Called once for every physical connection the routing DataSource opens.
+     */
+    Route route() {
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            writes.increment();
+            String username = currentUsername();
+            if (username != null && TransactionSynchronizationManager.isActualTransactionActive()) {
+                stickToPrimary(username);
+            }
+            return Route.PRIMARY;
+        }
+        if (pinned.get() != null) {
+            pinnedReads.increment();
+            return Route.PRIMARY;
+        }
+        String username = currentUsername();
+        if (username != null && isSticky(username)) {
+            stickyReads.increment();
+            return Route.PRIMARY;
+        }
+        replicaReads.increment();
+        return Route.REPLICA;
+    }
+
+    private void stick(String username) {
+        long now = System.nanoTime();
+        stickyUntilNanos.put(username, now + maxLag.toNanos());
+        if (stickyUntilNanos.size() > SWEEP_THRESHOLD) {
+            stickyUntilNanos.values().removeIf(until -> now - until > 0);
+        }
+    }
+
+    private boolean isSticky(String username) {
+        Long until = stickyUntilNanos.get(username);
+        if (until == null) {
+            return false;
+        }
+        if (System.nanoTime() - until < 0) {
+            return true;
+        }
+        stickyUntilNanos.remove(username, until);
+        return false;
+    }
+
+    // The authenticated user of the current request; null on background threads and for anonymous requests
+    private static String currentUsername() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null || !authentication.isAuthenticated()
+                || authentication instanceof AnonymousAuthenticationToken) {
+            return null;
+        }
+        return authentication.getName();
+    }
+
+    private static Counter routeCounter(MeterRegistry registry, Route route, String reason) {
+        return Counter.builder("shop.datasource.route")
+                .description("Physical connections opened, by the database they went to and why")
+                .tag("route", route.name().toLowerCase())
+                .tag("reason", reason)
+                .register(registry);
+    }
+}
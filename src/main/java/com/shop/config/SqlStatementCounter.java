@@ -0,0 +1,29 @@
+package com.shop.config;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+/**
+ * Counts the SQL statements Hibernate prepares on the current thread. It sees every JPQL, derived and native
+ * query plus the INSERT/UPDATE/DELETE statements of a flush, and costs one ThreadLocal increment per statement.
+ * {@link SqlStatementMetricsFilter} resets the count when a request starts and records it when it ends.
+ * .NET equivalent is an EF Core DbCommandInterceptor.
+ */
+public class SqlStatementCounter implements StatementInspector {
+
+    // int[1] instead of Integer so counting does not allocate
+    private static final ThreadLocal<int[]> COUNT = ThreadLocal.withInitial(() -> new int[1]);
+
+    @Override
+    public String inspect(String sql) {
+        COUNT.get()[0]++;
+        return sql;
+    }
+
+    static void reset() {
+        COUNT.get()[0] = 0;
+    }
+
+    static int current() {
+        return COUNT.get()[0];
+    }
+}
@@ -0,0 +1,52 @@
+package com.shop.config;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Records how many SQL statements each request ran, as the shop.http.sql.statements distribution tagged with
+ * the HTTP method and the matched route (e.g. /api/orders/{id}), so an N+1 regression shows up per endpoint.
+ * Statements run on other threads, such as the async checkout workers, are not attributed to a request.
+ */
+@Component
+public class SqlStatementMetricsFilter extends OncePerRequestFilter {
+
+    private final MeterRegistry registry;
+    // One summary per route; looked up without building a new meter id on every request
+    private final Map<String, DistributionSummary> summaries = new ConcurrentHashMap<>();
+
+    public SqlStatementMetricsFilter(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        SqlStatementCounter.reset();
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            int statements = SqlStatementCounter.current();
+            Object route = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+            String uri = route == null ? "UNKNOWN" : route.toString();
+            summaries.computeIfAbsent(request.getMethod() + " " + uri, key -> DistributionSummary
+                            .builder("shop.http.sql.statements")
+                            .description("SQL statements executed per HTTP request")
+                            .tag("method", request.getMethod())
+                            .tag("uri", uri)
+                            .register(registry))
+                    .record(statements);
+        }
+    }
+}
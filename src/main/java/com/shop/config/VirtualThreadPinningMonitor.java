@@ -0,0 +1,91 @@
+package com.shop.config;
+
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordingStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Pinning audit for virtual-thread mode (spring.threads.virtual.enabled=true).
+ *
+ * A virtual thread that blocks while holding a monitor (inside a synchronized block or method) stays
+ * "pinned" to its carrier thread, so a few slow JDBC calls made under synchronized can stall the whole
+ * carrier pool. This listens to the JDK's own jdk.VirtualThreadPinned JFR event while the app runs and logs
+ * every pin longer than the threshold with its stack; pins whose stack goes through java.sql or a JDBC
+ * driver are flagged as synchronized-across-JDBC, which is what should be rewritten with a ReentrantLock.
+ * .NET has no direct equivalent; the closest is the thread-pool starvation diagnostics of dotnet-counters.
+ */
+@Component
+@ConditionalOnProperty(name = "spring.threads.virtual.enabled", havingValue = "true")
+public class VirtualThreadPinningMonitor implements SmartLifecycle {
+
+    private static final Logger log = LoggerFactory.getLogger(VirtualThreadPinningMonitor.class);
+    private static final List<String> JDBC_FRAMES = List.of("java.sql.", "javax.sql.", "org.h2.", "com.zaxxer.hikari.");
+
+    private final Duration threshold;
+    private final LongAdder pinnedEvents = new LongAdder();
+    private final LongAdder pinnedAcrossJdbc = new LongAdder();
+    private RecordingStream stream;
+
+    public VirtualThreadPinningMonitor(@Value("${shop.virtual-threads.pinning-threshold:20ms}") Duration threshold) {
+        this.threshold = threshold;
+    }
+
+    @Override
+    public void start() {
+        stream = new RecordingStream();
+        stream.enable("jdk.VirtualThreadPinned").withThreshold(threshold).withStackTrace();
+        stream.onEvent("jdk.VirtualThreadPinned", this::onPinned);
+        stream.startAsync();
+        log.info("Virtual thread pinning audit started (threshold {})", threshold);
+    }
+
+    private void onPinned(RecordedEvent event) {
+        pinnedEvents.increment();
+        List<RecordedFrame> frames = event.getStackTrace() == null ? List.of() : event.getStackTrace().getFrames();
+        boolean jdbc = frames.stream().anyMatch(frame -> isJdbcFrame(frame.getMethod().getType().getName()));
+        if (jdbc) {
+            pinnedAcrossJdbc.increment();
+        }
+        StringBuilder stack = new StringBuilder();
+        frames.stream().limit(15).forEach(frame -> stack.append("\n\tat ")
+                .append(frame.getMethod().getType().getName()).append('.').append(frame.getMethod().getName())
+                .append(':').append(frame.getLineNumber()));
+        log.warn("Virtual thread pinned for {} ms{}{}", event.getDuration().toMillis(),
+                jdbc ? " while holding a monitor across a JDBC call" : "", stack);
+    }
+
+    private static boolean isJdbcFrame(String className) {
+        return JDBC_FRAMES.stream().anyMatch(className::startsWith);
+    }
+
+    public long pinnedEvents() {
+        return pinnedEvents.sum();
+    }
+
+    public long pinnedAcrossJdbc() {
+        return pinnedAcrossJdbc.sum();
+    }
+
+    @Override
+    public void stop() {
+        if (stream != null) {
+            stream.close();
+            stream = null;
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return stream != null;
+    }
+}
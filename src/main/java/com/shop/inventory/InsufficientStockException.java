@@ -0,0 +1,14 @@
+package com.shop.inventory;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * Thrown when a checkout asks for more units than are left; the transaction rolls back, so nothing is taken.
+ */
+@ResponseStatus(HttpStatus.CONFLICT)
+public class InsufficientStockException extends IllegalStateException {
+    public InsufficientStockException(Long productId) {
+        super("Insufficient stock for product: " + productId);
+    }
+}
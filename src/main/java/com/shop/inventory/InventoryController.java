@@ -0,0 +1,35 @@
+package com.shop.inventory;
+
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequestMapping("/api/inventory")
+public class InventoryController {
+
+    public record Stock(Long productId, int available) { }
+
+    private final InventoryService inventoryService;
+
+    public InventoryController(InventoryService inventoryService) {
+        this.inventoryService = inventoryService;
+    }
+
+    // 404 means the product is not stock-tracked and can always be ordered
+    @GetMapping("/{productId}")
+    public ResponseEntity<Stock> get(@PathVariable Long productId) {
+        var available = inventoryService.available(productId);
+        return available.isPresent()
+                ? ResponseEntity.ok(new Stock(productId, available.getAsInt()))
+                : ResponseEntity.notFound().build();
+    }
+
+    // Admin only (see SecurityConfig); starts tracking the product if it was not tracked yet
+    @PutMapping("/{productId}")
+    public ResponseEntity<Stock> set(@PathVariable Long productId, @RequestParam int quantity) {
+        var available = inventoryService.setStock(productId, quantity);
+        return available.isPresent()
+                ? ResponseEntity.ok(new Stock(productId, available.getAsInt()))
+                : ResponseEntity.notFound().build();
+    }
+}
@@ -0,0 +1,52 @@
+package com.shop.inventory;
+
+import java.util.Map;
+import java.util.OptionalInt;
+
+/**
+ * Stock levels and checkout reservations. Quantities are maps of productId to units; products that are not
+ * stock-tracked are ignored by every method, so they can always be ordered.
+ */
+public interface InventoryService {
+
+    /**
+     * Replaces the stock of a product, spreading it evenly over the configured number of shards. Quantity is
+     * what is on hand, so the units held by pending checkouts are not for sale again.
+     *
+     * @return the units left to sell, or empty when there is no such product
+     * @throws InsufficientStockException when pending checkouts hold more units than quantity
+     */
+    OptionalInt setStock(Long productId, int quantity);
+
+    /**
+     * Units left to sell, or empty when the product is not stock-tracked.
+     */
+    OptionalInt available(Long productId);
+
+    /**
+     * Takes the stock inside the caller's transaction; a rollback gives it back.
+     *
+     * @throws InsufficientStockException when any product does not have enough units left
+     */
+    void reserve(Map<Long, Integer> quantities);
+
+    /**
+     * Takes the stock now, in its own transaction, and keeps it for the user until the hold expires.
+     * Used when the order itself is placed later, e.g. by the asynchronous checkout.
+     *
+     * @throws InsufficientStockException when any product does not have enough units left
+     */
+    void hold(String username, String holdKey, Map<Long, Integer> quantities);
+
+    /**
+     * Turns a hold into sold stock inside the caller's transaction. The hold is reconciled with the quantities
+     * actually ordered: missing units are reserved, surplus units are returned. If the hold has already expired
+     * this behaves like {@link #reserve(Map)}.
+     */
+    void commit(String username, String holdKey, Map<Long, Integer> quantities);
+
+    /**
+     * Returns a hold's stock right away, e.g. when its checkout failed.
+     */
+    void release(String username, String holdKey);
+}
@@ -0,0 +1,229 @@
+package com.shop.inventory;
+
+import jakarta.transaction.Transactional;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Striped stock counters. Every product's stock is split over a fixed number of shard rows, and a reservation
+ * first tries a conditional decrement ("available &gt;= quantity") on one shard picked at random, then on the
+ * others. Each checkout therefore holds a row lock on one stripe only, and concurrent checkouts of one SKU
+ * proceed in parallel until the stock runs low. Only when no single shard can cover the quantity are all
+ * shards of the product locked (in shard order) and the units gathered from several of them.
+ * Products are always processed in id order, so two checkouts never wait on each other's locks in a cycle.
+ * .NET equivalent is a set of ExecuteUpdate calls with a Where(s =&gt; s.Available &gt;= qty) guard.
+ */
+@Service
+public class InventoryServiceImpl implements InventoryService {
+
+    private static final Logger log = LoggerFactory.getLogger(InventoryServiceImpl.class);
+
+    // Units taken from one shard for one product
+    private record Portion(Long productId, int shard, int quantity) {}
+
+    private final StockShardRepository shardRepository;
+    private final StockReservationRepository reservationRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final int shards;
+    private final Duration holdTtl;
+    private final int sweepBatchSize;
+
+    public InventoryServiceImpl(StockShardRepository shardRepository,
+                                StockReservationRepository reservationRepository,
+                                PlatformTransactionManager transactionManager,
+                                @Value("${shop.inventory.shards:8}") int shards,
+                                @Value("${shop.inventory.hold-ttl:PT10M}") Duration holdTtl,
+                                @Value("${shop.inventory.sweep-batch-size:500}") int sweepBatchSize) {
+        this.shardRepository = shardRepository;
+        this.reservationRepository = reservationRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.shards = shards;
+        this.holdTtl = holdTtl;
+        this.sweepBatchSize = sweepBatchSize;
+    }
+
+    @Override
+    @Transactional
+    public OptionalInt setStock(Long productId, int quantity) {
+        if (quantity < 0) {
+            throw new IllegalArgumentException("Stock cannot be negative");
+        }
+        if (!shardRepository.productExists(productId)) {
+            return OptionalInt.empty();
+        }
+        // Locked before the holds are summed: a hold released meanwhile is either gone from the sum or still
+        // waiting to give its units back to a shard, which it then adds to the value written here
+        Set<Integer> existing = new HashSet<>();
+        shardRepository.lockShards(productId).forEach(shard -> existing.add(shard.getShard()));
+        long held = reservationRepository.sumHeld(productId);
+        if (held > quantity) {
+            throw new InsufficientStockException(productId);
+        }
+
+        int available = quantity - (int) held;
+        List<StockShard> rows = new ArrayList<>();
+        for (int shard = 0; shard < shards; shard++) {
+            int units = available / shards + (shard < available % shards ? 1 : 0);
+            if (!existing.contains(shard) || shardRepository.setAvailable(productId, shard, units) == 0) {
+                rows.add(new StockShard(productId, shard, units));
+            }
+        }
+        shardRepository.deleteFromShard(productId, shards);
+        shardRepository.saveAll(rows);
+        return OptionalInt.of(available);
+    }
+
+    @Override
+    public OptionalInt available(Long productId) {
+        if (shardRepository.findTrackedProductIds(List.of(productId)).isEmpty()) {
+            return OptionalInt.empty();
+        }
+        return OptionalInt.of((int) shardRepository.sumAvailable(productId));
+    }
+
+    @Override
+    @Transactional
+    public void reserve(Map<Long, Integer> quantities) {
+        takeAll(quantities);
+    }
+
+    @Override
+    @Transactional
+    public void hold(String username, String holdKey, Map<Long, Integer> quantities) {
+        Instant expiresAt = Instant.now().plus(holdTtl);
+        List<StockReservation> reservations = new ArrayList<>();
+        for (Portion portion : takeAll(quantities)) {
+            reservations.add(new StockReservation(username, holdKey, portion.productId(), portion.shard(), portion.quantity(), expiresAt));
+        }
+        reservationRepository.saveAll(reservations);
+    }
+
+    @Override
+    @Transactional
+    public void commit(String username, String holdKey, Map<Long, Integer> quantities) {
+        // Units this caller actually claimed from the hold, per product; the sweep may have claimed some first
+        Map<Long, List<Portion>> held = new HashMap<>();
+        for (StockReservation reservation : reservationRepository.findByUsernameAndHoldKey(username, holdKey)) {
+            if (reservationRepository.claim(reservation.getId()) == 1) {
+                held.computeIfAbsent(reservation.getProductId(), id -> new ArrayList<>())
+                        .add(new Portion(reservation.getProductId(), reservation.getShard(), reservation.getQuantity()));
+            }
+        }
+
+        Map<Long, Integer> missing = new TreeMap<>();
+        Set<Long> productIds = new TreeSet<>(quantities.keySet());
+        productIds.addAll(held.keySet());
+        for (Long productId : productIds) {
+            int surplus = -quantities.getOrDefault(productId, 0);
+            for (Portion portion : held.getOrDefault(productId, List.of())) {
+                surplus += portion.quantity();
+            }
+            if (surplus < 0) {
+                missing.put(productId, -surplus);
+            } else if (surplus > 0) {
+                giveBack(held.get(productId), surplus);
+            }
+        }
+        takeAll(missing);
+    }
+
+    @Override
+    @Transactional
+    public void release(String username, String holdKey) {
+        for (StockReservation reservation : reservationRepository.findByUsernameAndHoldKey(username, holdKey)) {
+            releaseOne(reservation);
+        }
+    }
+
+    /**
+     * Hands the stock of abandoned holds back to their shards, a batch per transaction.
+     */
+    @Scheduled(fixedDelayString = "${shop.inventory.sweep-interval:PT30S}")
+    void releaseExpired() {
+        int released;
+        do {
+            released = transactionTemplate.execute(status -> {
+                List<StockReservation> expired = reservationRepository.findByExpiresAtBeforeOrderByExpiresAtAsc(
+                        Instant.now(), Limit.of(sweepBatchSize));
+                expired.forEach(this::releaseOne);
+                return expired.size();
+            });
+            if (released > 0) {
+                log.info("Released {} expired stock reservations", released);
+            }
+        } while (released == sweepBatchSize);
+    }
+
+    private void releaseOne(StockReservation reservation) {
+        if (reservationRepository.claim(reservation.getId()) == 1) {
+            shardRepository.give(reservation.getProductId(), reservation.getShard(), reservation.getQuantity());
+        }
+    }
+
+    private List<Portion> takeAll(Map<Long, Integer> quantities) {
+        Set<Long> tracked = quantities.isEmpty() ? Set.of() : shardRepository.findTrackedProductIds(quantities.keySet());
+        List<Portion> taken = new ArrayList<>();
+        for (Map.Entry<Long, Integer> entry : new TreeMap<>(quantities).entrySet()) {
+            if (entry.getValue() > 0 && tracked.contains(entry.getKey())) {
+                take(entry.getKey(), entry.getValue(), taken);
+            }
+        }
+        return taken;
+    }
+
+    private void take(Long productId, int quantity, List<Portion> taken) {
+        int start = ThreadLocalRandom.current().nextInt(shards);
+        for (int i = 0; i < shards; i++) {
+            int shard = (start + i) % shards;
+            if (shardRepository.tryTake(productId, shard, quantity) == 1) {
+                taken.add(new Portion(productId, shard, quantity));
+                return;
+            }
+        }
+
+        // No single stripe has enough: lock them all and gather the units from several
+        List<StockShardRepository.ShardStock> locked = shardRepository.lockShards(productId);
+        int total = locked.stream().mapToInt(StockShardRepository.ShardStock::getAvailable).sum();
+        if (total < quantity) {
+            throw new InsufficientStockException(productId);
+        }
+        int remaining = quantity;
+        for (StockShardRepository.ShardStock shard : locked) {
+            int units = Math.min(remaining, shard.getAvailable());
+            if (units > 0) {
+                // Cannot miss while the rows are locked; checked anyway so a miss can never be recorded as sold
+                if (shardRepository.tryTake(productId, shard.getShard(), units) == 0) {
+                    throw new InsufficientStockException(productId);
+                }
+                taken.add(new Portion(productId, shard.getShard(), units));
+                remaining -= units;
+            }
+            if (remaining == 0) {
+                return;
+            }
+        }
+    }
+
+    private void giveBack(List<Portion> portions, int quantity) {
+        int remaining = quantity;
+        for (Portion portion : portions) {
+            int units = Math.min(remaining, portion.quantity());
+            shardRepository.give(portion.productId(), portion.shard(), units);
+            remaining -= units;
+            if (remaining == 0) {
+                return;
+            }
+        }
+    }
+}
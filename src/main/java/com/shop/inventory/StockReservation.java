@@ -0,0 +1,78 @@
+package com.shop.inventory;
+
+import jakarta.persistence.*;
+import java.time.Instant;
+
+/**
+ * Stock taken from one shard on behalf of a checkout that has not been placed yet.
+ * The stock is already subtracted from the shard; placing the order just deletes the reservation,
+ * while an abandoned one is handed back to its shard once expiresAt has passed.
+ * A hold is the set of reservations sharing (username, holdKey).
+ */
+@Entity
+@Table(name = "stock_reservation", indexes = {
+        @Index(columnList = "username, holdKey"),
+        @Index(columnList = "expiresAt")
+})
+public class StockReservation {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private String username;
+
+    @Column(nullable = false)
+    private String holdKey;
+
+    @Column(nullable = false)
+    private Long productId;
+
+    @Column(nullable = false)
+    private int shard;
+
+    @Column(nullable = false)
+    private int quantity;
+
+    @Column(nullable = false)
+    private Instant expiresAt;
+
+    protected StockReservation() {}
+    public StockReservation(String username, String holdKey, Long productId, int shard, int quantity, Instant expiresAt) {
+        this.username = username;
+        this.holdKey = holdKey;
+        this.productId = productId;
+        this.shard = shard;
+        this.quantity = quantity;
+        this.expiresAt = expiresAt;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public String getHoldKey() {
+        return holdKey;
+    }
+
+    public Long getProductId() {
+        return productId;
+    }
+
+    public int getShard() {
+        return shard;
+    }
+
+    public int getQuantity() {
+        return quantity;
+    }
+
+    public Instant getExpiresAt() {
+        return expiresAt;
+    }
+}
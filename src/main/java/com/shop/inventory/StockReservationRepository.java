@@ -0,0 +1,27 @@
+package com.shop.inventory;
+
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import java.time.Instant;
+import java.util.List;
+
+public interface StockReservationRepository extends JpaRepository<StockReservation, Long> {
+
+    List<StockReservation> findByUsernameAndHoldKey(String username, String holdKey);
+
+    @Query("select coalesce(sum(r.quantity), 0) from StockReservation r where r.productId = :productId")
+    long sumHeld(@Param("productId") Long productId);
+
+    List<StockReservation> findByExpiresAtBeforeOrderByExpiresAtAsc(Instant cutoff, Limit limit);
+
+    /**
+     * Deletes one reservation and reports whether this caller was the one that removed it.
+     * Placing the order and the expiry sweep both go through here, so only one of them gets the stock.
+     */
+    @Modifying
+    @Query("delete from StockReservation r where r.id = :id")
+    int claim(@Param("id") Long id);
+}
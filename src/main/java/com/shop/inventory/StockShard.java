@@ -0,0 +1,50 @@
+package com.shop.inventory;
+
+import jakarta.persistence.*;
+
+/**
+ * One stripe of a product's stock. A product's available quantity is the sum over its shards, so concurrent
+ * checkouts of the same hot SKU usually decrement different rows instead of queueing on one row lock.
+ * Products without any shard rows are not stock-tracked and can always be ordered.
+ * .NET equivalent is a sharded counter table updated with ExecuteUpdate(...) in EF Core.
+ */
+@Entity
+@Table(name = "stock_shard", uniqueConstraints = @UniqueConstraint(columnNames = {"productId", "shard"}))
+public class StockShard {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private Long productId;
+
+    @Column(nullable = false)
+    private int shard;
+
+    @Column(nullable = false)
+    private int available;
+
+    protected StockShard() {}
+    public StockShard(Long productId, int shard, int available) {
+        this.productId = productId;
+        this.shard = shard;
+        this.available = available;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public Long getProductId() {
+        return productId;
+    }
+
+    public int getShard() {
+        return shard;
+    }
+
+    public int getAvailable() {
+        return available;
+    }
+}
@@ -0,0 +1,60 @@
+package com.shop.inventory;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+public interface StockShardRepository extends JpaRepository<StockShard, Long> {
+
+    // Which of the given products are stock-tracked at all, in one query
+    @Query("select distinct s.productId from StockShard s where s.productId in :productIds")
+    Set<Long> findTrackedProductIds(@Param("productIds") Collection<Long> productIds);
+
+    @Query("select count(p) > 0 from Product p where p.id = :productId")
+    boolean productExists(@Param("productId") Long productId);
+
+    @Query("select coalesce(sum(s.available), 0) from StockShard s where s.productId = :productId")
+    long sumAvailable(@Param("productId") Long productId);
+
+    /**
+     * Conditional decrement: takes quantity from one shard only if it has enough left.
+     * Returns 1 when the stock was taken and 0 otherwise; it never drives a shard below zero.
+     */
+    @Modifying
+    @Query("""
+            update StockShard s set s.available = s.available - :quantity
+            where s.productId = :productId and s.shard = :shard and s.available >= :quantity
+            """)
+    int tryTake(@Param("productId") Long productId, @Param("shard") int shard, @Param("quantity") int quantity);
+
+    @Modifying
+    @Query("update StockShard s set s.available = s.available + :quantity where s.productId = :productId and s.shard = :shard")
+    int give(@Param("productId") Long productId, @Param("shard") int shard, @Param("quantity") int quantity);
+
+    interface ShardStock {
+        int getShard();
+        int getAvailable();
+    }
+
+    /**
+     * SELECT ... FOR UPDATE over every shard of the product, in shard order so two lockers cannot deadlock.
+     * A projection rather than entities: managed StockShard instances would not see the bulk updates above.
+     */
+    @Query(value = "select shard as shard, available as available from stock_shard where product_id = :productId order by shard for update",
+            nativeQuery = true)
+    List<ShardStock> lockShards(@Param("productId") Long productId);
+
+    // Overwrites one shard in place, so a release blocked on its row lock adds to the new value afterwards
+    @Modifying
+    @Query("update StockShard s set s.available = :available where s.productId = :productId and s.shard = :shard")
+    int setAvailable(@Param("productId") Long productId, @Param("shard") int shard, @Param("available") int available);
+
+    // Shards beyond a lowered shop.inventory.shards
+    @Modifying
+    @Query("delete from StockShard s where s.productId = :productId and s.shard >= :shards")
+    void deleteFromShard(@Param("productId") Long productId, @Param("shards") int shards);
+}
@@ -0,0 +1,219 @@
+package com.shop.order;
+
+import com.shop.cart.CartItem;
+import com.shop.cart.CartItemRepository;
+import com.shop.cart.CartService;
+import com.shop.config.ReplicaRouting;
+import com.shop.inventory.InventoryService;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Optional asynchronous checkout pipeline, enabled with shop.checkout.async.enabled=true.
+ *
+ * Requests are put on a bounded in-process queue and answered right away with a {@link CheckoutTicket}.
+ * Worker threads take up to batchSize checkouts at a time and place them in one transaction; if any of them
+ * fails the batch is rolled back and its checkouts are replayed one per transaction, so one bad cart
+ * cannot fail the others. Tickets are keyed by (username, Idempotency-Key): a retried key returns the
+ * existing ticket, or the order already stored with that key, instead of placing a second order.
+ * The cart's stock is held when the ticket is issued, so a sold-out product is reported right away and
+ * queued checkouts cannot oversell; the hold is released if the checkout fails, or expires if it is lost.
+ * .NET equivalent is a System.Threading.Channels bounded channel drained by a BackgroundService.
+ */
+@Service
+@ConditionalOnProperty(name = "shop.checkout.async.enabled", havingValue = "true")
+public class AsyncCheckoutService {
+
+    private static final Logger log = LoggerFactory.getLogger(AsyncCheckoutService.class);
+
+    private record TicketKey(String username, String idempotencyKey) {}
+
+    private final CheckoutService checkoutService;
+    private final OrderRepository orderRepository;
+    private final CartItemRepository cartItemRepository;
+    private final CartService cartService;
+    private final InventoryService inventoryService;
+    private final ReplicaRouting replicaRouting;
+    private final TransactionTemplate transactionTemplate;
+    private final BlockingQueue<CheckoutTicket> queue;
+    private final Map<TicketKey, CheckoutTicket> tickets = new ConcurrentHashMap<>();
+    private final int workers;
+    private final int batchSize;
+    private final Duration ticketRetention;
+    private final boolean virtualThreads;
+    private final List<Thread> workerThreads = new ArrayList<>();
+    private volatile boolean running;
+
+    public AsyncCheckoutService(CheckoutService checkoutService,
+                                OrderRepository orderRepository,
+                                CartItemRepository cartItemRepository,
+                                CartService cartService,
+                                InventoryService inventoryService,
+                                ReplicaRouting replicaRouting,
+                                PlatformTransactionManager transactionManager,
+                                @Value("${shop.checkout.async.queue-capacity:1000}") int queueCapacity,
+                                @Value("${shop.checkout.async.workers:4}") int workers,
+                                @Value("${shop.checkout.async.batch-size:16}") int batchSize,
+                                @Value("${shop.checkout.async.ticket-retention:PT1H}") Duration ticketRetention,
+                                @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+        this.checkoutService = checkoutService;
+        this.orderRepository = orderRepository;
+        this.cartItemRepository = cartItemRepository;
+        this.cartService = cartService;
+        this.inventoryService = inventoryService;
+        this.replicaRouting = replicaRouting;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.workers = workers;
+        this.batchSize = batchSize;
+        this.ticketRetention = ticketRetention;
+        this.virtualThreads = virtualThreads;
+    }
+
+    /**
+     * Queues a checkout, or returns the ticket of an earlier request with the same key.
+     *
+     * @throws CheckoutQueueFullException when the queue is at capacity
+     * @throws com.shop.inventory.InsufficientStockException when the cart asks for more than is left
+     */
+    public CheckoutTicket submit(String username, String idempotencyKey) {
+        var key = new TicketKey(username, idempotencyKey);
+        CheckoutTicket existing = tickets.get(key);
+        if (existing != null) {
+            return existing;
+        }
+        var placed = orderRepository.findByUsernameAndIdempotencyKey(username, idempotencyKey);
+        if (placed.isPresent()) {
+            return tickets.computeIfAbsent(key, k -> CheckoutTicket.completed(placed.get()));
+        }
+
+        var ticket = new CheckoutTicket(username, idempotencyKey);
+        CheckoutTicket winner = tickets.putIfAbsent(key, ticket);
+        if (winner != null) {
+            return winner;
+        }
+        try {
+            cartService.flush(username);
+            // The cart may have been written by the write-behind flusher, which no read-your-writes covers
+            var cartItems = replicaRouting.onPrimary(() -> cartItemRepository.findByUsername(username));
+            inventoryService.hold(username, idempotencyKey, cartItems.stream()
+                    .collect(Collectors.toMap(CartItem::getProductId, CartItem::getQuantity)));
+        } catch (RuntimeException e) {
+            tickets.remove(key, ticket);
+            throw e;
+        }
+        if (!queue.offer(ticket)) {
+            tickets.remove(key, ticket);
+            inventoryService.release(username, idempotencyKey);
+            throw new CheckoutQueueFullException();
+        }
+        return ticket;
+    }
+
+    public CheckoutTicket find(String username, String idempotencyKey) {
+        return tickets.get(new TicketKey(username, idempotencyKey));
+    }
+
+    @PostConstruct
+    void start() {
+        running = true;
+        // Follows the application-wide virtual thread mode, like Spring's own executors
+        Thread.Builder builder = virtualThreads ? Thread.ofVirtual() : Thread.ofPlatform();
+        builder.name("checkout-worker-", 0);
+        for (int i = 0; i < workers; i++) {
+            workerThreads.add(builder.start(this::work));
+        }
+    }
+
+    /**
+     * Stops taking new work once the queue is drained, so accepted checkouts are not dropped on shutdown.
+     */
+    @PreDestroy
+    void stop() throws InterruptedException {
+        running = false;
+        for (Thread worker : workerThreads) {
+            worker.join(TimeUnit.SECONDS.toMillis(30));
+        }
+    }
+
+    private void work() {
+        List<CheckoutTicket> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                CheckoutTicket first = queue.poll(200, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                process(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                log.error("Checkout worker failed", e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void process(List<CheckoutTicket> batch) {
+        if (batch.size() > 1) {
+            try {
+                List<Order> orders = transactionTemplate.execute(status -> batch.stream()
+                        .map(ticket -> checkoutService.checkout(ticket.getUsername(), ticket.getIdempotencyKey()))
+                        .toList());
+                for (int i = 0; i < batch.size(); i++) {
+                    batch.get(i).complete(orders.get(i));
+                }
+                return;
+            } catch (RuntimeException e) {
+                log.debug("Checkout batch of {} rolled back, retrying one by one", batch.size(), e);
+            }
+        }
+        for (CheckoutTicket ticket : batch) {
+            try {
+                // Each in its own transaction, which checkout retries on a lock conflict
+                ticket.complete(checkoutService.checkout(ticket.getUsername(), ticket.getIdempotencyKey()));
+            } catch (RuntimeException e) {
+                ticket.fail(e.getMessage());
+                releaseHold(ticket);
+            }
+        }
+    }
+
+    private void releaseHold(CheckoutTicket ticket) {
+        try {
+            inventoryService.release(ticket.getUsername(), ticket.getIdempotencyKey());
+        } catch (RuntimeException e) {
+            // The inventory sweep returns the stock once the hold expires
+            log.warn("Could not release the stock held for checkout {}", ticket.getIdempotencyKey(), e);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${shop.checkout.async.sweep-interval:PT1M}")
+    void expireTickets() {
+        Instant cutoff = Instant.now().minus(ticketRetention);
+        tickets.values().removeIf(ticket -> ticket.getFinishedAt() != null && ticket.getFinishedAt().isBefore(cutoff));
+    }
+}
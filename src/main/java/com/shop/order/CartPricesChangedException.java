@@ -0,0 +1,26 @@
+package com.shop.order;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+import java.util.List;
+
+/**
+ * Thrown by checkout when products in the cart were changed (or deleted) after the cart took their snapshots.
+ * Nothing is ordered; the client should show the new prices (POST /api/cart/refresh-prices) and check out again.
+ */
+@ResponseStatus(HttpStatus.CONFLICT)
+public class CartPricesChangedException extends IllegalStateException {
+
+    private final List<Long> productIds;
+
+    public CartPricesChangedException(List<Long> productIds) {
+        super("Prices changed since the cart was viewed for products " + productIds
+                + "; refresh the cart and check out again");
+        this.productIds = List.copyOf(productIds);
+    }
+
+    public List<Long> getProductIds() {
+        return productIds;
+    }
+}
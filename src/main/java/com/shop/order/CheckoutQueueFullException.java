@@ -0,0 +1,14 @@
+package com.shop.order;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * Thrown when the async checkout queue is at capacity; the client should retry with the same Idempotency-Key.
+ */
+@ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+public class CheckoutQueueFullException extends RuntimeException {
+    public CheckoutQueueFullException() {
+        super("Checkout queue is full, please retry");
+    }
+}
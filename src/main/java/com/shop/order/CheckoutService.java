@@ -2,4 +2,10 @@ package com.shop.order;
 
 public interface CheckoutService {
     Order checkout(String username);
+
+    /**
+     * Places an order from the user's cart. When idempotencyKey is not null and an order was already
+     * placed with that key, the existing order is returned and the cart is left untouched.
+     */
+    Order checkout(String username, String idempotencyKey);
 }
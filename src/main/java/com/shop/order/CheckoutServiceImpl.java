@@ -1,56 +1,144 @@
 package com.shop.order;
 
 import com.shop.cart.CartItemRepository;
-import com.shop.product.Product;
-import com.shop.product.ProductRepository;
-import jakarta.transaction.Transactional;
+import com.shop.cart.CartService;
+import com.shop.cart.CheckoutLine;
+import com.shop.cart.ConcurrencyRetry;
+import com.shop.common.Money;
+import com.shop.config.ReplicaRouting;
+import com.shop.inventory.InventoryService;
+import com.shop.inventory.InsufficientStockException;
+import io.micrometer.core.annotation.Timed;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
-import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
 
 @Service
+@Timed(value = "shop.checkout", description = "CheckoutService calls")
 public class CheckoutServiceImpl implements CheckoutService {
 
+    static final String CART_EMPTY = "Cart is empty";
+
     private final CartItemRepository cartItemRepository;
-    private final ProductRepository productRepository;
     private final OrderRepository orderRepository;
+    private final CartService cartService;
+    private final InventoryService inventoryService;
+    private final ReplicaRouting replicaRouting;
+    private final ApplicationEventPublisher events;
+    private final ConcurrencyRetry concurrencyRetry;
+    private final MeterRegistry meterRegistry;
+    private final DistributionSummary cartLines;
 
-    public CheckoutServiceImpl(CartItemRepository cartItemRepository, ProductRepository productRepository, OrderRepository orderRepository) {
+    public CheckoutServiceImpl(CartItemRepository cartItemRepository, OrderRepository orderRepository, CartService cartService, InventoryService inventoryService, ReplicaRouting replicaRouting, ApplicationEventPublisher events, ConcurrencyRetry concurrencyRetry, MeterRegistry meterRegistry) {
         this.cartItemRepository = cartItemRepository;
-        this.productRepository = productRepository;
         this.orderRepository = orderRepository;
+        this.cartService = cartService;
+        this.inventoryService = inventoryService;
+        this.replicaRouting = replicaRouting;
+        this.events = events;
+        this.concurrencyRetry = concurrencyRetry;
+        this.meterRegistry = meterRegistry;
+        this.cartLines = DistributionSummary.builder("shop.checkout.lines")
+                .description("Lines in a cart when it is checked out")
+                .register(meterRegistry);
     }
 
-    @Transactional
     @Override
     public Order checkout(String username) {
-        var cartItems = cartItemRepository.findByUsername(username);
-        if (cartItems.isEmpty()) {
-            throw new IllegalStateException("Cart is empty");
+        return checkout(username, null);
+    }
+
+    @Override
+    public Order checkout(String username, String idempotencyKey) {
+        try {
+            // Its own transaction, run again when it loses a lock conflict (deadlock or lock timeout) with a concurrent
+            // checkout on the stock shards, or a concurrent request with the same key inserts the order first: the
+            // next attempt returns that order. The async workers batch checkouts in one transaction and retry those
+            return concurrencyRetry.inTransaction(() -> placeOrder(username, idempotencyKey), ConcurrentCheckoutException::new);
+        } catch (RuntimeException e) {
+            Counter.builder("shop.checkout.failures")
+                    .description("Checkouts that threw, by cause")
+                    .tag("cause", cause(e))
+                    .register(meterRegistry)
+                    .increment();
+            throw e;
+        }
+    }
+
+    private Order placeOrder(String username, String idempotencyKey) {
+        if (idempotencyKey != null) {
+            var existing = orderRepository.findByUsernameAndIdempotencyKey(username, idempotencyKey);
+            if (existing.isPresent()) {
+                return existing.get();
+            }
+        }
+
+        // A write-behind cart may have changes that are only in memory yet
+        cartService.flush(username);
+        List<CheckoutLine> lines = cartItemRepository.findCheckoutLines(username);
+        if (lines.isEmpty()) {
+            throw new IllegalStateException(CART_EMPTY);
         }
+        cartLines.record(lines.size());
 
-        BigDecimal totalPrice = BigDecimal.ZERO;
-        var order = new Order(username, BigDecimal.ZERO);
+        // The order is priced from the snapshots the user saw; a product changed since then refuses the whole cart
+        List<Long> changed = lines.stream().filter(line -> !line.isCurrent()).map(CheckoutLine::productId).toList();
+        if (!changed.isEmpty()) {
+            throw new CartPricesChangedException(changed);
+        }
 
-        for (var item : cartItems) {
-            Product product = productRepository.findById(item.getProductId())
-                    .orElseThrow(() -> new IllegalStateException("Product not found: " + item.getProductId()));
-            BigDecimal lineTotal = product.getPrice().multiply(BigDecimal.valueOf(item.getQuantity()));
-            totalPrice = totalPrice.add(lineTotal);
+        long totalMinorUnits = 0;
+        var orderItems = new ArrayList<OrderItem>(lines.size());
+        var placedLines = new ArrayList<OrderPlacedEvent.Line>(lines.size());
+        var quantities = new HashMap<Long, Integer>(lines.size() * 2);
 
-            var orderItem = new OrderItem(product.getId(), product.getName(), product.getPrice(), item.getQuantity());
+        for (var line : lines) {
+            long unitMinorUnits = Money.toMinorUnits(line.price());
+            totalMinorUnits = Money.add(totalMinorUnits, Money.multiply(unitMinorUnits, line.quantity()));
 
-            order.addItem(orderItem);
+            orderItems.add(new OrderItem(line.productId(), line.name(), line.price(), line.quantity()));
+            quantities.put(line.productId(), line.quantity());
+            placedLines.add(new OrderPlacedEvent.Line(line.productId(), line.quantity(), unitMinorUnits));
         }
 
-        var saved = orderRepository.save(new Order(username, totalPrice));
-        for (var item : order.getItems()) {
-            item.setOrder(saved);
+        // Takes the stock in this transaction, so a failed checkout gives it back on rollback.
+        // An asynchronous checkout already holds stock under its idempotency key; that hold is used up here
+        if (idempotencyKey != null) {
+            inventoryService.commit(username, idempotencyKey, quantities);
+        } else {
+            inventoryService.reserve(quantities);
         }
-        saved.getItems().addAll(order.getItems());
-        var finalorder = orderRepository.save(saved);
 
-        cartItemRepository.deleteByUsername(username);
+        // Persisting the new order cascades to its items; both are written as JDBC batches on flush
+        var order = new Order(username, Money.toBigDecimal(totalMinorUnits), idempotencyKey);
+        orderItems.forEach(order::addItem);
+        var saved = orderRepository.save(order);
+        events.publishEvent(new OrderPlacedEvent(saved.getId(), username, saved.getCreatedAt(), placedLines));
+
+        // Joins this transaction; also resets the cart summary once the order commits
+        cartService.clear(username);
+        // The user looks at the new order next; also covers orders placed by the async workers
+        replicaRouting.stickToPrimary(username);
+
+        return saved;
+    }
 
-        return finalorder;
+    // Low-cardinality tag value
+    private static String cause(RuntimeException e) {
+        if (e instanceof InsufficientStockException) {
+            return "insufficient_stock";
+        }
+        if (e instanceof CartPricesChangedException) {
+            return "prices_changed";
+        }
+        if (CART_EMPTY.equals(e.getMessage())) {
+            return "cart_empty";
+        }
+        return e.getClass().getSimpleName();
     }
 }
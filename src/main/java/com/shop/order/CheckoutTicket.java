@@ -0,0 +1,66 @@
+package com.shop.order;
+
+import java.time.Instant;
+
+/**
+ * Handle for a checkout queued by {@link AsyncCheckoutService}. Clients poll it until it is COMPLETED or FAILED.
+ * The fields are written by a worker thread and read by request threads, hence volatile.
+ */
+public class CheckoutTicket {
+
+    public enum Status { QUEUED, COMPLETED, FAILED }
+
+    private final String username;
+    private final String idempotencyKey;
+    private volatile Status status = Status.QUEUED;
+    private volatile Long orderId;
+    private volatile String error;
+    private volatile Instant finishedAt;
+
+    CheckoutTicket(String username, String idempotencyKey) {
+        this.username = username;
+        this.idempotencyKey = idempotencyKey;
+    }
+
+    static CheckoutTicket completed(Order order) {
+        var ticket = new CheckoutTicket(order.getUsername(), order.getIdempotencyKey());
+        ticket.complete(order);
+        return ticket;
+    }
+
+    void complete(Order order) {
+        this.orderId = order.getId();
+        this.finishedAt = Instant.now();
+        this.status = Status.COMPLETED;
+    }
+
+    void fail(String error) {
+        this.error = error;
+        this.finishedAt = Instant.now();
+        this.status = Status.FAILED;
+    }
+
+    String getUsername() {
+        return username;
+    }
+
+    public String getIdempotencyKey() {
+        return idempotencyKey;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public Long getOrderId() {
+        return orderId;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    Instant getFinishedAt() {
+        return finishedAt;
+    }
+}
@@ -0,0 +1,15 @@
+package com.shop.order;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * Thrown when a checkout still conflicts with concurrent checkouts on the same stock after all retries.
+ * @ResponseStatus maps it to 409 Conflict; the client can retry, with the same Idempotency-Key if it sent one.
+ */
+@ResponseStatus(HttpStatus.CONFLICT)
+public class ConcurrentCheckoutException extends RuntimeException {
+    public ConcurrentCheckoutException(Throwable cause) {
+        super("Checkout conflicted with concurrent orders, please retry", cause);
+    }
+}
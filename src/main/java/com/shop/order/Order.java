@@ -7,23 +7,37 @@ import java.util.ArrayList;
 import java.util.List;
 
 @Entity
-@Table(name = "orders")
+@Table(name = "orders",
+        uniqueConstraints = @UniqueConstraint(columnNames = {"username", "idempotencyKey"}),
+        // Serves the keyset-paginated order history: WHERE username = ? ORDER BY createdAt DESC, id DESC. It also
+        // holds total, the only other column the summaries select, so those queries never read the table rows
+        indexes = @Index(name = "idx_orders_username_created_at", columnList = "username, createdAt, id, total"))
 public class Order {
 
-    @Id @GeneratedValue(strategy = GenerationType.IDENTITY)
+    // Pooled sequence instead of IDENTITY: Hibernate can only batch inserts when it knows the id before the INSERT
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "orders_seq")
+    @SequenceGenerator(name = "orders_seq", sequenceName = "orders_seq", allocationSize = 50)
     private Long id;
 
     @Column(nullable = false) private String username;
     @Column(nullable = false) private Instant createdAt = Instant.now();
     @Column(nullable = false, precision = 14, scale = 2) private BigDecimal total;
+    // Client supplied Idempotency-Key the order was placed with, if any; unique per user
+    @Column(length = 100) private String idempotencyKey;
 
-    @OneToMany(mappedBy = "order", cascade = CascadeType.ALL, orphanRemoval = true, fetch = FetchType.EAGER)
+    // Loaded only when asked for, e.g. by OrderRepository.findWithItems; the order history never touches them
+    @OneToMany(mappedBy = "order", cascade = CascadeType.ALL, orphanRemoval = true, fetch = FetchType.LAZY)
     private List<OrderItem> items = new ArrayList<>();
 
     protected Order() {}
     public Order(String username, BigDecimal total) {
+        this(username, total, null);
+    }
+    public Order(String username, BigDecimal total, String idempotencyKey) {
         this.username = username;
         this.total = total;
+        this.idempotencyKey = idempotencyKey;
     }
 
     public Long getId() {
@@ -42,6 +56,10 @@ public class Order {
         return total;
     }
 
+    public String getIdempotencyKey() {
+        return idempotencyKey;
+    }
+
     public List<OrderItem> getItems() {
         return items;
     }
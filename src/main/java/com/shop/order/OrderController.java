@@ -1,36 +1,114 @@
 package com.shop.order;
 
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.data.domain.Limit;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ProblemDetail;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import java.net.URI;
 import java.util.List;
 
 @RestController
 @RequestMapping("/api/orders")
 public class OrderController {
 
+    static final String IDEMPOTENCY_KEY = "Idempotency-Key";
+    static final int DEFAULT_PAGE_SIZE = 20;
+    static final int MAX_PAGE_SIZE = 100;
+
     private final CheckoutService checkoutService;
     private final OrderRepository orderRepository;
+    private final ObjectProvider<AsyncCheckoutService> asyncCheckoutService;
 
-    public OrderController(CheckoutService checkoutService, OrderRepository orderRepository) {
+    public OrderController(CheckoutService checkoutService, OrderRepository orderRepository, ObjectProvider<AsyncCheckoutService> asyncCheckoutService) {
         this.checkoutService = checkoutService;
         this.orderRepository = orderRepository;
+        this.asyncCheckoutService = asyncCheckoutService;
     }
 
     private static String getUserName(UserDetails userDetails) {
         return userDetails.getUsername();
     }
 
+    /**
+     * Without an Idempotency-Key the order is placed synchronously, as before.
+     * With a key and async checkout enabled the request is queued and answered with 202 Accepted
+     * and a ticket to poll at the Location header; without async checkout the key only de-duplicates retries.
+     */
     @PostMapping("/checkout")
-    public Order place(@AuthenticationPrincipal UserDetails userDetails) {
-        return checkoutService.checkout(getUserName(userDetails));
+    public ResponseEntity<?> place(@AuthenticationPrincipal UserDetails userDetails,
+                                   @RequestHeader(value = IDEMPOTENCY_KEY, required = false) String idempotencyKey) {
+        String username = getUserName(userDetails);
+        if (idempotencyKey == null) {
+            return ResponseEntity.ok(checkoutService.checkout(username));
+        }
+
+        AsyncCheckoutService async = asyncCheckoutService.getIfAvailable();
+        if (async == null) {
+            // A concurrent request with the same key that inserts the order first makes checkout retry and return it
+            return ResponseEntity.ok(checkoutService.checkout(username, idempotencyKey));
+        }
+        CheckoutTicket ticket = async.submit(username, idempotencyKey);
+        return ResponseEntity.accepted()
+                .location(URI.create("/api/orders/checkout/" + idempotencyKey))
+                .body(ticket);
+    }
+
+    @GetMapping("/checkout/{idempotencyKey}")
+    public ResponseEntity<CheckoutTicket> checkoutStatus(@AuthenticationPrincipal UserDetails userDetails, @PathVariable String idempotencyKey) {
+        AsyncCheckoutService async = asyncCheckoutService.getIfAvailable();
+        CheckoutTicket ticket = async == null ? null : async.find(getUserName(userDetails), idempotencyKey);
+        return ticket == null ? ResponseEntity.notFound().build() : ResponseEntity.ok(ticket);
     }
 
+    /**
+     * The user's orders, newest first, without their items. Pass the returned nextCursor to get the next page.
+     */
     @GetMapping()
-    public List<Order> mine(@AuthenticationPrincipal UserDetails userDetails) {
-        return orderRepository.findByUsernameOrderByCreatedAtDesc(getUserName(userDetails));
+    public OrderPage mine(@AuthenticationPrincipal UserDetails userDetails,
+                          @RequestParam(required = false) String cursor,
+                          @RequestParam(defaultValue = "" + DEFAULT_PAGE_SIZE) int limit) {
+        String username = getUserName(userDetails);
+        int pageSize = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        // One extra row tells us whether there is a next page without a COUNT query
+        Limit fetch = Limit.of(pageSize + 1);
+        List<OrderSummary> rows;
+        if (cursor == null) {
+            rows = orderRepository.findSummaries(username, fetch);
+        } else {
+            var after = OrderPage.Cursor.decode(cursor);
+            rows = orderRepository.findSummariesBefore(username, after.createdAt(), after.id(), fetch);
+        }
+        boolean hasMore = rows.size() > pageSize;
+        List<OrderSummary> items = hasMore ? rows.subList(0, pageSize) : rows;
+        OrderSummary last = hasMore ? items.get(items.size() - 1) : null;
+        return new OrderPage(items, last == null ? null : new OrderPage.Cursor(last.createdAt(), last.id()).encode());
+    }
+
+    @GetMapping("/{id}")
+    public ResponseEntity<Order> one(@AuthenticationPrincipal UserDetails userDetails, @PathVariable Long id) {
+        return ResponseEntity.of(orderRepository.findWithItems(id, getUserName(userDetails)));
+    }
+
+    /**
+     * Answers a refused checkout with a problem+json body naming the changed products, so the client can
+     * highlight them without parsing the message.
+     */
+    @ExceptionHandler(CartPricesChangedException.class)
+    public ProblemDetail pricesChanged(CartPricesChangedException e) {
+        ProblemDetail problem = ProblemDetail.forStatusAndDetail(HttpStatus.CONFLICT, e.getMessage());
+        problem.setTitle("Cart prices changed");
+        problem.setProperty("productIds", e.getProductIds());
+        return problem;
     }
 }
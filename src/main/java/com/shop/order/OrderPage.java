@@ -0,0 +1,34 @@
+package com.shop.order;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * One page of a user's order history, newest first. Pass nextCursor as the "cursor" parameter to fetch the
+ * next page; it is null on the last page. The cursor encodes the (createdAt, id) of the last row shown,
+ * so later pages cost the same as the first however long the history is.
+ */
+public record OrderPage(List<OrderSummary> items, String nextCursor) {
+
+    record Cursor(Instant createdAt, Long id) {
+
+        String encode() {
+            return Base64.getUrlEncoder().withoutPadding()
+                    .encodeToString((createdAt + "_" + id).getBytes(StandardCharsets.US_ASCII));
+        }
+
+        static Cursor decode(String cursor) {
+            try {
+                String[] parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.US_ASCII).split("_", 2);
+                return new Cursor(Instant.parse(parts[0]), Long.valueOf(parts[1]));
+            } catch (RuntimeException e) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid cursor", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package com.shop.order;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Published by checkout in the transaction that places a new order; an idempotent replay of an existing order
+ * publishes nothing. Listen with @TransactionalEventListener to see only the orders that committed.
+ * .NET equivalent is an integration event raised after SaveChanges and handled by an INotificationHandler.
+ *
+ * @param orderId   id of the new order
+ * @param createdAt the order's createdAt, which is what reports bucket it by
+ * @param lines     one entry per order item, priced like the order itself
+ */
+public record OrderPlacedEvent(Long orderId, String username, Instant createdAt, List<Line> lines) {
+
+    public record Line(Long productId, int quantity, long unitPriceMinorUnits) { }
+}
@@ -1,8 +1,50 @@
 package com.shop.order;
 
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+import java.time.Instant;
 import java.util.List;
+import java.util.Optional;
 
 public interface OrderRepository extends JpaRepository<Order, Long> {
-    List<Order> findByUsernameOrderByCreatedAtDesc(String username);
+
+    // An idempotent retry answers with the stored order, items included. Not read-only: right after a lost race
+    // on the idempotency key the winning order may not have reached a replica yet
+    @EntityGraph(attributePaths = "items")
+    Optional<Order> findByUsernameAndIdempotencyKey(String username, String idempotencyKey);
+
+    // The order history reads go to a replica when one is configured; see ReplicaRouting for read-your-writes
+    @Transactional(readOnly = true)
+    @Query("""
+            select new com.shop.order.OrderSummary(o.id, o.createdAt, o.total)
+            from Order o
+            where o.username = :username
+            order by o.createdAt desc, o.id desc
+            """)
+    List<OrderSummary> findSummaries(@Param("username") String username, Limit limit);
+
+    /**
+     * The page after the given (createdAt, id) position; id breaks ties between orders created in the same instant.
+     */
+    @Transactional(readOnly = true)
+    @Query("""
+            select new com.shop.order.OrderSummary(o.id, o.createdAt, o.total)
+            from Order o
+            where o.username = :username
+              and (o.createdAt < :createdAt or (o.createdAt = :createdAt and o.id < :id))
+            order by o.createdAt desc, o.id desc
+            """)
+    List<OrderSummary> findSummariesBefore(@Param("username") String username,
+                                           @Param("createdAt") Instant createdAt,
+                                           @Param("id") Long id,
+                                           Limit limit);
+
+    // Order and items in one query; left join so an order is still found if it somehow has no items
+    @Transactional(readOnly = true)
+    @Query("select o from Order o left join fetch o.items where o.id = :id and o.username = :username")
+    Optional<Order> findWithItems(@Param("id") Long id, @Param("username") String username);
 }
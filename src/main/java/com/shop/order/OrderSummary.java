@@ -0,0 +1,11 @@
+package com.shop.order;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+
+/**
+ * Order history row without its items. Selected directly into this record by a JPQL constructor expression,
+ * so no Order entity is created or tracked by the persistence context.
+ * .NET equivalent is a Select(o =&gt; new OrderSummaryDto(...)) projection with AsNoTracking.
+ */
+public record OrderSummary(Long id, Instant createdAt, BigDecimal total) { }
@@ -0,0 +1,72 @@
+package com.shop.outbox;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.databind.util.RawValue;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * Local stand-in for a broker (shop.outbox.publisher=file): appends each event as one NDJSON line to
+ * shop.outbox.file.path, one write and one fsync per batch, so a batch counts as published only once it is on
+ * disk. The event's JSON payload is embedded as is under "payload".
+ */
+@Component
+@ConditionalOnProperty(name = "shop.outbox.publisher", havingValue = "file")
+public class FileOutboxPublisher implements OutboxPublisher {
+
+    private final ObjectMapper objectMapper;
+    private final FileChannel channel;
+
+    public FileOutboxPublisher(ObjectMapper objectMapper,
+                               @Value("${shop.outbox.file.path:outbox.ndjson}") Path path) throws IOException {
+        this.objectMapper = objectMapper;
+        Path parent = path.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    @Override
+    public void publish(List<OutboxMessage> batch) {
+        var lines = new ByteArrayOutputStream(batch.size() * 256);
+        try {
+            for (OutboxMessage message : batch) {
+                ObjectNode line = objectMapper.createObjectNode()
+                        .put("id", message.id())
+                        .put("type", message.type())
+                        .put("key", message.key())
+                        .put("sequence", message.sequence())
+                        .put("createdAt", message.createdAt().toString());
+                line.putRawValue("payload", new RawValue(message.payload()));
+                lines.write(objectMapper.writeValueAsBytes(line));
+                lines.write('\n');
+            }
+            ByteBuffer buffer = ByteBuffer.wrap(lines.toByteArray());
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(false);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @PreDestroy
+    void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,56 @@
+package com.shop.outbox;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Stand-in broker for tests and benchmarks (shop.outbox.publisher=memory): a bounded queue that consumers take
+ * from in process. A batch that does not fit is refused whole, so a consumer that falls behind holds events
+ * back in the outbox table instead of growing the heap.
+ */
+@Component
+@ConditionalOnProperty(name = "shop.outbox.publisher", havingValue = "memory")
+public class InMemoryOutboxPublisher implements OutboxPublisher {
+
+    private final BlockingQueue<OutboxMessage> queue;
+
+    public InMemoryOutboxPublisher(@Value("${shop.outbox.memory.capacity:10000}") int capacity) {
+        this.queue = new ArrayBlockingQueue<>(capacity);
+    }
+
+    /**
+     * Only the relay thread adds, so the free capacity it sees cannot shrink before the batch is added.
+     */
+    @Override
+    public void publish(List<OutboxMessage> batch) {
+        if (queue.remainingCapacity() < batch.size()) {
+            throw new IllegalStateException("Outbox consumer queue is full");
+        }
+        queue.addAll(batch);
+    }
+
+    /**
+     * Waits up to timeout for the next message; null if none arrived.
+     */
+    public OutboxMessage take(Duration timeout) throws InterruptedException {
+        return queue.poll(timeout.toNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    public List<OutboxMessage> drain(int max) {
+        List<OutboxMessage> messages = new ArrayList<>();
+        queue.drainTo(messages, max);
+        return messages;
+    }
+
+    public int size() {
+        return queue.size();
+    }
+}
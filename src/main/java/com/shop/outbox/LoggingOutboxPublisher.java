@@ -0,0 +1,27 @@
+package com.shop.outbox;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Default publisher while no consumer is connected: logs each event at DEBUG and drops it.
+ */
+@Component
+@ConditionalOnProperty(name = "shop.outbox.publisher", havingValue = "log", matchIfMissing = true)
+public class LoggingOutboxPublisher implements OutboxPublisher {
+
+    private static final Logger log = LoggerFactory.getLogger(LoggingOutboxPublisher.class);
+
+    @Override
+    public void publish(List<OutboxMessage> batch) {
+        if (log.isDebugEnabled()) {
+            for (OutboxMessage message : batch) {
+                log.debug("Published {} #{} for {}: {}", message.type(), message.sequence(), message.key(), message.payload());
+            }
+        }
+    }
+}
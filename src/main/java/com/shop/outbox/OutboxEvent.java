@@ -0,0 +1,77 @@
+package com.shop.outbox;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.SequenceGenerator;
+import jakarta.persistence.Table;
+
+import java.time.Instant;
+
+/**
+ * An event waiting to be published, written in the transaction that caused it; {@link OutboxRelay} deletes it
+ * once the publisher has taken it. A row exists exactly when its transaction committed, which is the point:
+ * no event for a rolled-back order, and none lost for a committed one.
+ */
+@Entity
+@Table(name = "outbox_event")
+public class OutboxEvent {
+
+    // Pooled sequence: the relay reads in id order, and ids are handed out in persist order within the JVM
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "outbox_event_seq")
+    @SequenceGenerator(name = "outbox_event_seq", sequenceName = "outbox_event_seq", allocationSize = 50)
+    private Long id;
+
+    @Column(nullable = false, length = 100)
+    private String type;
+
+    // Events with the same key are published in keySequence order; the username for order events
+    @Column(nullable = false, length = 100)
+    private String aggregateKey;
+
+    @Column(nullable = false)
+    private long keySequence;
+
+    @Column(nullable = false)
+    private Instant createdAt = Instant.now();
+
+    // JSON
+    @Column(nullable = false, length = 65535)
+    private String payload;
+
+    protected OutboxEvent() {}
+
+    public OutboxEvent(String type, String aggregateKey, long keySequence, String payload) {
+        this.type = type;
+        this.aggregateKey = aggregateKey;
+        this.keySequence = keySequence;
+        this.payload = payload;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public String getAggregateKey() {
+        return aggregateKey;
+    }
+
+    public long getKeySequence() {
+        return keySequence;
+    }
+
+    public Instant getCreatedAt() {
+        return createdAt;
+    }
+
+    public String getPayload() {
+        return payload;
+    }
+}
@@ -0,0 +1,12 @@
+package com.shop.outbox;
+
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.util.List;
+
+public interface OutboxEventRepository extends JpaRepository<OutboxEvent, Long> {
+
+    // No read-only transaction on purpose: the relay must read the primary, a replica may not have the rows yet
+    List<OutboxEvent> findByOrderByIdAsc(Limit limit);
+}
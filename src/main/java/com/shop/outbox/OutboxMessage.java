@@ -0,0 +1,19 @@
+package com.shop.outbox;
+
+import java.time.Instant;
+
+/**
+ * What an {@link OutboxPublisher} receives. Delivery is at-least-once: after a crash between publishing and
+ * deleting the row the same id is published again, so consumers de-duplicate by id (or by key and sequence,
+ * which also tells them when they missed one).
+ *
+ * @param key      events with the same key arrive in sequence order, 1, 2, 3...
+ * @param payload  JSON
+ */
+public record OutboxMessage(long id, String type, String key, long sequence, Instant createdAt, String payload) {
+
+    static OutboxMessage of(OutboxEvent event) {
+        return new OutboxMessage(event.getId(), event.getType(), event.getAggregateKey(), event.getKeySequence(),
+                event.getCreatedAt(), event.getPayload());
+    }
+}
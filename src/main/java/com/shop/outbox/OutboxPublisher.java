@@ -0,0 +1,16 @@
+package com.shop.outbox;
+
+import java.util.List;
+
+/**
+ * Hands outbox events to their consumers; the implementation is chosen with shop.outbox.publisher.
+ * .NET equivalent is the transport behind MassTransit's or NServiceBus' outbox.
+ */
+public interface OutboxPublisher {
+
+    /**
+     * Publishes the batch, in order. Returning means every message was taken; throwing means the whole batch is
+     * offered again after a back-off, so a message taken before the failure is delivered twice.
+     */
+    void publish(List<OutboxMessage> batch);
+}
@@ -0,0 +1,169 @@
+package com.shop.outbox;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Drains the outbox table to the {@link OutboxPublisher} on one background thread, a batch at a time:
+ * read the oldest batch-size events by id, publish them, delete them. Checkout only wakes the thread up after
+ * its commit, so the publisher's latency and failures never reach the request.
+ *
+ * - Order: one thread and id order, plus {@link OutboxWriter}'s per-key locking, publish a user's events in
+ *   the order they committed. A failed batch is retried before anything after it.
+ * - At-least-once: the rows are deleted only after publish returns; a crash in between publishes them again.
+ * - Backpressure: nothing is read ahead of the publisher. A slow or full publisher makes events wait in the
+ *   table, which shows up as shop.outbox.backlog and shop.outbox.lag rather than as memory or checkout latency;
+ *   failed publishes back off exponentially up to max-backoff.
+ * Meant for a single instance: two relays on one table would both publish every event.
+ * .NET equivalent is a BackgroundService polling the outbox table, as in the MassTransit EF Core outbox.
+ */
+@Component
+public class OutboxRelay {
+
+    public record Stats(long published, long failures, long backlog, Duration lag) {}
+
+    private static final Logger log = LoggerFactory.getLogger(OutboxRelay.class);
+
+    private final OutboxEventRepository outboxEventRepository;
+    private final OutboxPublisher publisher;
+    private final int batchSize;
+    private final Duration pollInterval;
+    private final Duration initialBackoff;
+    private final Duration maxBackoff;
+    private final Timer delivery;
+    private final LongAdder published = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final Semaphore wakeups = new Semaphore(0);
+    private volatile long backlog;
+    // createdAt of the oldest unpublished event when the relay last looked; null when the outbox was empty
+    private volatile Instant oldestPending;
+    private volatile boolean running;
+    private Thread thread;
+
+    public OutboxRelay(OutboxEventRepository outboxEventRepository,
+                       OutboxPublisher publisher,
+                       MeterRegistry meterRegistry,
+                       @Value("${shop.outbox.batch-size:100}") int batchSize,
+                       @Value("${shop.outbox.poll-interval:PT1S}") Duration pollInterval,
+                       @Value("${shop.outbox.retry.initial-backoff:100ms}") Duration initialBackoff,
+                       @Value("${shop.outbox.retry.max-backoff:PT30S}") Duration maxBackoff) {
+        this.outboxEventRepository = outboxEventRepository;
+        this.publisher = publisher;
+        this.batchSize = batchSize;
+        this.pollInterval = pollInterval;
+        this.initialBackoff = initialBackoff;
+        this.maxBackoff = maxBackoff;
+        this.delivery = Timer.builder("shop.outbox.delivery")
+                .description("Time from writing an outbox event to its publication")
+                .register(meterRegistry);
+    }
+
+    public Stats stats() {
+        Instant oldest = oldestPending;
+        Duration lag = oldest == null ? Duration.ZERO : Duration.between(oldest, Instant.now());
+        return new Stats(published.sum(), failures.sum(), backlog, lag);
+    }
+
+    /**
+     * Asks the relay to look at the table now instead of at the next poll; cheap, and safe to call often.
+     */
+    public void wake() {
+        if (wakeups.availablePermits() == 0) {
+            wakeups.release();
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    void start() {
+        running = true;
+        thread = Thread.ofPlatform().name("outbox-relay").daemon().start(this::run);
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+        running = false;
+        if (thread != null) {
+            wake();
+            thread.join(TimeUnit.SECONDS.toMillis(10));
+        }
+    }
+
+    private void run() {
+        Duration backoff = Duration.ZERO;
+        while (running) {
+            try {
+                boolean more = relayBatch();
+                backoff = Duration.ZERO;
+                if (!more) {
+                    waitForWork(pollInterval);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                failures.increment();
+                backoff = backoff.isZero() ? initialBackoff : min(backoff.multipliedBy(2), maxBackoff);
+                log.warn("Outbox publish failed, retrying in {}", backoff, e);
+                try {
+                    waitForWork(backoff);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    // Returns whether the batch was full, in which case the next one is read right away
+    private boolean relayBatch() {
+        List<OutboxEvent> batch = outboxEventRepository.findByOrderByIdAsc(Limit.of(batchSize));
+        if (batch.isEmpty()) {
+            backlog = 0;
+            oldestPending = null;
+            return false;
+        }
+        oldestPending = batch.get(0).getCreatedAt();
+        boolean full = batch.size() == batchSize;
+        backlog = full ? outboxEventRepository.count() : batch.size();
+
+        publisher.publish(batch.stream().map(OutboxMessage::of).toList());
+        outboxEventRepository.deleteAllByIdInBatch(batch.stream().map(OutboxEvent::getId).toList());
+
+        Instant now = Instant.now();
+        for (OutboxEvent event : batch) {
+            delivery.record(Duration.between(event.getCreatedAt(), now));
+        }
+        published.add(batch.size());
+        backlog -= batch.size();
+        if (!full) {
+            oldestPending = null;
+        }
+        return full;
+    }
+
+    // A wake-up that arrived while a batch was being published is kept, so a commit is never missed
+    private void waitForWork(Duration timeout) throws InterruptedException {
+        if (wakeups.tryAcquire(timeout.toNanos(), TimeUnit.NANOSECONDS)) {
+            wakeups.drainPermits();
+        }
+    }
+
+    private static Duration min(Duration a, Duration b) {
+        return a.compareTo(b) <= 0 ? a : b;
+    }
+}
@@ -0,0 +1,31 @@
+package com.shop.outbox;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+
+/**
+ * Last sequence number handed out per aggregate key. Incrementing it locks the row until the transaction ends,
+ * so two transactions writing events for the same key take their numbers, and their outbox ids, in commit order.
+ */
+@Entity
+@Table(name = "outbox_sequence")
+public class OutboxSequence {
+
+    @Id
+    @Column(length = 100)
+    private String aggregateKey;
+
+    private long lastSequence;
+
+    protected OutboxSequence() {}
+
+    public String getAggregateKey() {
+        return aggregateKey;
+    }
+
+    public long getLastSequence() {
+        return lastSequence;
+    }
+}
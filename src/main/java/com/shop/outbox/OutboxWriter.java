@@ -0,0 +1,102 @@
+package com.shop.outbox;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.shop.order.OrderPlacedEvent;
+import jakarta.transaction.Transactional;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+
+/**
+ * Records events in the outbox table inside the transaction that causes them, so they commit or roll back with
+ * it; publishing is left to {@link OutboxRelay}, which checkout never waits for.
+ * Currently records every {@link OrderPlacedEvent} as "order.placed", keyed by username.
+ * .NET equivalent is adding an OutboxMessage entity to the same DbContext before SaveChanges.
+ */
+@Component
+public class OutboxWriter {
+
+    public static final String ORDER_PLACED = "order.placed";
+
+    private static final String NEXT_SEQUENCE =
+            "UPDATE outbox_sequence SET last_sequence = last_sequence + 1 WHERE aggregate_key = ?";
+    private static final String CREATE_SEQUENCE =
+            "INSERT INTO outbox_sequence (aggregate_key, last_sequence) VALUES (?, 0)";
+
+    private final OutboxEventRepository outboxEventRepository;
+    private final OutboxRelay relay;
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+
+    public OutboxWriter(OutboxEventRepository outboxEventRepository, OutboxRelay relay, JdbcTemplate jdbcTemplate,
+                        ObjectMapper objectMapper) {
+        this.outboxEventRepository = outboxEventRepository;
+        this.relay = relay;
+        this.jdbcTemplate = jdbcTemplate;
+        this.objectMapper = objectMapper;
+    }
+
+    // Runs last in checkout's transaction, so the key's counter row is locked only while the transaction commits,
+    // never while checkout still waits for stock or cart rows. Without a transaction append refuses loudly
+    @TransactionalEventListener(phase = TransactionPhase.BEFORE_COMMIT, fallbackExecution = true)
+    void onOrderPlaced(OrderPlacedEvent event) {
+        append(ORDER_PLACED, event.username(), event);
+    }
+
+    /**
+     * Adds an event to the outbox; must run inside the transaction whose commit makes it true.
+     * Events with the same key are published in the order their transactions commit.
+     */
+    @Transactional(Transactional.TxType.MANDATORY)
+    public OutboxEvent append(String type, String key, Object payload) {
+        String json;
+        try {
+            json = objectMapper.writeValueAsString(payload);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Outbox payload is not serializable: " + type, e);
+        }
+        OutboxEvent saved = outboxEventRepository.save(new OutboxEvent(type, key, nextSequence(key), json));
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                relay.wake();
+            }
+        });
+        return saved;
+    }
+
+    // Locks the key's counter row until this transaction ends; the id of the event is only taken afterwards
+    private long nextSequence(String key) {
+        if (jdbcTemplate.update(NEXT_SEQUENCE, key) == 0) {
+            // First event for the key. Behind a savepoint, so losing the race to a concurrent first event leaves
+            // this transaction usable; not REQUIRES_NEW, which would hold a second pooled connection per checkout
+            jdbcTemplate.execute((Connection connection) -> {
+                Savepoint savepoint = connection.setSavepoint();
+                try (PreparedStatement insert = connection.prepareStatement(CREATE_SEQUENCE)) {
+                    insert.setString(1, key);
+                    insert.executeUpdate();
+                    connection.releaseSavepoint(savepoint);
+                } catch (SQLException e) {
+                    // SQLState class 23 is an integrity constraint violation: created concurrently
+                    if (e.getSQLState() == null || !e.getSQLState().startsWith("23")) {
+                        throw e;
+                    }
+                    connection.rollback(savepoint);
+                }
+                return null;
+            });
+            jdbcTemplate.update(NEXT_SEQUENCE, key);
+        }
+        return jdbcTemplate.queryForObject(
+                "SELECT last_sequence FROM outbox_sequence WHERE aggregate_key = ?", Long.class, key);
+    }
+}
@@ -0,0 +1,21 @@
+package com.shop.product;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.shop.common.Money;
+
+import java.math.BigDecimal;
+
+/**
+ * Read-only copy of a {@link Product} row, as {@link ProductCatalogCache} hands it out. One cached instance is
+ * shared by every thread, so it cannot be a mutable entity: nobody can change it under another reader, and no
+ * persistence context can flush or refresh it. Serializes like Product. The price is also kept in minor units,
+ * converted once here, for the cart totals that multiply it for every line.
+ */
+public record CatalogProduct(Long id, String name, String description, BigDecimal price,
+                             @JsonIgnore long priceMinorUnits, @JsonIgnore long version) {
+
+    public static CatalogProduct of(Product product) {
+        return new CatalogProduct(product.getId(), product.getName(), product.getDescription(), product.getPrice(),
+                Money.toMinorUnits(product.getPrice()), product.getVersion());
+    }
+}
@@ -0,0 +1,248 @@
+package com.shop.product;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import com.shop.config.ReplicaRouting;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Server-side cache of the GET /api/products pages, holding each response as finished bytes: the JSON body,
+ * its gzipped copy and a weak ETag computed from the body. A repeat of the same page is answered from memory
+ * without reaching the controller, the database or Jackson. Pages are keyed by "after" and the clamped "limit"
+ * only, so extra or reordered parameters cannot multiply the entries. A client sending Accept-Encoding: gzip gets
+ * the compressed copy, and a matching If-None-Match gets 304 Not Modified.
+ *
+ * Every product write and every imported chunk drops all pages, since one changed product can move every page
+ * after it. A page rendered while a write committed is not stored (same generation check as
+ * {@link ProductCatalogCache}), nor is one rendered within the replica lag after a write, as it may have been
+ * read from a replica that has not seen the write yet. Responses carry Cache-Control: public, max-age so browsers and CDNs can serve
+ * repeats too; after max-age they revalidate with the ETag, which stays the same while the page is unchanged.
+ *
+ * Search is not cached: its index is updated a little after the commit, so a page cached in between could
+ * outlive the write that made it stale. The export streams the whole catalog and is too large to hold.
+ * .NET equivalent is ASP.NET Core output caching (AddOutputCache) with tag-based eviction plus response compression.
+ */
+@Component
+@ConditionalOnProperty(name = "shop.catalog-http-cache.enabled", havingValue = "true", matchIfMissing = true)
+public class CatalogResponseCache extends OncePerRequestFilter {
+
+    public record Stats(long hits, long misses, long notModified, int size) {}
+
+    static final String PATH = "/api/products";
+    // Below this gzip saves less than the header and the CPU cost
+    private static final int GZIP_MIN_BYTES = 1024;
+    private static final Pattern ZERO_QUALITY = Pattern.compile("q=0(\\.0{0,3})?");
+
+    private record Entry(byte[] body, byte[] gzipped, String contentType, String etag) {}
+
+    private final int maxEntries;
+    private final long maxEntryBytes;
+    private final String cacheControl;
+    private final long replicaLagNanos;
+    // Keyed by page (see key); access order, so the least recently used page is evicted first
+    private final LinkedHashMap<String, Entry> entries;
+    // Bumped on every invalidation so a page rendered from data older than the write is not stored
+    private final AtomicLong generation = new AtomicLong();
+    private volatile long invalidatedAtNanos;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder notModified = new LongAdder();
+
+    public CatalogResponseCache(@Value("${shop.catalog-http-cache.max-entries:1000}") int maxEntries,
+                                @Value("${shop.catalog-http-cache.max-entry-size:1MB}") DataSize maxEntrySize,
+                                @Value("${shop.catalog-http-cache.max-age:PT30S}") Duration maxAge,
+                                ReplicaRouting replicaRouting) {
+        this.maxEntries = maxEntries;
+        this.maxEntryBytes = maxEntrySize.toBytes();
+        this.cacheControl = "public, max-age=" + maxAge.toSeconds();
+        this.replicaLagNanos = replicaRouting.maxLag().toNanos();
+        this.invalidatedAtNanos = System.nanoTime() - replicaLagNanos;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > CatalogResponseCache.this.maxEntries;
+            }
+        };
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !"GET".equals(request.getMethod())
+                || !PATH.equals(request.getRequestURI().substring(request.getContextPath().length()));
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String key = key(request);
+        if (key == null) {
+            // The controller refuses it with 400
+            chain.doFilter(request, response);
+            return;
+        }
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.get(key);
+        }
+        if (entry != null) {
+            hits.increment();
+            send(request, response, entry);
+            return;
+        }
+        misses.increment();
+
+        long renderGeneration = generation.get();
+        boolean settled = System.nanoTime() - invalidatedAtNanos >= replicaLagNanos;
+        var buffered = new ContentCachingResponseWrapper(response);
+        chain.doFilter(request, buffered);
+        byte[] body = buffered.getContentAsByteArray();
+        if (buffered.getStatus() != HttpServletResponse.SC_OK || buffered.getContentType() == null
+                || body.length > maxEntryBytes) {
+            buffered.copyBodyToResponse();
+            return;
+        }
+        entry = new Entry(body, body.length < GZIP_MIN_BYTES ? null : gzip(body), buffered.getContentType(), etag(body));
+        synchronized (entries) {
+            if (settled && renderGeneration == generation.get()) {
+                entries.put(key, entry);
+            }
+        }
+        // The buffered copy is dropped; the client gets the same bytes the next hit would get
+        send(request, response, entry);
+    }
+
+    public void invalidateAll() {
+        synchronized (entries) {
+            generation.incrementAndGet();
+            invalidatedAtNanos = System.nanoTime();
+            entries.clear();
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    void onProductChanged(ProductChangedEvent event) {
+        invalidateAll();
+    }
+
+    @EventListener
+    void onProductsImported(ProductsImportedEvent event) {
+        invalidateAll();
+    }
+
+    public Stats stats() {
+        int size;
+        synchronized (entries) {
+            size = entries.size();
+        }
+        return new Stats(hits.sum(), misses.sum(), notModified.sum(), size);
+    }
+
+    // "after" and "limit" as ProductController reads them, so every query string for one page gives the same key
+    static String key(HttpServletRequest request) {
+        String after = request.getParameter("after");
+        String limit = request.getParameter("limit");
+        try {
+            // Ids start at 1, so any "after" below 1 is the first page
+            long from = after == null || after.isBlank() ? 0 : Math.max(0, Long.parseLong(after.trim()));
+            int size = limit == null || limit.isBlank() ? ProductController.DEFAULT_PAGE_SIZE : Integer.parseInt(limit.trim());
+            return from + ":" + Math.max(1, Math.min(size, ProductController.MAX_PAGE_SIZE));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private void send(HttpServletRequest request, HttpServletResponse response, Entry entry) throws IOException {
+        response.setHeader(HttpHeaders.ETAG, entry.etag());
+        response.setHeader(HttpHeaders.CACHE_CONTROL, cacheControl);
+        response.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        if (matches(request.getHeader(HttpHeaders.IF_NONE_MATCH), entry.etag())) {
+            notModified.increment();
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+        byte[] bytes = entry.body();
+        if (entry.gzipped() != null && acceptsGzip(request.getHeader(HttpHeaders.ACCEPT_ENCODING))) {
+            bytes = entry.gzipped();
+            response.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        response.setStatus(HttpServletResponse.SC_OK);
+        response.setContentType(entry.contentType());
+        response.setContentLength(bytes.length);
+        response.getOutputStream().write(bytes);
+    }
+
+    // If-None-Match uses weak comparison: W/"x" and "x" match each other
+    private static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        String opaque = etag.substring(2);
+        for (String candidate : ifNoneMatch.split(",")) {
+            candidate = candidate.trim();
+            if (candidate.equals("*") || candidate.equals(etag) || candidate.equals(opaque)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // "gzip" or "gzip;q=0.8" accept it, "gzip;q=0" refuses it
+    private static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.trim().split(";");
+            if (parts[0].trim().equalsIgnoreCase("gzip")) {
+                for (int i = 1; i < parts.length; i++) {
+                    if (ZERO_QUALITY.matcher(parts[i].trim()).matches()) {
+                        return false;
+                    }
+                }
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static byte[] gzip(byte[] body) throws IOException {
+        var out = new ByteArrayOutputStream(body.length / 4);
+        try (var gzip = new GZIPOutputStream(out)) {
+            gzip.write(body);
+        }
+        return out.toByteArray();
+    }
+
+    // Weak: the gzipped and the plain body are the same representation for If-None-Match
+    private static String etag(byte[] body) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(body);
+            return "W/\"" + HexFormat.of().formatHex(digest, 0, 16) + "\"";
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
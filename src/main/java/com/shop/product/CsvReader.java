@@ -0,0 +1,111 @@
+package com.shop.product;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Minimal streaming RFC 4180 reader: comma separated, fields optionally in double quotes, "" for a quote inside
+ * a quoted field, and quoted fields may span lines. Only one record is held in memory at a time.
+ * .NET equivalent is Microsoft.VisualBasic.FileIO.TextFieldParser with HasFieldsEnclosedInQuotes.
+ */
+final class CsvReader implements Closeable {
+
+    private final Reader in;
+    private final char[] buffer = new char[8192];
+    private int position;
+    private int limit;
+    private long records;
+
+    CsvReader(Reader in) {
+        this.in = in;
+    }
+
+    /**
+     * Number of records returned so far, header included; a quoted line break does not start a new record.
+     */
+    long records() {
+        return records;
+    }
+
+    /**
+     * Returns the fields of the next record, or null at the end of the input. Blank lines are skipped.
+     */
+    List<String> next() throws IOException {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        boolean fieldStarted = false;
+        int c;
+        while ((c = read()) != -1) {
+            char ch = (char) c;
+            if (quoted) {
+                if (ch != '"') {
+                    field.append(ch);
+                } else if (peek() == '"') {
+                    read();
+                    field.append('"');
+                } else {
+                    quoted = false;
+                }
+            } else if (ch == '"' && field.isEmpty()) {
+                quoted = true;
+                fieldStarted = true;
+            } else if (ch == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+                fieldStarted = true;
+            } else if (ch == '\r' || ch == '\n') {
+                if (ch == '\r' && peek() == '\n') {
+                    read();
+                }
+                if (!fieldStarted && field.isEmpty() && fields.isEmpty()) {
+                    continue;
+                }
+                fields.add(field.toString());
+                records++;
+                return fields;
+            } else {
+                field.append(ch);
+                fieldStarted = true;
+            }
+        }
+        if (!fieldStarted && field.isEmpty() && fields.isEmpty()) {
+            return null;
+        }
+        fields.add(field.toString());
+        records++;
+        return fields;
+    }
+
+    private int read() throws IOException {
+        if (position == limit && !fill()) {
+            return -1;
+        }
+        return buffer[position++];
+    }
+
+    private int peek() throws IOException {
+        if (position == limit && !fill()) {
+            return -1;
+        }
+        return buffer[position];
+    }
+
+    private boolean fill() throws IOException {
+        int read = in.read(buffer);
+        if (read <= 0) {
+            return false;
+        }
+        position = 0;
+        limit = read;
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+}
@@ -0,0 +1,15 @@
+package com.shop.product;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * The import as a whole cannot start (missing CSV columns, malformed import id); single bad rows are rejected
+ * and reported instead.
+ */
+@ResponseStatus(HttpStatus.BAD_REQUEST)
+public class InvalidProductImportException extends RuntimeException {
+    public InvalidProductImportException(String message) {
+        super(message);
+    }
+}
@@ -1,7 +1,9 @@
 package com.shop.product;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.*;
+import org.hibernate.annotations.ColumnDefault;
 import java.math.BigDecimal;
 
 /**
@@ -23,6 +25,7 @@ import java.math.BigDecimal;
  * - Example: modelBuilder.Entity<Product>().ToTable("products")
  */
 @Entity
+@EntityListeners(ProductChangeListener.class)
 public class Product {
     /**
      * annotations are used to map Java classes and their fields to database tables and columns.
@@ -48,6 +51,14 @@ public class Product {
     @DecimalMin(value = "0.0", inclusive = false, message = "Price must be greater than zero")
     private BigDecimal price;
 
+    // Bumped by Hibernate on every update. Carts keep the version their price was taken at, so checkout can tell
+    // that a price changed with one comparison. Rows inserted with plain SQL start at the column default
+    @Version
+    @JsonIgnore
+    @ColumnDefault("0")
+    @Column(nullable = false)
+    private Long version;
+
     // Protected no-arg constructor for JPA
     protected Product() {}
     public Product(String name, BigDecimal price, String description) {
@@ -56,6 +67,15 @@ public class Product {
         this.description = description;
     }
 
+    /**
+     * Replaces the editable fields; the version is bumped when the change is flushed.
+     */
+    public void update(String name, BigDecimal price, String description) {
+        this.name = name;
+        this.price = price;
+        this.description = description;
+    }
+
     public Long getId() {
         return id;
     }
@@ -71,4 +91,9 @@ public class Product {
     public BigDecimal getPrice() {
         return price;
     }
+
+    @JsonIgnore
+    public Long getVersion() {
+        return version;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,125 @@
+package com.shop.product;
+
+import com.shop.config.ReplicaRouting;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded, in-memory cache of products keyed by product id, held as immutable {@link CatalogProduct} copies
+ * because every thread gets the same instance.
+ * Misses are loaded with a single findAllById query, and entries are dropped after a product is written
+ * (see {@link ProductChangeListener}). The least recently used entry is evicted once maxSize is reached.
+ * .NET equivalent is IMemoryCache with a SizeLimit, filled from a single WHERE Id IN (...) query.
+ */
+@Component
+public class ProductCatalogCache {
+
+    public record Stats(long hits, long misses, long evictions, int size) {}
+
+    private final ProductRepository productRepository;
+    private final ReplicaRouting replicaRouting;
+    private final int maxSize;
+    private final LinkedHashMap<Long, CatalogProduct> entries;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    // Bumped on every invalidation so a load that raced with a write does not put a stale product back
+    private final AtomicLong generation = new AtomicLong();
+
+    public ProductCatalogCache(ProductRepository productRepository,
+                               ReplicaRouting replicaRouting,
+                               @Value("${shop.catalog-cache.max-size:10000}") int maxSize) {
+        this.productRepository = productRepository;
+        this.replicaRouting = replicaRouting;
+        this.maxSize = maxSize;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, CatalogProduct> eldest) {
+                if (size() > ProductCatalogCache.this.maxSize) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    public Optional<CatalogProduct> get(Long productId) {
+        return Optional.ofNullable(getAll(List.of(productId)).get(productId));
+    }
+
+    /**
+     * Looks up all the given products, loading every miss with one query.
+     * Ids that do not exist are simply absent from the returned map.
+     */
+    public Map<Long, CatalogProduct> getAll(Collection<Long> productIds) {
+        Map<Long, CatalogProduct> found = new HashMap<>(productIds.size() * 2);
+        List<Long> missing = new ArrayList<>();
+        synchronized (entries) {
+            for (Long id : new LinkedHashSet<>(productIds)) {
+                CatalogProduct product = entries.get(id);
+                if (product != null) {
+                    found.put(id, product);
+                } else {
+                    missing.add(id);
+                }
+            }
+        }
+        hits.add(found.size());
+        misses.add(missing.size());
+        if (missing.isEmpty()) {
+            return found;
+        }
+
+        long loadGeneration = generation.get();
+        // A replica may not have the write that caused the miss yet; the cache would keep its old row
+        List<Product> loaded = replicaRouting.onPrimary(() -> productRepository.findAllById(missing));
+        synchronized (entries) {
+            boolean fresh = loadGeneration == generation.get();
+            for (Product row : loaded) {
+                CatalogProduct product = CatalogProduct.of(row);
+                found.put(product.id(), product);
+                if (fresh) {
+                    entries.put(product.id(), product);
+                }
+            }
+        }
+        return found;
+    }
+
+    public void invalidate(Long productId) {
+        synchronized (entries) {
+            generation.incrementAndGet();
+            entries.remove(productId);
+        }
+    }
+
+    public void invalidateAll() {
+        synchronized (entries) {
+            generation.incrementAndGet();
+            entries.clear();
+        }
+    }
+
+    /**
+     * Runs after the writing transaction commits (or right away when there is none),
+     * so a reader cannot re-cache the old row between the eviction and the commit.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    void onProductChanged(ProductChangedEvent event) {
+        invalidate(event.productId());
+    }
+
+    public Stats stats() {
+        int size;
+        synchronized (entries) {
+            size = entries.size();
+        }
+        return new Stats(hits.sum(), misses.sum(), evictions.sum(), size);
+    }
+}
@@ -0,0 +1,29 @@
+package com.shop.product;
+
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+
+/**
+ * JPA entity listener registered on {@link Product} through @EntityListeners.
+ * Spring Boot lets Hibernate resolve entity listeners as Spring beans, so constructor injection works here.
+ * .NET equivalent is overriding SaveChanges and inspecting ChangeTracker.Entries().
+ */
+@Component
+public class ProductChangeListener {
+
+    private final ApplicationEventPublisher events;
+
+    public ProductChangeListener(ApplicationEventPublisher events) {
+        this.events = events;
+    }
+
+    @PostPersist
+    @PostUpdate
+    @PostRemove
+    void onChange(Product product) {
+        events.publishEvent(new ProductChangedEvent(product.getId()));
+    }
+}
@@ -0,0 +1,10 @@
+package com.shop.product;
+
+/**
+ * Published whenever a {@link Product} row is inserted, updated or deleted.
+ * Listeners use it to drop derived state (caches, indexes) for that product.
+ * .NET equivalent is a domain event raised from SaveChanges and handled by an INotificationHandler.
+ *
+ * @param productId id of the product that changed
+ */
+public record ProductChangedEvent(Long productId) { }
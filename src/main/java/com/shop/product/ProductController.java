@@ -1,6 +1,20 @@
 package com.shop.product;
 
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.DecimalMin;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import org.springframework.data.domain.Limit;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
 import java.util.List;
 
 
@@ -15,18 +29,100 @@ import java.util.List;
  * Its .NET equivalent is [ApiController] on a class inheriting ControllerBase, which exposes REST endpoints.
  */
 public class ProductController {
+    static final int DEFAULT_PAGE_SIZE = 100;
+    static final int MAX_PAGE_SIZE = 500;
+    static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+    static final String CSV = "text/csv";
+    static final int DEFAULT_SEARCH_SIZE = 20;
+    static final int MAX_SEARCH_SIZE = 100;
+
     private final ProductRepository repo;
+    private final ProductExporter exporter;
+    private final ProductImporter importer;
+    private final ProductSearchService search;
 
-    public ProductController(ProductRepository repo) {
+    public ProductController(ProductRepository repo, ProductExporter exporter, ProductImporter importer,
+                             ProductSearchService search) {
         this.repo = repo;
+        this.exporter = exporter;
+        this.importer = importer;
+        this.search = search;
     }
 
     /**
      * @GetMapping maps HTTP GET requests to specific handler methods.
      * Its .NET equivalent is [HttpGet] on a controller action method.
+     *
+     * Returns the page of products whose id is greater than "after", at most "limit" (capped at MAX_PAGE_SIZE) items.
+     * Repeats are answered by {@link CatalogResponseCache} before they get here, which also adds the ETag,
+     * Cache-Control and gzip handling.
      */
     @GetMapping
-    public List<Product> all() {
-        return repo.findAll();
+    public ProductPage all(@RequestParam(required = false) Long after,
+                           @RequestParam(defaultValue = "" + DEFAULT_PAGE_SIZE) int limit) {
+        int pageSize = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        // One extra row tells us whether there is a next page without a COUNT query
+        List<Product> rows = repo.findByIdGreaterThanOrderByIdAsc(after == null ? 0L : after, Limit.of(pageSize + 1));
+        boolean hasMore = rows.size() > pageSize;
+        List<Product> items = hasMore ? rows.subList(0, pageSize) : rows;
+        return new ProductPage(items, hasMore ? items.get(items.size() - 1).getId() : null);
+    }
+
+    /**
+     * Streams the whole catalog as NDJSON without loading it into memory.
+     * StreamingResponseBody is similar to returning an IAsyncEnumerable from an ASP.NET Core action.
+     */
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> export() {
+        return ResponseEntity.ok()
+                .contentType(NDJSON)
+                .body(exporter::writeNdjson);
+    }
+
+    public record ProductUpdate(@NotBlank String name,
+                                @NotNull @DecimalMin(value = "0.0", inclusive = false) BigDecimal price,
+                                @Size(max = 500) String description) { }
+
+    /**
+     * @PutMapping maps HTTP PUT requests; .NET equivalent is [HttpPut("{id}")].
+     *
+     * Replaces name, price and description. The product version goes up, so carts holding the old price are
+     * flagged and their checkout is refused until the prices are refreshed. Requires the ADMIN role.
+     */
+    @PutMapping("/{id}")
+    public ResponseEntity<Product> update(@PathVariable Long id, @Valid @RequestBody ProductUpdate update) {
+        return ResponseEntity.of(repo.findById(id).map(product -> {
+            product.update(update.name(), update.price(), update.description());
+            return repo.save(product);
+        }));
+    }
+
+    /**
+     * Full-text search over name and description, best match first. All words must match, and words past
+     * ProductSearchIndex.MAX_QUERY_TERMS are ignored; the last one may be the start of a word ("espr" finds
+     * espresso) and longer words tolerate one typo ("expresso").
+     * Pages are numbered from 0 and hold at most MAX_SEARCH_SIZE products.
+     */
+    @GetMapping("/search")
+    public ProductSearchPage search(@RequestParam(defaultValue = "") String q,
+                                    @RequestParam(defaultValue = "0") int page,
+                                    @RequestParam(defaultValue = "" + DEFAULT_SEARCH_SIZE) int size) {
+        return search.search(q, Math.max(0, page), Math.max(1, Math.min(size, MAX_SEARCH_SIZE)));
+    }
+
+    /**
+     * Imports the request body (text/csv with a name,price[,description] header, or NDJSON) in chunks and returns
+     * throughput and rejected rows. The body is read as a stream, so it is never held in memory as a whole.
+     * Send an importId to be able to resume: after a failure the same request with the same importId skips the
+     * rows that were already committed. Requires the ADMIN role, unlike the read endpoints.
+     */
+    @PostMapping(value = "/import", consumes = {CSV, "application/x-ndjson"})
+    public ProductImportReport importCatalog(@RequestHeader(HttpHeaders.CONTENT_TYPE) MediaType contentType,
+                                             @RequestParam(required = false) String importId,
+                                             InputStream body) throws IOException {
+        var format = contentType.isCompatibleWith(MediaType.parseMediaType(CSV))
+                ? ProductImporter.Format.CSV
+                : ProductImporter.Format.NDJSON;
+        return importer.importProducts(body, format, importId);
     }
 }
\ No newline at end of file
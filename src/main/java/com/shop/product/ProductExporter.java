@@ -0,0 +1,54 @@
+package com.shop.product;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import jakarta.persistence.EntityManager;
+import jakarta.transaction.Transactional;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.stream.Stream;
+
+/**
+ * Writes the catalog as NDJSON (one JSON object per line) straight from a database cursor.
+ * Each product is detached right after it is written, so memory use stays flat however large the catalog is.
+ */
+@Service
+public class ProductExporter {
+
+    private static final int FLUSH_EVERY = 500;
+
+    private final ProductRepository productRepository;
+    private final EntityManager entityManager;
+    private final ObjectWriter writer;
+
+    public ProductExporter(ProductRepository productRepository, EntityManager entityManager, ObjectMapper objectMapper) {
+        this.productRepository = productRepository;
+        this.entityManager = entityManager;
+        this.writer = objectMapper.writer()
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE)
+                .withRootValueSeparator("");
+    }
+
+    @Transactional
+    public void writeNdjson(OutputStream out) throws IOException {
+        try (JsonGenerator generator = writer.createGenerator(out);
+             Stream<Product> products = productRepository.streamAllOrderById()) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            int written = 0;
+            for (var it = products.iterator(); it.hasNext(); ) {
+                Product product = it.next();
+                writer.writeValue(generator, product);
+                generator.writeRaw('\n');
+                entityManager.detach(product);
+                if (++written % FLUSH_EVERY == 0) {
+                    generator.flush();
+                }
+            }
+            generator.flush();
+        }
+    }
+}
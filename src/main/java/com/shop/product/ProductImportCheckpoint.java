@@ -0,0 +1,76 @@
+package com.shop.product;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+
+import java.time.Instant;
+
+/**
+ * Progress of one catalog import, written in the same transaction as each chunk of products.
+ * After a failure the committed rows and this row agree, so a rerun with the same import id continues right after
+ * lastRow without inserting anything twice.
+ */
+@Entity
+@Table(name = "product_import_checkpoint")
+public class ProductImportCheckpoint {
+
+    @Id
+    @Column(length = 100)
+    private String importId;
+
+    // Row number (CSV record or NDJSON line) of the last row of the last committed chunk
+    private long lastRow;
+
+    private long accepted;
+
+    private long rejected;
+
+    private boolean completed;
+
+    private Instant updatedAt;
+
+    protected ProductImportCheckpoint() {}
+
+    public ProductImportCheckpoint(String importId) {
+        this.importId = importId;
+        this.updatedAt = Instant.now();
+    }
+
+    void chunkCommitted(long lastRow, long accepted, long rejected) {
+        this.lastRow = lastRow;
+        this.accepted += accepted;
+        this.rejected += rejected;
+        this.updatedAt = Instant.now();
+    }
+
+    void complete() {
+        this.completed = true;
+        this.updatedAt = Instant.now();
+    }
+
+    public String getImportId() {
+        return importId;
+    }
+
+    public long getLastRow() {
+        return lastRow;
+    }
+
+    public long getAccepted() {
+        return accepted;
+    }
+
+    public long getRejected() {
+        return rejected;
+    }
+
+    public boolean isCompleted() {
+        return completed;
+    }
+
+    public Instant getUpdatedAt() {
+        return updatedAt;
+    }
+}
@@ -0,0 +1,6 @@
+package com.shop.product;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface ProductImportCheckpointRepository extends JpaRepository<ProductImportCheckpoint, String> {
+}
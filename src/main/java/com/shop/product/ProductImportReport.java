@@ -0,0 +1,27 @@
+package com.shop.product;
+
+import java.util.List;
+
+/**
+ * Outcome of one run of {@link ProductImporter}. The per-run counts cover only the rows read by this run;
+ * the totals also include the chunks committed by earlier, interrupted runs of the same import id.
+ *
+ * @param resumedAfterRow rows up to and including this one were committed before and skipped (0 = fresh import)
+ * @param rejectedRows the first rejected rows of this run, at most shop.catalog-import.max-reported-rejects
+ */
+public record ProductImportReport(String importId,
+                                  long resumedAfterRow,
+                                  long rowsRead,
+                                  long accepted,
+                                  long rejected,
+                                  long totalAccepted,
+                                  long totalRejected,
+                                  long elapsedMillis,
+                                  long rowsPerSecond,
+                                  List<RejectedRow> rejectedRows) {
+
+    /**
+     * @param row CSV record number (header excluded) or NDJSON line number, counting from 1
+     */
+    public record RejectedRow(long row, String reason) {}
+}
@@ -0,0 +1,352 @@
+package com.shop.product;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.http.HttpStatus;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Loads large catalogs from CSV or NDJSON with bounded memory:
+ * rows are parsed one at a time into chunks of shop.catalog-import.chunk-size, each chunk is validated in parallel
+ * against the Bean Validation constraints of {@link Product}, and the valid rows are written with one JDBC batch
+ * insert. The batch and the {@link ProductImportCheckpoint} commit in one transaction, so an import that fails
+ * half way can be rerun with the same import id and continues after the last committed chunk.
+ *
+ * Invalid rows are counted and reported, never written; they do not stop the import. Errors of the input as a whole
+ * (unreadable stream, missing CSV columns) or of the database stop it and leave the checkpoint at the last chunk.
+ * The inserts bypass JPA, so instead of a ProductChangedEvent per product one {@link ProductsImportedEvent} is
+ * published per committed chunk; for the catalog cache new ids are simply misses.
+ * .NET equivalent is SqlBulkCopy fed from a streaming reader, with a progress table for restarts.
+ */
+@Service
+public class ProductImporter {
+
+    public enum Format {
+        CSV, NDJSON
+    }
+
+    private static final Logger log = LoggerFactory.getLogger(ProductImporter.class);
+
+    private static final String INSERT = "INSERT INTO product (name, description, price) VALUES (?, ?, ?)";
+    private static final Pattern IMPORT_ID = Pattern.compile("[A-Za-z0-9._-]{1,100}");
+
+    // One parsed input row; price stays text so that a malformed number becomes a rejection, not a failure
+    private record Row(long row, String name, String price, String description, String error) {}
+
+    // Either a product ready to insert or the reason the row was rejected
+    private record Checked(Row row, Product product, String rejection) {}
+
+    private interface RowSource extends Closeable {
+        Row next() throws IOException;
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ProductImportCheckpointRepository checkpointRepository;
+    private final Validator validator;
+    private final ApplicationEventPublisher events;
+    private final ObjectReader jsonReader;
+    private final int chunkSize;
+    private final int maxReportedRejects;
+    private final Counter acceptedRows;
+    private final Counter rejectedRows;
+    // Own pool rather than the common one: its threads get the application class loader, which Hibernate
+    // Validator needs to find the JPA provider from a Spring Boot fat jar, and imports cannot starve other users
+    private final ForkJoinPool validationPool;
+    // Two concurrent runs of one import id would both resume from the same checkpoint and insert twice
+    private final Set<String> running = ConcurrentHashMap.newKeySet();
+
+    public ProductImporter(JdbcTemplate jdbcTemplate,
+                           PlatformTransactionManager transactionManager,
+                           ProductImportCheckpointRepository checkpointRepository,
+                           Validator validator,
+                           ApplicationEventPublisher events,
+                           ObjectMapper objectMapper,
+                           MeterRegistry meterRegistry,
+                           @Value("${shop.catalog-import.chunk-size:1000}") int chunkSize,
+                           @Value("${shop.catalog-import.max-reported-rejects:100}") int maxReportedRejects,
+                           @Value("${shop.catalog-import.validation-threads:0}") int validationThreads) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.checkpointRepository = checkpointRepository;
+        this.validator = validator;
+        this.events = events;
+        this.jsonReader = objectMapper.reader().with(DeserializationFeature.USE_BIG_DECIMAL_FOR_FLOATS);
+        this.chunkSize = chunkSize;
+        this.maxReportedRejects = maxReportedRejects;
+        ClassLoader classLoader = getClass().getClassLoader();
+        this.validationPool = new ForkJoinPool(
+                validationThreads > 0 ? validationThreads : Runtime.getRuntime().availableProcessors(),
+                pool -> {
+                    ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+                    thread.setName("catalog-import-validation-" + thread.getPoolIndex());
+                    thread.setContextClassLoader(classLoader);
+                    return thread;
+                },
+                null, false);
+        this.acceptedRows = Counter.builder("shop.catalog.import.rows")
+                .description("Catalog import rows, by outcome")
+                .tag("outcome", "accepted")
+                .register(meterRegistry);
+        this.rejectedRows = Counter.builder("shop.catalog.import.rows")
+                .description("Catalog import rows, by outcome")
+                .tag("outcome", "rejected")
+                .register(meterRegistry);
+    }
+
+    public static Format formatOf(String fileName) {
+        return fileName.toLowerCase(Locale.ROOT).endsWith(".csv") ? Format.CSV : Format.NDJSON;
+    }
+
+    /**
+     * Imports every row of the input, or, when importId has a checkpoint, every row after it.
+     * CSV needs a header with name and price columns (description is optional, order is free);
+     * NDJSON needs one object per line with the same fields. The input is read as UTF-8 and closed at the end.
+     *
+     * @param importId identifies the import for resuming; null starts a fresh import under a random id
+     */
+    public ProductImportReport importProducts(InputStream input, Format format, String importId) throws IOException {
+        String id = importId == null || importId.isBlank() ? UUID.randomUUID().toString() : importId;
+        if (!IMPORT_ID.matcher(id).matches()) {
+            throw new InvalidProductImportException("Import id must be 1-100 letters, digits, '.', '_' or '-'");
+        }
+        if (!running.add(id)) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "Import already running: " + id);
+        }
+        try (RowSource source = open(input, format)) {
+            return run(id, source);
+        } finally {
+            running.remove(id);
+        }
+    }
+
+    private ProductImportReport run(String importId, RowSource source) throws IOException {
+        long started = System.nanoTime();
+        ProductImportCheckpoint checkpoint = checkpointRepository.findById(importId)
+                .orElseGet(() -> new ProductImportCheckpoint(importId));
+        long resumedAfter = checkpoint.getLastRow();
+        List<ProductImportReport.RejectedRow> reported = new ArrayList<>();
+        long read = 0;
+        long accepted = 0;
+        long rejected = 0;
+
+        if (!checkpoint.isCompleted()) {
+            List<Row> chunk = new ArrayList<>(chunkSize);
+            Row row;
+            while ((row = source.next()) != null) {
+                if (row.row() <= resumedAfter) {
+                    continue;
+                }
+                read++;
+                chunk.add(row);
+                if (chunk.size() == chunkSize) {
+                    long written = writeChunk(checkpoint, chunk, reported);
+                    accepted += written;
+                    rejected += chunk.size() - written;
+                    chunk.clear();
+                }
+            }
+            long written = writeChunk(checkpoint, chunk, reported);
+            accepted += written;
+            rejected += chunk.size() - written;
+            checkpoint.complete();
+            checkpoint = checkpointRepository.save(checkpoint);
+        }
+
+        long elapsedNanos = Math.max(1, System.nanoTime() - started);
+        long rowsPerSecond = read * 1_000_000_000L / elapsedNanos;
+        log.info("Catalog import {}: {} rows read after row {}, {} accepted, {} rejected in {} ms ({} rows/s)",
+                importId, read, resumedAfter, accepted, rejected, elapsedNanos / 1_000_000, rowsPerSecond);
+        return new ProductImportReport(importId, resumedAfter, read, accepted, rejected,
+                checkpoint.getAccepted(), checkpoint.getRejected(), elapsedNanos / 1_000_000, rowsPerSecond, reported);
+    }
+
+    /**
+     * Validates the chunk in parallel, then inserts its valid rows and moves the checkpoint in one transaction.
+     * Returns the number of rows written.
+     */
+    private long writeChunk(ProductImportCheckpoint checkpoint, List<Row> chunk, List<ProductImportReport.RejectedRow> reported) {
+        if (chunk.isEmpty()) {
+            return 0;
+        }
+        // Validation is CPU work without shared state (the Validator is thread-safe); the order of the rows is kept
+        List<Checked> checked = validationPool.submit(() -> chunk.parallelStream().map(this::check).toList()).join();
+        List<Object[]> inserts = new ArrayList<>(checked.size());
+        long rejected = 0;
+        for (Checked result : checked) {
+            if (result.product() != null) {
+                Product product = result.product();
+                inserts.add(new Object[]{product.getName(), product.getDescription(), product.getPrice()});
+            } else {
+                rejected++;
+                if (reported.size() < maxReportedRejects) {
+                    reported.add(new ProductImportReport.RejectedRow(result.row().row(), result.rejection()));
+                }
+            }
+        }
+        long lastRow = chunk.get(chunk.size() - 1).row();
+        long accepted = inserts.size();
+        long chunkRejected = rejected;
+        transactionTemplate.executeWithoutResult(status -> {
+            if (!inserts.isEmpty()) {
+                jdbcTemplate.batchUpdate(INSERT, inserts);
+            }
+            // checkpoint stays detached; save() merges its state, so it keeps the running totals across chunks
+            checkpoint.chunkCommitted(lastRow, accepted, chunkRejected);
+            checkpointRepository.save(checkpoint);
+        });
+        acceptedRows.increment(accepted);
+        rejectedRows.increment(chunkRejected);
+        if (accepted > 0) {
+            events.publishEvent(new ProductsImportedEvent(checkpoint.getImportId(), lastRow));
+        }
+        return accepted;
+    }
+
+    @PreDestroy
+    void stop() {
+        validationPool.shutdownNow();
+    }
+
+    private Checked check(Row row) {
+        if (row.error() != null) {
+            return new Checked(row, null, row.error());
+        }
+        BigDecimal price = null;
+        if (row.price() != null && !row.price().isBlank()) {
+            try {
+                price = new BigDecimal(row.price().trim());
+            } catch (NumberFormatException e) {
+                return new Checked(row, null, "Price is not a number: " + row.price());
+            }
+        }
+        String description = row.description() == null || row.description().isEmpty() ? null : row.description();
+        Product product = new Product(row.name() == null ? null : row.name().trim(), price, description);
+        Set<ConstraintViolation<Product>> violations = validator.validate(product);
+        if (!violations.isEmpty()) {
+            String reason = violations.stream()
+                    .map(ConstraintViolation::getMessage)
+                    .sorted()
+                    .collect(Collectors.joining("; "));
+            return new Checked(row, null, reason);
+        }
+        return new Checked(row, product, null);
+    }
+
+    private RowSource open(InputStream input, Format format) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+        return format == Format.CSV ? csv(reader) : ndjson(reader);
+    }
+
+    private RowSource csv(BufferedReader reader) throws IOException {
+        CsvReader csv = new CsvReader(reader);
+        List<String> header = csv.next();
+        if (header == null) {
+            header = List.of();
+        }
+        List<String> columns = header.stream()
+                .map(column -> column.strip().replace("\uFEFF", "").toLowerCase(Locale.ROOT))
+                .toList();
+        int name = columns.indexOf("name");
+        int price = columns.indexOf("price");
+        int description = columns.indexOf("description");
+        if (name < 0 || price < 0) {
+            csv.close();
+            throw new InvalidProductImportException("CSV header must contain name and price columns, found: " + header);
+        }
+        return new RowSource() {
+            @Override
+            public Row next() throws IOException {
+                List<String> fields = csv.next();
+                if (fields == null) {
+                    return null;
+                }
+                // The header is record 1, so data rows count from 1 like the NDJSON lines
+                return new Row(csv.records() - 1, field(fields, name), field(fields, price), field(fields, description), null);
+            }
+
+            @Override
+            public void close() throws IOException {
+                csv.close();
+            }
+        };
+    }
+
+    private RowSource ndjson(BufferedReader reader) {
+        return new RowSource() {
+            long line;
+
+            @Override
+            public Row next() throws IOException {
+                String text;
+                while ((text = reader.readLine()) != null) {
+                    line++;
+                    if (!text.isBlank()) {
+                        return parse(line, text);
+                    }
+                }
+                return null;
+            }
+
+            @Override
+            public void close() throws IOException {
+                reader.close();
+            }
+        };
+    }
+
+    private Row parse(long line, String text) {
+        JsonNode node;
+        try {
+            node = jsonReader.readTree(text);
+        } catch (IOException e) {
+            return new Row(line, null, null, null, "Malformed JSON");
+        }
+        if (!node.isObject()) {
+            return new Row(line, null, null, null, "Expected a JSON object");
+        }
+        return new Row(line, text(node, "name"), text(node, "price"), text(node, "description"), null);
+    }
+
+    private static String text(JsonNode node, String field) {
+        JsonNode value = node.get(field);
+        return value == null || value.isNull() ? null : value.asText();
+    }
+
+    private static String field(List<String> fields, int index) {
+        return index >= 0 && index < fields.size() ? fields.get(index) : null;
+    }
+}
@@ -0,0 +1,9 @@
+package com.shop.product;
+
+import java.util.List;
+
+/**
+ * One page of the catalog. Pass nextCursor as the "after" parameter to fetch the next page;
+ * it is null on the last page.
+ */
+public record ProductPage(List<Product> items, Long nextCursor) { }
@@ -1,6 +1,15 @@
 package com.shop.product;
 
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+import java.util.stream.Stream;
 
 /**
  * JpaRepository is a Spring Data JPA interface that provides:
@@ -23,4 +32,24 @@ import org.springframework.data.jpa.repository.JpaRepository;
  * - Example: IProductRepository : IRepository<Product> where IRepository provides
  * Add(), Update(), Delete(), GetById(), GetAll(), etc.
  */
-public interface ProductRepository extends JpaRepository<Product, Long> { }
\ No newline at end of file
+public interface ProductRepository extends JpaRepository<Product, Long> {
+
+    /**
+     * Keyset ("seek") pagination: WHERE id > :after ORDER BY id uses the primary key index,
+     * so every page costs the same no matter how deep the client has paged (unlike OFFSET).
+     * Read-only (Spring's annotation; jakarta's has no such flag), so it can be served by a read replica.
+     */
+    @Transactional(readOnly = true)
+    List<Product> findByIdGreaterThanOrderByIdAsc(Long after, Limit limit);
+
+    /**
+     * Streams the whole catalog from a JDBC cursor; must be consumed inside a transaction and closed.
+     * Similar to AsNoTracking().AsAsyncEnumerable() in EF Core.
+     */
+    @QueryHints({
+        @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+        @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("select p from Product p order by p.id")
+    Stream<Product> streamAllOrderById();
+}
\ No newline at end of file
@@ -0,0 +1,551 @@
+package com.shop.product;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory inverted index over product name and description.
+ *
+ * Every indexed product version gets the next document number, and each term keeps a postings list of the
+ * document numbers that contain it, so postings stay sorted without any re-ordering. A changed product is
+ * appended as a new document and its old document is only marked deleted; deleted documents are skipped when
+ * searching and disappear when the owner builds a fresh index (see {@link ProductSearchService}).
+ * The terms live in a TreeMap, which answers both exact lookups and prefix ranges.
+ *
+ * Matching: all query terms must match (AND), up to {@link #MAX_QUERY_TERMS} of them. A term matches exactly; the last term also matches as a prefix
+ * (search-as-you-type); and a term of at least {@link #MIN_TYPO_LENGTH} characters that is not in the vocabulary
+ * matches the terms one edit away (insert, delete, replace or swap one character).
+ * Ranking: sum over the query terms of match quality x idf x tf, where a name occurrence counts
+ * {@link #NAME_WEIGHT} times a description occurrence.
+ *
+ * Many threads may search at once; writes take the write lock.
+ * .NET equivalent is a Lucene.NET RAMDirectory index, or a hand-rolled Dictionary&lt;string, List&lt;int&gt;&gt;.
+ */
+public class ProductSearchIndex {
+
+    public record Hit(long productId, float score) {}
+
+    public record Result(List<Hit> hits, int totalHits) {}
+
+    static final int NAME_WEIGHT = 3;
+    static final int MIN_TYPO_LENGTH = 4;
+    // A short prefix ("c") can expand to thousands of terms; only the first ones are searched
+    static final int MAX_EXPANSIONS = 64;
+    // Every term costs a postings scan and up to MAX_EXPANSIONS variants; words after these are ignored
+    static final int MAX_QUERY_TERMS = 8;
+    private static final int MAX_TERM_LENGTH = 40;
+    private static final float EXACT = 1.0f;
+    private static final float PREFIX = 0.8f;
+    private static final float TYPO = 0.6f;
+    private static final float[] TF = new float[128];
+
+    static {
+        for (int weight = 1; weight < TF.length; weight++) {
+            TF[weight] = (float) Math.sqrt(weight);
+        }
+    }
+
+    // Document numbers containing one term, ascending, each with its weight (name count x 3 + description count)
+    private static final class Postings {
+        int[] docs = new int[2];
+        byte[] weights = new byte[2];
+        int size;
+
+        void add(int doc, int weight) {
+            if (size == docs.length) {
+                docs = Arrays.copyOf(docs, size * 2);
+                weights = Arrays.copyOf(weights, size * 2);
+            }
+            docs[size] = doc;
+            weights[size] = (byte) Math.min(weight, TF.length - 1);
+            size++;
+        }
+
+        // First position at or after "from" whose document is >= doc: gallop forward, then binary search the
+        // last step. Walking ascending candidates this way costs O(log gap) per lookup instead of O(log size)
+        int advance(int from, int doc) {
+            int bound = 1;
+            while (from + bound < size && docs[from + bound] < doc) {
+                bound <<= 1;
+            }
+            int i = Arrays.binarySearch(docs, from + (bound >> 1), Math.min(from + bound + 1, size), doc);
+            return i < 0 ? -i - 1 : i;
+        }
+    }
+
+    // One way a query term matches: a vocabulary term and how good a match it is
+    private record Variant(Postings postings, float boost) {}
+
+    private final TreeMap<String, Postings> terms = new TreeMap<>();
+    private final ProductIdTable documents = new ProductIdTable();
+    private final BitSet deleted = new BitSet();
+    private long[] productIds = new long[1024];
+    private int docCount;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * Indexes the product, replacing what was indexed for the same id before.
+     */
+    public void put(long productId, String name, String description) {
+        Map<String, Integer> weights = new HashMap<>();
+        for (String term : tokenize(name)) {
+            weights.merge(term, NAME_WEIGHT, Integer::sum);
+        }
+        for (String term : tokenize(description)) {
+            weights.merge(term, 1, Integer::sum);
+        }
+        lock.writeLock().lock();
+        try {
+            removeLocked(productId);
+            int doc = docCount++;
+            if (doc == productIds.length) {
+                productIds = Arrays.copyOf(productIds, doc * 2);
+            }
+            productIds[doc] = productId;
+            documents.put(productId, doc);
+            for (var entry : weights.entrySet()) {
+                terms.computeIfAbsent(entry.getKey(), term -> new Postings()).add(doc, entry.getValue());
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(long productId) {
+        lock.writeLock().lock();
+        try {
+            removeLocked(productId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void removeLocked(long productId) {
+        int doc = documents.remove(productId);
+        if (doc >= 0) {
+            deleted.set(doc);
+        }
+    }
+
+    /**
+     * Number of products that can be found.
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return documents.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Number of replaced or removed documents still taking up space in the postings.
+     */
+    public int deletedDocuments() {
+        lock.readLock().lock();
+        try {
+            return deleted.cardinality();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns hits offset to offset+limit of the ranking (best first; ties in indexing order) and the number of
+     * products that match at all.
+     */
+    public Result search(String query, int offset, int limit) {
+        List<String> queryTerms = new ArrayList<>(new LinkedHashSet<>(tokenize(query)));
+        if (queryTerms.isEmpty() || limit <= 0) {
+            return new Result(List.of(), 0);
+        }
+        // A cut query no longer ends in the word being typed, so none of the kept terms is a prefix
+        boolean typing = queryTerms.size() <= MAX_QUERY_TERMS;
+        if (!typing) {
+            queryTerms = queryTerms.subList(0, MAX_QUERY_TERMS);
+        }
+        lock.readLock().lock();
+        try {
+            int live = documents.size();
+            List<List<Variant>> variants = new ArrayList<>(queryTerms.size());
+            for (int i = 0; i < queryTerms.size(); i++) {
+                List<Variant> termVariants = variants(queryTerms.get(i), typing && i == queryTerms.size() - 1);
+                if (termVariants.isEmpty()) {
+                    return new Result(List.of(), 0);
+                }
+                variants.add(termVariants);
+            }
+            // The rarest term drives: its matches are the candidates, every other term only filters them
+            variants.sort((a, b) -> Long.compare(postingsSize(a), postingsSize(b)));
+
+            Candidates candidates = collect(variants.get(0), live);
+            for (int i = 1; i < variants.size() && candidates.size > 0; i++) {
+                candidates.retain(variants.get(i), live);
+            }
+            return new Result(candidates.top(offset, limit, productIds), candidates.size);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private List<Variant> variants(String term, boolean last) {
+        List<Variant> variants = new ArrayList<>();
+        Postings exact = terms.get(term);
+        if (exact != null) {
+            variants.add(new Variant(exact, EXACT));
+        }
+        if (last) {
+            NavigableMap<String, Postings> prefixed = terms.subMap(term, false, term + Character.MAX_VALUE, false);
+            for (Postings postings : prefixed.values()) {
+                if (variants.size() >= MAX_EXPANSIONS) {
+                    break;
+                }
+                variants.add(new Variant(postings, PREFIX));
+            }
+        }
+        if (exact == null && term.length() >= MIN_TYPO_LENGTH) {
+            for (String candidate : oneEditAway(term)) {
+                Postings postings = terms.get(candidate);
+                if (postings != null && variants.size() < MAX_EXPANSIONS) {
+                    variants.add(new Variant(postings, TYPO));
+                }
+            }
+        }
+        return variants;
+    }
+
+    private static long postingsSize(List<Variant> variants) {
+        long size = 0;
+        for (Variant variant : variants) {
+            size += variant.postings().size;
+        }
+        return size;
+    }
+
+    private static float idf(Postings postings, int live) {
+        return (float) Math.log(1 + (double) Math.max(live, 1) / postings.size);
+    }
+
+    // Matching live documents of the driving term, ascending, each with its score so far
+    private Candidates collect(List<Variant> variants, int live) {
+        if (variants.size() == 1) {
+            Variant variant = variants.get(0);
+            Postings postings = variant.postings();
+            float boost = variant.boost() * idf(postings, live);
+            Candidates candidates = new Candidates(postings.size);
+            for (int i = 0; i < postings.size; i++) {
+                int doc = postings.docs[i];
+                if (!deleted.get(doc)) {
+                    candidates.add(doc, boost * TF[postings.weights[i]]);
+                }
+            }
+            return candidates;
+        }
+        // Several matching terms: one sort of (document, score) pairs, keeping the best score of each document
+        int total = (int) postingsSize(variants);
+        long[] pairs = new long[total];
+        int n = 0;
+        for (Variant variant : variants) {
+            Postings postings = variant.postings();
+            float boost = variant.boost() * idf(postings, live);
+            for (int i = 0; i < postings.size; i++) {
+                int doc = postings.docs[i];
+                if (!deleted.get(doc)) {
+                    pairs[n++] = ((long) doc << 32) | Float.floatToRawIntBits(boost * TF[postings.weights[i]]);
+                }
+            }
+        }
+        Arrays.sort(pairs, 0, n);
+        Candidates candidates = new Candidates(n);
+        for (int i = 0; i < n; i++) {
+            int doc = (int) (pairs[i] >>> 32);
+            float score = Float.intBitsToFloat((int) pairs[i]);
+            if (candidates.size > 0 && candidates.docs[candidates.size - 1] == doc) {
+                // Positive floats order like their bits, so the last pair of a document has its best score
+                candidates.scores[candidates.size - 1] = score;
+            } else {
+                candidates.add(doc, score);
+            }
+        }
+        return candidates;
+    }
+
+    private static final class Candidates {
+        int[] docs;
+        float[] scores;
+        int size;
+
+        Candidates(int capacity) {
+            docs = new int[capacity];
+            scores = new float[capacity];
+        }
+
+        void add(int doc, float score) {
+            docs[size] = doc;
+            scores[size] = score;
+            size++;
+        }
+
+        // Keeps the candidates that one of the variants matches, adding the best of their scores
+        void retain(List<Variant> variants, int live) {
+            float[] boosts = new float[variants.size()];
+            for (int v = 0; v < boosts.length; v++) {
+                boosts[v] = variants.get(v).boost() * idf(variants.get(v).postings(), live);
+            }
+            int[] cursors = new int[boosts.length];
+            int kept = 0;
+            for (int i = 0; i < size; i++) {
+                float best = 0;
+                for (int v = 0; v < boosts.length; v++) {
+                    Postings postings = variants.get(v).postings();
+                    int at = postings.advance(cursors[v], docs[i]);
+                    cursors[v] = at;
+                    if (at < postings.size && postings.docs[at] == docs[i]) {
+                        best = Math.max(best, boosts[v] * TF[postings.weights[at]]);
+                    }
+                }
+                if (best > 0) {
+                    docs[kept] = docs[i];
+                    scores[kept] = scores[i] + best;
+                    kept++;
+                }
+            }
+            size = kept;
+        }
+
+        // Partial selection with a bounded min-heap: O(candidates x log(offset + limit)), no full sort
+        List<Hit> top(int offset, int limit, long[] productIds) {
+            int k = (int) Math.min((long) offset + limit, size);
+            if (k <= offset) {
+                return List.of();
+            }
+            int[] heap = new int[k];
+            int heapSize = 0;
+            for (int i = 0; i < size; i++) {
+                if (heapSize < k) {
+                    heap[heapSize] = i;
+                    siftUp(heap, heapSize++);
+                } else if (better(i, heap[0])) {
+                    heap[0] = i;
+                    siftDown(heap, heapSize);
+                }
+            }
+            Integer[] order = new Integer[heapSize];
+            for (int i = 0; i < heapSize; i++) {
+                order[i] = heap[i];
+            }
+            Arrays.sort(order, (a, b) -> better(a, b) ? -1 : better(b, a) ? 1 : 0);
+            List<Hit> hits = new ArrayList<>(heapSize - offset);
+            for (int i = offset; i < heapSize; i++) {
+                hits.add(new Hit(productIds[docs[order[i]]], scores[order[i]]));
+            }
+            return hits;
+        }
+
+        // Higher score first; on a tie the earlier document
+        private boolean better(int a, int b) {
+            return scores[a] > scores[b] || (scores[a] == scores[b] && docs[a] < docs[b]);
+        }
+
+        private void siftUp(int[] heap, int i) {
+            while (i > 0) {
+                int parent = (i - 1) / 2;
+                if (!better(heap[parent], heap[i])) {
+                    break;
+                }
+                swap(heap, parent, i);
+                i = parent;
+            }
+        }
+
+        private void siftDown(int[] heap, int heapSize) {
+            int i = 0;
+            while (true) {
+                // The root holds the worst of the kept hits; push the new root down below any worse child
+                int worst = i;
+                int left = 2 * i + 1;
+                int right = left + 1;
+                if (left < heapSize && better(heap[worst], heap[left])) {
+                    worst = left;
+                }
+                if (right < heapSize && better(heap[worst], heap[right])) {
+                    worst = right;
+                }
+                if (worst == i) {
+                    return;
+                }
+                swap(heap, i, worst);
+                i = worst;
+            }
+        }
+
+        private static void swap(int[] heap, int a, int b) {
+            int tmp = heap[a];
+            heap[a] = heap[b];
+            heap[b] = tmp;
+        }
+    }
+
+    /**
+     * Lower-cased letter and digit runs, accents removed ("Crème brûlée" -> creme, brulee).
+     */
+    static List<String> tokenize(String text) {
+        if (text == null || text.isEmpty()) {
+            return List.of();
+        }
+        String normalized = text.toLowerCase(Locale.ROOT);
+        if (!normalized.chars().allMatch(c -> c < 128)) {
+            normalized = Normalizer.normalize(normalized, Normalizer.Form.NFD).replaceAll("\\p{M}+", "");
+        }
+        List<String> tokens = new ArrayList<>();
+        int start = -1;
+        for (int i = 0; i <= normalized.length(); i++) {
+            boolean wordChar = i < normalized.length() && Character.isLetterOrDigit(normalized.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                if (i - start <= MAX_TERM_LENGTH) {
+                    tokens.add(normalized.substring(start, i));
+                }
+                start = -1;
+            }
+        }
+        return tokens;
+    }
+
+    // All strings one insert, delete, replace or adjacent swap away, over a-z, 0-9 and the term's own characters
+    private static Set<String> oneEditAway(String term) {
+        Set<Character> alphabetSet = new LinkedHashSet<>();
+        for (char c = 'a'; c <= 'z'; c++) {
+            alphabetSet.add(c);
+        }
+        for (char c = '0'; c <= '9'; c++) {
+            alphabetSet.add(c);
+        }
+        for (char c : term.toCharArray()) {
+            alphabetSet.add(c);
+        }
+        Set<String> edits = new LinkedHashSet<>();
+        StringBuilder sb = new StringBuilder(term.length() + 1);
+        for (int i = 0; i < term.length(); i++) {
+            edits.add(sb.append(term, 0, i).append(term, i + 1, term.length()).toString());
+            sb.setLength(0);
+            if (i + 1 < term.length()) {
+                edits.add(sb.append(term, 0, i).append(term.charAt(i + 1)).append(term.charAt(i))
+                        .append(term, i + 2, term.length()).toString());
+                sb.setLength(0);
+            }
+        }
+        for (char c : alphabetSet) {
+            for (int i = 0; i <= term.length(); i++) {
+                edits.add(sb.append(term, 0, i).append(c).append(term, i, term.length()).toString());
+                sb.setLength(0);
+                if (i < term.length() && term.charAt(i) != c) {
+                    edits.add(sb.append(term, 0, i).append(c).append(term, i + 1, term.length()).toString());
+                    sb.setLength(0);
+                }
+            }
+        }
+        edits.remove(term);
+        return edits;
+    }
+
+    /**
+     * Product id -> live document number, open addressing over primitive arrays: about 12 bytes per product
+     * instead of the ~60 of a HashMap&lt;Long, Integer&gt; entry, which matters at a million products.
+     */
+    private static final class ProductIdTable {
+        private static final int FREE = -1;
+        private static final int REMOVED = -2;
+
+        private long[] keys = new long[1024];
+        private int[] values = filled(1024);
+        private int size;
+        private int used;
+
+        int size() {
+            return size;
+        }
+
+        void put(long key, int value) {
+            if ((used + 1) * 2 > keys.length) {
+                resize(size * 4 > keys.length ? keys.length * 2 : keys.length);
+            }
+            int slot = find(key);
+            if (slot >= 0) {
+                values[slot] = value;
+                return;
+            }
+            int i = index(key);
+            while (values[i] >= 0) {
+                i = (i + 1) & (keys.length - 1);
+            }
+            if (values[i] == FREE) {
+                used++;
+            }
+            keys[i] = key;
+            values[i] = value;
+            size++;
+        }
+
+        // Returns the removed value, or -1 when the key was absent
+        int remove(long key) {
+            int slot = find(key);
+            if (slot < 0) {
+                return -1;
+            }
+            int value = values[slot];
+            values[slot] = REMOVED;
+            size--;
+            return value;
+        }
+
+        private int find(long key) {
+            int i = index(key);
+            while (values[i] != FREE) {
+                if (values[i] >= 0 && keys[i] == key) {
+                    return i;
+                }
+                i = (i + 1) & (keys.length - 1);
+            }
+            return -1;
+        }
+
+        private int index(long key) {
+            long h = key * 0x9E3779B97F4A7C15L;
+            return (int) (h ^ (h >>> 32)) & (keys.length - 1);
+        }
+
+        private void resize(int capacity) {
+            long[] oldKeys = keys;
+            int[] oldValues = values;
+            keys = new long[capacity];
+            values = filled(capacity);
+            size = 0;
+            used = 0;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldValues[i] >= 0) {
+                    put(oldKeys[i], oldValues[i]);
+                }
+            }
+        }
+
+        private static int[] filled(int capacity) {
+            int[] values = new int[capacity];
+            Arrays.fill(values, FREE);
+            return values;
+        }
+    }
+}
@@ -0,0 +1,9 @@
+package com.shop.product;
+
+import java.util.List;
+
+/**
+ * One page of search results, best match first. totalHits counts every matching product, but only the first
+ * shop.search.max-results of them can be paged to; hasMore is false after that.
+ */
+public record ProductSearchPage(List<CatalogProduct> items, int page, int size, long totalHits, boolean hasMore) { }
@@ -0,0 +1,166 @@
+package com.shop.product;
+
+import com.shop.config.ReplicaRouting;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serves GET /api/products/search from a {@link ProductSearchIndex} and keeps the index in step with the table.
+ *
+ * All index writes run on one "product-search-indexer" thread, in the order they were requested, so a full build
+ * and the single-product updates never race; searches read the index concurrently meanwhile.
+ * - At startup the index is built from the table in id order, off the request path; until it is done, searches
+ *   see an empty catalog.
+ * - A committed product write ({@link ProductChangedEvent}) re-indexes that product.
+ * - A bulk import ({@link ProductsImportedEvent}) indexes the rows with ids above the highest id scanned so far.
+ * - Once a quarter of the documents are replaced ones, a fresh index is built and swapped in.
+ * Results are therefore eventually consistent: a write shows up in search a few milliseconds after its commit.
+ * .NET equivalent is a BackgroundService draining a Channel of index updates.
+ */
+@Service
+public class ProductSearchService {
+
+    private static final Logger log = LoggerFactory.getLogger(ProductSearchService.class);
+    private static final int LOAD_BATCH = 5000;
+
+    private final ProductRepository productRepository;
+    private final ProductCatalogCache productCatalogCache;
+    private final ReplicaRouting replicaRouting;
+    private final int maxResults;
+    private final ExecutorService indexer = Executors.newSingleThreadExecutor(
+            Thread.ofPlatform().name("product-search-indexer").daemon().factory());
+
+    private volatile ProductSearchIndex index = new ProductSearchIndex();
+    // Highest product id loaded by a full scan or catch-up; only touched on the indexer thread
+    private long scannedUpTo;
+
+    public ProductSearchService(ProductRepository productRepository,
+                                ProductCatalogCache productCatalogCache,
+                                ReplicaRouting replicaRouting,
+                                @Value("${shop.search.max-results:1000}") int maxResults) {
+        this.productRepository = productRepository;
+        this.productCatalogCache = productCatalogCache;
+        this.replicaRouting = replicaRouting;
+        this.maxResults = maxResults;
+    }
+
+    /**
+     * Returns page "page" (from 0) of the products matching the query, "size" per page.
+     */
+    public ProductSearchPage search(String query, int page, int size) {
+        long offset = (long) page * size;
+        if (offset >= maxResults) {
+            return new ProductSearchPage(List.of(), page, size, 0, false);
+        }
+        int limit = (int) Math.min(size, maxResults - offset);
+        ProductSearchIndex.Result result = index.search(query, (int) offset, limit);
+
+        List<Long> ids = result.hits().stream().map(ProductSearchIndex.Hit::productId).toList();
+        Map<Long, CatalogProduct> products = productCatalogCache.getAll(ids);
+        List<CatalogProduct> items = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            // Deleted after it was indexed; the update is still queued
+            CatalogProduct product = products.get(id);
+            if (product != null) {
+                items.add(product);
+            }
+        }
+        boolean hasMore = offset + limit < Math.min(result.totalHits(), maxResults);
+        return new ProductSearchPage(items, page, size, result.totalHits(), hasMore);
+    }
+
+    public int indexedProducts() {
+        return index.size();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    void buildOnStartup() {
+        submit("build", this::rebuild);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    void onProductChanged(ProductChangedEvent event) {
+        submit("re-index product " + event.productId(), () -> reindex(event.productId()));
+    }
+
+    @EventListener
+    void onProductsImported(ProductsImportedEvent event) {
+        submit("catch up with import " + event.importId(), this::catchUp);
+    }
+
+    // A failed update is logged and skipped; the next full build repairs whatever it missed.
+    // Reads the primary: an update follows a commit that a replica may not have yet
+    private void submit(String description, Runnable task) {
+        indexer.execute(() -> {
+            try {
+                replicaRouting.onPrimary(() -> {
+                    task.run();
+                    return null;
+                });
+            } catch (RuntimeException e) {
+                log.warn("Product search index {} failed", description, e);
+            }
+        });
+    }
+
+    private void rebuild() {
+        long started = System.nanoTime();
+        ProductSearchIndex fresh = new ProductSearchIndex();
+        long after = load(fresh, 0);
+        index = fresh;
+        scannedUpTo = after;
+        log.info("Product search index built: {} products in {} ms",
+                fresh.size(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+    }
+
+    private void catchUp() {
+        scannedUpTo = load(index, scannedUpTo);
+        compactIfNeeded();
+    }
+
+    private void reindex(Long productId) {
+        productRepository.findById(productId).ifPresentOrElse(
+                product -> index.put(product.getId(), product.getName(), product.getDescription()),
+                () -> index.remove(productId));
+        compactIfNeeded();
+    }
+
+    // Pages through the table by id (keyset), so each batch is its own short query and nothing accumulates
+    private long load(ProductSearchIndex target, long after) {
+        List<Product> batch;
+        do {
+            batch = productRepository.findByIdGreaterThanOrderByIdAsc(after, Limit.of(LOAD_BATCH));
+            for (Product product : batch) {
+                target.put(product.getId(), product.getName(), product.getDescription());
+                after = product.getId();
+            }
+        } while (batch.size() == LOAD_BATCH);
+        return after;
+    }
+
+    private void compactIfNeeded() {
+        ProductSearchIndex current = index;
+        if (current.deletedDocuments() > Math.max(1000, current.size() / 4)) {
+            rebuild();
+        }
+    }
+
+    @PreDestroy
+    void stop() {
+        indexer.shutdownNow();
+    }
+}
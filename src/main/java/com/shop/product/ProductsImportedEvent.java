@@ -0,0 +1,10 @@
+package com.shop.product;
+
+/**
+ * Published after a chunk of products was inserted by {@link ProductImporter}. The inserts bypass JPA, so there
+ * is no {@link ProductChangedEvent} per product; listeners that index new products pick them up from the table.
+ *
+ * @param importId the import the chunk belongs to
+ * @param lastRow the last input row of the committed chunk
+ */
+public record ProductsImportedEvent(String importId, long lastRow) { }
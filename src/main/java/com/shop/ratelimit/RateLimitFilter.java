@@ -0,0 +1,51 @@
+package com.shop.ratelimit;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.RequestPath;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ServletRequestPathUtils;
+
+import java.io.IOException;
+
+/**
+ * Answers 429 Too Many Requests, with Retry-After in whole seconds, when the {@link RateLimiter} refuses a request.
+ * Sits at the end of the security filter chain, so the username is known and requests that fail authentication
+ * are not counted.
+ * .NET equivalent is app.UseRateLimiter() placed after app.UseAuthentication().
+ */
+public class RateLimitFilter extends OncePerRequestFilter {
+
+    private final RateLimiter rateLimiter;
+
+    public RateLimitFilter(RateLimiter rateLimiter) {
+        this.rateLimiter = rateLimiter;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        String username = authentication == null || authentication instanceof AnonymousAuthenticationToken
+                ? null : authentication.getName();
+        // The parsed path Spring MVC routes on, not the raw URI: "/api/cart/%69tems" reaches the same controller
+        RequestPath path = ServletRequestPathUtils.hasParsedRequestPath(request)
+                ? ServletRequestPathUtils.getParsedRequestPath(request)
+                : ServletRequestPathUtils.parseAndCache(request);
+
+        long waitMillis = rateLimiter.acquire(request.getMethod(), path.pathWithinApplication(), username);
+        if (waitMillis > 0) {
+            response.setHeader(HttpHeaders.RETRY_AFTER, Long.toString((waitMillis + 999) / 1000));
+            response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+            return;
+        }
+        chain.doFilter(request, response);
+    }
+}
@@ -0,0 +1,193 @@
+package com.shop.ratelimit;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.core.env.Environment;
+import org.springframework.http.server.PathContainer;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.util.pattern.PathPattern;
+import org.springframework.web.util.pattern.PathPatternParser;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Token-bucket limits per endpoint, from shop.rate-limit.endpoints: each one a method and path pattern with an
+ * optional per-user bucket (one per username) and an optional global bucket shared by every caller.
+ * A request takes a token from its user's bucket first, so a client hammering an endpoint empties its own bucket
+ * and not the global one; when the global bucket then refuses, the user's token is given back.
+ * Per-user buckets that have refilled completely are dropped by a sweep, since a new bucket starts out full.
+ * .NET equivalent is AddRateLimiter() with PartitionedRateLimiter.CreateChained over a per-user and a global
+ * partition.
+ */
+@Component
+public class RateLimiter {
+
+    public record Limit(long capacity, double refillPerSecond) {}
+
+    public record Rule(String method, String path, Limit perUser, Limit global) {}
+
+    /**
+     * One configured endpoint and how many of its requests each kind of bucket refused.
+     */
+    public static final class Endpoint {
+
+        private final String name;
+        private final String method;
+        private final PathPattern path;
+        // The path itself when it has no wildcards or variables, compared as a string with the decoded request path
+        private final String literalPath;
+        private final Limit perUser;
+        private final TokenBucket global;
+        private final Map<String, TokenBucket> users = new ConcurrentHashMap<>();
+        private final LongAdder rejectedPerUser = new LongAdder();
+        private final LongAdder rejectedGlobal = new LongAdder();
+
+        private Endpoint(String name, Rule rule, long nowMillis) {
+            if (rule.method() == null || rule.path() == null) {
+                throw new IllegalArgumentException("shop.rate-limit.endpoints." + name + " needs a method and a path");
+            }
+            this.name = name;
+            this.method = rule.method();
+            this.path = PathPatternParser.defaultInstance.parse(rule.path());
+            this.literalPath = path.hasPatternSyntax() ? null : rule.path();
+            this.perUser = rule.perUser();
+            this.global = rule.global() == null ? null
+                    : new TokenBucket(rule.global().capacity(), rule.global().refillPerSecond(), nowMillis);
+            if (perUser != null) {
+                // Fails on a bad limit at startup rather than on the first request
+                new TokenBucket(perUser.capacity(), perUser.refillPerSecond(), nowMillis);
+            }
+        }
+
+        public String name() {
+            return name;
+        }
+
+        public long rejectedPerUser() {
+            return rejectedPerUser.sum();
+        }
+
+        public long rejectedGlobal() {
+            return rejectedGlobal.sum();
+        }
+
+        public int trackedUsers() {
+            return users.size();
+        }
+    }
+
+    private final List<Endpoint> endpoints = new ArrayList<>();
+    private final long epochNanos = System.nanoTime();
+
+    public RateLimiter(Environment environment, @Value("${shop.rate-limit.enabled:true}") boolean enabled) {
+        if (enabled) {
+            Map<String, Rule> rules = Binder.get(environment)
+                    .bind("shop.rate-limit.endpoints", Bindable.mapOf(String.class, Rule.class))
+                    .orElse(Map.of());
+            rules.forEach((name, rule) -> endpoints.add(new Endpoint(name, rule, nowMillis())));
+        }
+    }
+
+    public List<Endpoint> endpoints() {
+        return endpoints;
+    }
+
+    /**
+     * Takes a token for the request from the first endpoint that matches it. Returns 0 when the request may go
+     * ahead, otherwise the milliseconds until it would be let through. username is null for anonymous requests,
+     * which only the global bucket limits.
+     */
+    public long acquire(String method, String path, String username) {
+        return acquire(method, PathContainer.parsePath(path), username);
+    }
+
+    /**
+     * As above, for the path as Spring MVC routes it: the request's parsed path within the application, whose
+     * segments are matched decoded, so "/api/cart/%69tems" counts against the "/api/cart/items" buckets.
+     */
+    public long acquire(String method, PathContainer path, String username) {
+        Endpoint endpoint = match(method, path);
+        if (endpoint == null) {
+            return 0;
+        }
+        long now = nowMillis();
+        TokenBucket user = null;
+        if (endpoint.perUser != null && username != null) {
+            user = endpoint.users.get(username);
+            if (user == null) {
+                user = endpoint.users.computeIfAbsent(username, key ->
+                        new TokenBucket(endpoint.perUser.capacity(), endpoint.perUser.refillPerSecond(), now));
+            }
+            long wait = user.tryAcquire(now);
+            if (wait > 0) {
+                endpoint.rejectedPerUser.increment();
+                return wait;
+            }
+        }
+        if (endpoint.global != null) {
+            long wait = endpoint.global.tryAcquire(now);
+            if (wait > 0) {
+                if (user != null) {
+                    user.release();
+                }
+                endpoint.rejectedGlobal.increment();
+                return wait;
+            }
+        }
+        return 0;
+    }
+
+    // A request that picked up a bucket just before it was dropped spends a token nobody counts; a sweep forgives
+    // at most that one token per user
+    @Scheduled(fixedDelayString = "${shop.rate-limit.sweep-interval:PT1M}")
+    void dropFullBuckets() {
+        long now = nowMillis();
+        for (Endpoint endpoint : endpoints) {
+            endpoint.users.values().removeIf(bucket -> bucket.isFull(now));
+        }
+    }
+
+    private Endpoint match(String method, PathContainer path) {
+        String lookupPath = null;
+        for (Endpoint endpoint : endpoints) {
+            if (!endpoint.method.equalsIgnoreCase(method)) {
+                continue;
+            }
+            if (endpoint.literalPath != null) {
+                if (lookupPath == null) {
+                    lookupPath = lookupPath(path);
+                }
+                if (endpoint.literalPath.equals(lookupPath)) {
+                    return endpoint;
+                }
+            } else if (endpoint.path.matches(path)) {
+                return endpoint;
+            }
+        }
+        return null;
+    }
+
+    // The path with every segment decoded and stripped of ;parameters, as a PathPattern sees it
+    private static String lookupPath(PathContainer path) {
+        String value = path.value();
+        if (value.indexOf('%') < 0 && value.indexOf(';') < 0) {
+            return value;
+        }
+        StringBuilder decoded = new StringBuilder(value.length());
+        for (PathContainer.Element element : path.elements()) {
+            decoded.append(element instanceof PathContainer.PathSegment segment ? segment.valueToMatch() : element.value());
+        }
+        return decoded.toString();
+    }
+
+    private long nowMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - epochNanos);
+    }
+}
@@ -0,0 +1,93 @@
+package com.shop.ratelimit;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Token bucket whose whole state, the tokens left and the time of the last refill, is packed into one long and
+ * changed with compare-and-set, so concurrent requests never block each other:
+ * - the upper 23 bits hold the tokens, at most {@link #MAX_CAPACITY};
+ * - the lower 40 bits hold the refill time in milliseconds on the caller's clock, wrapping after about 34 years.
+ * Refills are computed on use rather than by a timer. The refill time only moves forward by the time the whole
+ * tokens took to earn, so the fraction of a token earned so far is kept for the next call.
+ * A rejection only reads the state; only taking or giving back a token writes it.
+ * .NET equivalent is System.Threading.RateLimiting's TokenBucketRateLimiter, minus its lock.
+ */
+final class TokenBucket {
+
+    static final int TIME_BITS = 40;
+    static final long TIME_MASK = (1L << TIME_BITS) - 1;
+    static final long MAX_CAPACITY = (1L << (Long.SIZE - 1 - TIME_BITS)) - 1;
+
+    private final long capacity;
+    private final double millisPerToken;
+    private final AtomicLong state;
+
+    TokenBucket(long capacity, double refillPerSecond, long nowMillis) {
+        if (capacity < 1 || capacity > MAX_CAPACITY) {
+            throw new IllegalArgumentException("Token bucket capacity must be between 1 and " + MAX_CAPACITY);
+        }
+        if (!(refillPerSecond > 0)) {
+            throw new IllegalArgumentException("Token bucket refill rate must be positive");
+        }
+        this.capacity = capacity;
+        this.millisPerToken = 1000 / refillPerSecond;
+        this.state = new AtomicLong(pack(capacity, nowMillis));
+    }
+
+    /**
+     * Takes a token if there is one. Returns 0 when it did, otherwise how many milliseconds until the next token.
+     */
+    long tryAcquire(long nowMillis) {
+        while (true) {
+            long current = state.get();
+            long tokens = current >>> TIME_BITS;
+            long refilledAt = current & TIME_MASK;
+            long elapsed = elapsed(nowMillis, refilledAt);
+            long earned = (long) (elapsed / millisPerToken);
+            if (tokens + earned >= capacity) {
+                tokens = capacity;
+                refilledAt = nowMillis;
+            } else if (earned > 0) {
+                tokens += earned;
+                refilledAt += (long) (earned * millisPerToken);
+            } else if (tokens == 0) {
+                return Math.max(1, (long) Math.ceil(millisPerToken - elapsed));
+            }
+            if (state.compareAndSet(current, pack(tokens - 1, refilledAt))) {
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * Gives back a token taken by {@link #tryAcquire}, when the request was refused by another bucket after all.
+     */
+    void release() {
+        while (true) {
+            long current = state.get();
+            long tokens = current >>> TIME_BITS;
+            if (tokens >= capacity || state.compareAndSet(current, current + (1L << TIME_BITS))) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Whether the bucket has refilled completely; such a bucket can be dropped, a new one starts out the same.
+     */
+    boolean isFull(long nowMillis) {
+        long current = state.get();
+        long elapsed = elapsed(nowMillis, current & TIME_MASK);
+        return (current >>> TIME_BITS) + (long) (elapsed / millisPerToken) >= capacity;
+    }
+
+    // Another thread may have stored a slightly later clock reading than the caller's; that counts as no time passed
+    private static long elapsed(long nowMillis, long refilledAt) {
+        long elapsed = (nowMillis - refilledAt) & TIME_MASK;
+        return elapsed > TIME_MASK >>> 1 ? 0 : elapsed;
+    }
+
+    private static long pack(long tokens, long millis) {
+        return tokens << TIME_BITS | millis & TIME_MASK;
+    }
+}
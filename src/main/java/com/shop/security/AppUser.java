@@ -0,0 +1,61 @@
+package com.shop.security;
+
+import jakarta.persistence.*;
+
+/**
+ * A login stored in the database. The password column holds the DelegatingPasswordEncoder format,
+ * e.g. {bcrypt}$2a$10$..., so the hashing algorithm can change without a migration.
+ * .NET equivalent is the IdentityUser row of ASP.NET Core Identity.
+ */
+@Entity
+@Table(name = "app_user")
+public class AppUser {
+
+    @Id
+    private String username;
+
+    @Column(nullable = false)
+    private String password;
+
+    // Comma separated role names without the ROLE_ prefix, e.g. "USER,ADMIN"
+    @Column(nullable = false)
+    private String roles;
+
+    private boolean enabled = true;
+
+    protected AppUser() {}
+    public AppUser(String username, String password, String roles, boolean enabled) {
+        this.username = username;
+        this.password = password;
+        this.roles = roles;
+        this.enabled = enabled;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public String getPassword() {
+        return password;
+    }
+
+    public void setPassword(String password) {
+        this.password = password;
+    }
+
+    public String getRoles() {
+        return roles;
+    }
+
+    public void setRoles(String roles) {
+        this.roles = roles;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+}
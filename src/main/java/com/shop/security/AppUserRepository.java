@@ -0,0 +1,6 @@
+package com.shop.security;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface AppUserRepository extends JpaRepository<AppUser, String> {
+}
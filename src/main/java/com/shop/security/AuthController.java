@@ -0,0 +1,45 @@
+package com.shop.security;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * Exchanges HTTP Basic credentials for a bearer token, so the password hash is verified once per login
+ * rather than on every cart or checkout call. Only the password issues a token: a bearer token cannot be
+ * exchanged for a fresh one, so a stolen token dies with its ttl.
+ */
+@RestController
+@RequestMapping("/api/auth/token")
+public class AuthController {
+
+    private static final String BEARER = "Bearer ";
+    private static final String BASIC = "Basic ";
+
+    private final TokenStore tokenStore;
+
+    public AuthController(TokenStore tokenStore) {
+        this.tokenStore = tokenStore;
+    }
+
+    // curl -u alice:password -X POST localhost:8080/api/auth/token
+    @PostMapping
+    public TokenStore.IssuedToken issue(@AuthenticationPrincipal UserDetails userDetails,
+                                        @RequestHeader(HttpHeaders.AUTHORIZATION) String authorization) {
+        if (!authorization.regionMatches(true, 0, BASIC, 0, BASIC.length())) {
+            throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "A token is only issued for Basic credentials");
+        }
+        return tokenStore.issue(userDetails);
+    }
+
+    @DeleteMapping
+    @ResponseStatus(HttpStatus.NO_CONTENT)
+    public void revoke(@RequestHeader(HttpHeaders.AUTHORIZATION) String authorization) {
+        if (authorization.regionMatches(true, 0, BEARER, 0, BEARER.length())) {
+            tokenStore.revoke(authorization.substring(BEARER.length()).trim());
+        }
+    }
+}
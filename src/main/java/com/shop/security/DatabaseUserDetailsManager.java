@@ -0,0 +1,119 @@
+package com.shop.security;
+
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.provisioning.UserDetailsManager;
+import jakarta.transaction.Transactional;
+
+import java.util.stream.Collectors;
+
+/**
+ * UserDetailsManager backed by the app_user table. Implementing UserDetailsPasswordService lets
+ * Spring Security re-hash a password with the current default encoder on the next successful login.
+ * Changing or removing a user revokes its bearer tokens, so a cached principal never outlives its row.
+ * .NET equivalent is a custom IUserStore&lt;TUser&gt; plugged into ASP.NET Core Identity.
+ */
+public class DatabaseUserDetailsManager implements UserDetailsManager, UserDetailsPasswordService {
+
+    private static final String ROLE_PREFIX = "ROLE_";
+
+    private final AppUserRepository repository;
+    private final TokenStore tokenStore;
+    private final PasswordEncoder passwordEncoder;
+
+    public DatabaseUserDetailsManager(AppUserRepository repository, TokenStore tokenStore, PasswordEncoder passwordEncoder) {
+        this.repository = repository;
+        this.tokenStore = tokenStore;
+        this.passwordEncoder = passwordEncoder;
+    }
+
+    @Override
+    public UserDetails loadUserByUsername(String username) {
+        return repository.findById(username)
+                .map(DatabaseUserDetailsManager::toUserDetails)
+                .orElseThrow(() -> new UsernameNotFoundException(username));
+    }
+
+    @Override
+    @Transactional
+    public void createUser(UserDetails user) {
+        repository.save(new AppUser(user.getUsername(), user.getPassword(), roles(user), user.isEnabled()));
+    }
+
+    @Override
+    @Transactional
+    public void updateUser(UserDetails user) {
+        AppUser existing = find(user.getUsername());
+        existing.setPassword(user.getPassword());
+        existing.setRoles(roles(user));
+        existing.setEnabled(user.isEnabled());
+        tokenStore.revokeAll(user.getUsername());
+    }
+
+    @Override
+    @Transactional
+    public void deleteUser(String username) {
+        repository.deleteById(username);
+        tokenStore.revokeAll(username);
+    }
+
+    /**
+     * Changes the password of the currently authenticated user. The old password is checked against the stored
+     * hash: the user may have authenticated with a bearer token, which proves nothing about the password.
+     * newPassword is stored as given, so pass it encoded.
+     *
+     * @throws BadCredentialsException when oldPassword is wrong
+     */
+    @Override
+    @Transactional
+    public void changePassword(String oldPassword, String newPassword) {
+        Authentication current = SecurityContextHolder.getContext().getAuthentication();
+        if (current == null) {
+            throw new IllegalStateException("No authenticated user to change the password of");
+        }
+        AppUser user = find(current.getName());
+        if (oldPassword == null || !passwordEncoder.matches(oldPassword, user.getPassword())) {
+            throw new BadCredentialsException("Old password does not match");
+        }
+        user.setPassword(newPassword);
+        tokenStore.revokeAll(current.getName());
+    }
+
+    @Override
+    public boolean userExists(String username) {
+        return repository.existsById(username);
+    }
+
+    @Override
+    @Transactional
+    public UserDetails updatePassword(UserDetails user, String newPassword) {
+        find(user.getUsername()).setPassword(newPassword);
+        return User.withUserDetails(user).password(newPassword).build();
+    }
+
+    private AppUser find(String username) {
+        return repository.findById(username).orElseThrow(() -> new UsernameNotFoundException(username));
+    }
+
+    private static String roles(UserDetails user) {
+        return user.getAuthorities().stream()
+                .map(GrantedAuthority::getAuthority)
+                .map(authority -> authority.startsWith(ROLE_PREFIX) ? authority.substring(ROLE_PREFIX.length()) : authority)
+                .collect(Collectors.joining(","));
+    }
+
+    private static UserDetails toUserDetails(AppUser user) {
+        return User.withUsername(user.getUsername())
+                .password(user.getPassword())
+                .roles(user.getRoles().isBlank() ? new String[0] : user.getRoles().split(","))
+                .disabled(!user.isEnabled())
+                .build();
+    }
+}
@@ -1,13 +1,21 @@
 package com.shop.security;
 
+import com.shop.ratelimit.RateLimitFilter;
+import com.shop.ratelimit.RateLimiter;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpMethod;
 import org.springframework.security.config.Customizer;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
-import org.springframework.security.core.userdetails.User;
-import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.config.http.SessionCreationPolicy;
+import org.springframework.security.crypto.factory.PasswordEncoderFactories;
+import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.provisioning.InMemoryUserDetailsManager;
+import org.springframework.security.provisioning.UserDetailsManager;
 import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.security.web.access.intercept.AuthorizationFilter;
+import org.springframework.security.web.authentication.www.BasicAuthenticationFilter;
 
 /**
  * @Configuration contributes beans to the Spring container.
@@ -16,10 +24,16 @@ import org.springframework.security.web.SecurityFilterChain;
 @Configuration
 public class SecurityConfig {
 
+    // Back-office role: catalog and stock changes, sales reports
+    static final String ADMIN = "ADMIN";
+
     /**
      * Configures the security filter chain for HTTP requests.
-     * Disables CSRF protection, allows unrestricted access to certain endpoints,
-     * requires authentication for all other requests, and enables HTTP Basic authentication.
+     * Disables CSRF protection, allows unrestricted access to certain endpoints, keeps the back-office endpoints
+     * for the ADMIN role, requires authentication for all other requests, and enables HTTP Basic authentication.
+     * Bearer tokens from POST /api/auth/token are checked before Basic, and no HTTP session is created:
+     * each request carries either the password (one bcrypt check) or a token (one map lookup).
+     * Rate limits are applied last, once the user is known (see {@link RateLimiter}).
      * .NET equivalent is configuring middleware in the Program.cs/Startup.cs file using app.UseAuthentication(),
      * app.UseAuthorization(), and defining policies.
      *
@@ -28,30 +42,53 @@ public class SecurityConfig {
      * @throws Exception if an error occurs while configuring the security filter chain
      */
     @Bean
-    SecurityFilterChain filterChain(HttpSecurity http) throws Exception {
+    SecurityFilterChain filterChain(HttpSecurity http, TokenStore tokenStore, RateLimiter rateLimiter) throws Exception {
         http
             .csrf(csrf -> csrf.disable())
+            .sessionManagement(session -> session.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
             .authorizeHttpRequests(auth -> auth
                 .requestMatchers("/actuator/**").permitAll()
-                .requestMatchers("/api/products/**").permitAll()
+                // Reading the catalog is public; changing it (import, price updates) is for administrators
+                .requestMatchers(HttpMethod.GET, "/api/products/**").permitAll()
+                .requestMatchers("/api/products/**").hasRole(ADMIN)
+                // Any signed-in user may look up stock; setting it is for administrators
+                .requestMatchers(HttpMethod.PUT, "/api/inventory/**").hasRole(ADMIN)
+                // Revenue figures are for the back office, not for customers
+                .requestMatchers("/api/analytics/**").hasRole(ADMIN)
                 .anyRequest().authenticated()
             )
+            .addFilterBefore(new BearerTokenAuthenticationFilter(tokenStore), BasicAuthenticationFilter.class)
+            .addFilterAfter(new RateLimitFilter(rateLimiter), AuthorizationFilter.class)
             .httpBasic(Customizer.withDefaults());
         return http.build();
     }
 
     /**
-     * Defines an in-memory user details service with two users: "alice" and "bob".
-     * Both users have the role "USER" and their passwords are stored in plain text.
-     * .NET equivalent is configuring in-memory users in the authentication setup in Program.cs/Startup.cs.
+     * Stores new passwords as {bcrypt}... and still accepts {noop} or other prefixed legacy hashes,
+     * which are re-encoded with bcrypt on the next successful login.
+     * .NET equivalent is the PasswordHasher&lt;TUser&gt; with its rehash-needed result.
+     *
+     * @return the delegating password encoder
+     */
+    @Bean
+    PasswordEncoder passwordEncoder() {
+        return PasswordEncoderFactories.createDelegatingPasswordEncoder();
+    }
+
+    /**
+     * The user store is pluggable: shop.security.user-store=jdbc (the default) reads the app_user table,
+     * memory keeps users in a map as before. Either way the users are seeded by {@link com.shop.config.DataLoader}.
+     * .NET equivalent is choosing between AddEntityFrameworkStores() and a custom in-memory IUserStore.
      *
-     * @return the UserDetailsService managing the in-memory users
+     * @return the UserDetailsManager used for Basic authentication and user administration
      */
     @Bean
-    UserDetailsService users() {
-        return new InMemoryUserDetailsManager(
-            User.withUsername("alice").password("{noop}password").roles("USER").build(),
-            User.withUsername("bob").password("{noop}password").roles("USER").build()
-        );
+    UserDetailsManager users(@Value("${shop.security.user-store:jdbc}") String userStore,
+                             AppUserRepository appUsers, TokenStore tokenStore, PasswordEncoder passwordEncoder) {
+        return switch (userStore) {
+            case "jdbc" -> new DatabaseUserDetailsManager(appUsers, tokenStore, passwordEncoder);
+            case "memory" -> new InMemoryUserDetailsManager();
+            default -> throw new IllegalArgumentException("Unknown shop.security.user-store: " + userStore);
+        };
     }
-}
\ No newline at end of file
+}
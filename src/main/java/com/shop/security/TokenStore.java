@@ -0,0 +1,122 @@
+package com.shop.security;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.stereotype.Component;
+
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Bounded, expiring map from opaque bearer tokens to already authenticated principals.
+ * The password is checked once, when the token is issued; every later request is a single hash lookup
+ * instead of a bcrypt comparison. Tokens live for a fixed ttl, and once maxEntries is reached the oldest
+ * token is dropped, so memory stays bounded whatever the login rate.
+ * .NET equivalent is a reference-token handler backed by IMemoryCache with absolute expiration and a SizeLimit.
+ */
+@Component
+public class TokenStore {
+
+    public record IssuedToken(String token, Instant expiresAt) {}
+
+    private record Session(Authentication authentication, Instant expiresAt) {}
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private final Map<String, Session> sessions = new ConcurrentHashMap<>();
+    // Tokens in issue order; since the ttl is fixed this is also expiry order
+    private final Queue<String> issueOrder = new ConcurrentLinkedQueue<>();
+    private final Duration ttl;
+    private final int maxEntries;
+
+    public TokenStore(@Value("${shop.security.token.ttl:PT30M}") Duration ttl,
+                      @Value("${shop.security.token.max-entries:100000}") int maxEntries) {
+        this.ttl = ttl;
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * Issues a token for a user whose credentials were just verified.
+     * The stored principal carries no password.
+     */
+    public IssuedToken issue(UserDetails user) {
+        UserDetails principal = User.withUsername(user.getUsername())
+                .password("")
+                .authorities(user.getAuthorities())
+                .build();
+        Authentication authentication = UsernamePasswordAuthenticationToken.authenticated(
+                principal, null, principal.getAuthorities());
+
+        byte[] bytes = new byte[32];
+        RANDOM.nextBytes(bytes);
+        String token = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+        Instant expiresAt = Instant.now().plus(ttl);
+
+        sessions.put(token, new Session(authentication, expiresAt));
+        issueOrder.add(token);
+        while (sessions.size() > maxEntries) {
+            String oldest = issueOrder.poll();
+            if (oldest == null) {
+                break;
+            }
+            sessions.remove(oldest);
+        }
+        return new IssuedToken(token, expiresAt);
+    }
+
+    /**
+     * Returns the principal for a live token, or null when the token is unknown, revoked or expired.
+     */
+    public Authentication authenticate(String token) {
+        Session session = sessions.get(token);
+        if (session == null) {
+            return null;
+        }
+        if (!session.expiresAt().isAfter(Instant.now())) {
+            sessions.remove(token, session);
+            return null;
+        }
+        return session.authentication();
+    }
+
+    public void revoke(String token) {
+        sessions.remove(token);
+    }
+
+    /**
+     * Drops every token of the user, e.g. after a password change or when the account is deleted.
+     */
+    public void revokeAll(String username) {
+        sessions.values().removeIf(session -> session.authentication().getName().equals(username));
+    }
+
+    public int size() {
+        return sessions.size();
+    }
+
+    @Scheduled(fixedDelayString = "${shop.security.token.sweep-interval:PT1M}")
+    void expireTokens() {
+        Instant now = Instant.now();
+        // Expired tokens sit at the head of the queue; revoked ones are skipped over on the way
+        for (String token = issueOrder.peek(); token != null; token = issueOrder.peek()) {
+            Session session = sessions.get(token);
+            if (session != null && session.expiresAt().isAfter(now)) {
+                break;
+            }
+            issueOrder.poll();
+            if (session != null) {
+                sessions.remove(token, session);
+            }
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package com.shop.cart;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Concurrent adds through the database-backed CartService: the single-statement MERGE plus ConcurrencyRetry must
+ * count every increment exactly once, including the race of many first-time inserts of the same line.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:cart-concurrency-test;DB_CLOSE_DELAY=-1",
+        "spring.h2.console.enabled=false",
+        "shop.cart.store=database"})
+@AutoConfigureMockMvc
+class CartConcurrencyTest {
+
+    private static final int THREADS = 16;
+    private static final int ADDS = 4000;
+
+    @Autowired
+    private CartService cartService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    private Long productId;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate.update("delete from cart_item");
+        productId = jdbcTemplate.queryForObject("select min(id) from product", Long.class);
+    }
+
+    @Test
+    void concurrentAddsOfOneLineAreAllCounted() throws Exception {
+        runConcurrently(ADDS, i -> cartService.addOrUpdate("hot", productId, 1));
+
+        assertThat(quantity("hot")).isEqualTo(ADDS);
+        assertThat(jdbcTemplate.queryForObject(
+                "select version from cart_item where username = 'hot'", Long.class)).isEqualTo(ADDS - 1);
+    }
+
+    @Test
+    void concurrentFirstAddsOfManyUsersCreateOneLineEach() throws Exception {
+        int users = 200;
+        runConcurrently(users * 10, i -> cartService.addOrUpdate("user" + i % users, productId, 2));
+
+        assertThat(jdbcTemplate.queryForObject("select count(*) from cart_item", Integer.class)).isEqualTo(users);
+        for (int i = 0; i < users; i++) {
+            assertThat(quantity("user" + i)).isEqualTo(20);
+        }
+    }
+
+    @Test
+    void quantitiesBelowOneAreRejected() {
+        assertThatThrownBy(() -> cartService.addOrUpdate("alice", productId, -5))
+                .isInstanceOf(InvalidCartChangeException.class);
+        assertThatThrownBy(() -> cartService.addOrUpdate("alice", productId, 0))
+                .isInstanceOf(InvalidCartChangeException.class);
+        cartService.addOrUpdate("alice", productId, 3);
+        assertThatThrownBy(() -> cartService.setQuantity("alice", productId, 0))
+                .isInstanceOf(InvalidCartChangeException.class);
+
+        assertThat(quantity("alice")).isEqualTo(3);
+    }
+
+    @Test
+    void quantitiesThatOverflowAreRejected() {
+        cartService.addOrUpdate("alice", productId, Integer.MAX_VALUE);
+        assertThatThrownBy(() -> cartService.addOrUpdate("alice", productId, 1))
+                .isInstanceOf(InvalidCartChangeException.class);
+        assertThatThrownBy(() -> cartService.applyChanges("bob", List.of(
+                new CartService.CartChange(CartService.ChangeType.ADD, productId, Integer.MAX_VALUE),
+                new CartService.CartChange(CartService.ChangeType.ADD, productId, 1))))
+                .isInstanceOf(InvalidCartChangeException.class);
+        // A bulk add that overflows the stored quantity is rejected as well, and nothing of it is applied
+        assertThatThrownBy(() -> cartService.applyChanges("alice", List.of(
+                new CartService.CartChange(CartService.ChangeType.SET, productId + 1, 2),
+                new CartService.CartChange(CartService.ChangeType.ADD, productId, 1))))
+                .isInstanceOf(InvalidCartChangeException.class);
+
+        assertThat(quantity("alice")).isEqualTo(Integer.MAX_VALUE);
+        assertThat(jdbcTemplate.queryForObject(
+                "select count(*) from cart_item where username = 'alice'", Integer.class)).isEqualTo(1);
+    }
+
+    @Test
+    void addEndpointValidatesTheBody() throws Exception {
+        String basic = "Basic " + Base64.getEncoder().encodeToString("alice:password".getBytes(StandardCharsets.UTF_8));
+        for (String body : new String[]{"{\"productId\":%d,\"quantity\":-5}", "{\"productId\":%d}"}) {
+            mockMvc.perform(post("/api/cart/items")
+                            .header(HttpHeaders.AUTHORIZATION, basic)
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(body.formatted(productId)))
+                    .andExpect(status().isBadRequest());
+        }
+
+        assertThat(jdbcTemplate.queryForObject("select count(*) from cart_item", Integer.class)).isZero();
+    }
+
+    private interface Task {
+        void run(int i) throws Exception;
+    }
+
+    // Runs count tasks on THREADS threads, all released at once, and rethrows the first failure
+    private static void runConcurrently(int count, Task task) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<?>> futures = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                int n = i;
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    task.run(n);
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private int quantity(String username) {
+        return jdbcTemplate.queryForObject(
+                "select quantity from cart_item where username = ? and product_id = ?", Integer.class, username, productId);
+    }
+}
@@ -0,0 +1,76 @@
+package com.shop.cart;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * The interleavings of a summary load with a writing transaction, played step by step: the transaction's
+ * synchronizations are run by hand where its commit would run them.
+ */
+class CartSummaryStoreTest {
+
+    private static final CartService.CartSummary BEFORE = new CartService.CartSummary(1, 2, new BigDecimal("10.00"));
+    private static final CartService.CartSummary AFTER = new CartService.CartSummary(1, 3, new BigDecimal("15.00"));
+
+    private final CartSummaryStore store = new CartSummaryStore(100);
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void deltaIsAppliedToASummaryLoadedBeforeTheWrite() {
+        store.get("alice", () -> BEFORE);
+
+        TransactionSynchronizationManager.initSynchronization();
+        store.apply("alice", 0, 1, 500);
+        complete(TransactionSynchronization.STATUS_COMMITTED);
+
+        assertThat(store.get("alice", () -> null)).isEqualTo(AFTER);
+    }
+
+    @Test
+    void loadThatSeesTheCommittedRowsBeforeTheDeltaIsNotStored() {
+        TransactionSynchronizationManager.initSynchronization();
+        store.apply("alice", 0, 1, 500);
+        // The rows are committed, the afterCommit callback has not run yet, and a load reads the new state
+        assertThat(store.get("alice", () -> AFTER)).isEqualTo(AFTER);
+        complete(TransactionSynchronization.STATUS_COMMITTED);
+
+        // Counted once: the next call loads again instead of serving AFTER plus the delta
+        assertThat(store.get("alice", () -> AFTER)).isEqualTo(AFTER);
+        assertThat(store.get("alice", () -> null)).isEqualTo(AFTER);
+    }
+
+    @Test
+    void rolledBackWriteLeavesNothingPending() {
+        TransactionSynchronizationManager.initSynchronization();
+        store.apply("alice", 0, 1, 500);
+        store.get("alice", () -> BEFORE);
+        complete(TransactionSynchronization.STATUS_ROLLED_BACK);
+
+        assertThat(store.get("alice", () -> BEFORE)).isEqualTo(BEFORE);
+        assertThat(store.get("alice", () -> null)).isEqualTo(BEFORE);
+    }
+
+    // What the transaction manager does once the transaction ends
+    private static void complete(int status) {
+        var synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        TransactionSynchronizationManager.clearSynchronization();
+        for (TransactionSynchronization synchronization : synchronizations) {
+            if (status == TransactionSynchronization.STATUS_COMMITTED) {
+                synchronization.afterCommit();
+            }
+            synchronization.afterCompletion(status);
+        }
+    }
+}
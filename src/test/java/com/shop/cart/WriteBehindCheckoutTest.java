@@ -0,0 +1,85 @@
+package com.shop.cart;
+
+import com.shop.order.CheckoutService;
+import com.shop.order.Order;
+import com.shop.order.OrderItem;
+import com.shop.order.OrderPlacedEvent;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+/**
+ * A line added to a write-behind cart while its checkout runs: the add lands after checkout has read the cart
+ * and before it clears it, the way another request of the same user would. The order must not contain the line,
+ * and the cart must still have it afterwards, in memory and once flushed.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:write-behind-checkout-test;DB_CLOSE_DELAY=-1",
+        "spring.h2.console.enabled=false",
+        "shop.cart.store=write-behind"})
+class WriteBehindCheckoutTest {
+
+    @TestConfiguration
+    static class DuringCheckout {
+        // Runs inside the checkout transaction, after the order is saved and before the cart is cleared
+        volatile Consumer<OrderPlacedEvent> action = event -> { };
+
+        @EventListener
+        void onOrderPlaced(OrderPlacedEvent event) {
+            action.accept(event);
+        }
+    }
+
+    @Autowired
+    private CartService cartService;
+
+    @Autowired
+    private CheckoutService checkoutService;
+
+    @Autowired
+    private DuringCheckout duringCheckout;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private Long first;
+    private Long second;
+
+    @BeforeEach
+    void setUp() {
+        first = jdbcTemplate.queryForObject("select min(id) from product", Long.class);
+        second = jdbcTemplate.queryForObject("select min(id) from product where id > ?", Long.class, first);
+    }
+
+    @Test
+    void lineAddedDuringCheckoutStaysInTheCart() {
+        cartService.addOrUpdate("interleaved", first, 2);
+        duringCheckout.action = event -> cartService.addOrUpdate("interleaved", second, 3);
+
+        Order order;
+        try {
+            order = checkoutService.checkout("interleaved");
+        } finally {
+            duringCheckout.action = event -> { };
+        }
+
+        assertThat(order.getItems()).extracting(OrderItem::getProductId).containsExactly(first);
+        assertThat(cartService.getCart("interleaved").items())
+                .extracting(CartService.CartLine::productId, CartService.CartLine::quantity)
+                .containsExactly(tuple(second, 3));
+
+        cartService.flush("interleaved");
+        assertThat(jdbcTemplate.queryForList(
+                "select product_id from cart_item where username = 'interleaved'", Long.class))
+                .containsExactly(second);
+    }
+}
@@ -0,0 +1,108 @@
+package com.shop.inventory;
+
+import com.shop.order.CheckoutService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * 1,000 users each hold one unit of the same SKU and all check out at once against a stock of 100: exactly 100
+ * orders must be placed, every other checkout must fail with InsufficientStockException, and the stock must end
+ * at zero. The striped counters are decremented conditionally, so no shard may go below zero either.
+ * Resetting the stock must not sell the units pending checkouts hold a second time.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:stock-oversell-test;DB_CLOSE_DELAY=-1",
+        "spring.h2.console.enabled=false"})
+class StockOversellTest {
+
+    private static final int CHECKOUTS = 1000;
+    private static final int STOCK = 100;
+
+    @Autowired
+    private InventoryService inventoryService;
+
+    @Autowired
+    private CheckoutService checkoutService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void parallelCheckoutsOfOneSkuNeverOversell() throws Exception {
+        jdbcTemplate.update("insert into product (name, description, price) values ('Limited Drop', 'one SKU', 25.00)");
+        Long sku = jdbcTemplate.queryForObject("select id from product where name = 'Limited Drop'", Long.class);
+        inventoryService.setStock(sku, STOCK);
+        List<Object[]> carts = new ArrayList<>(CHECKOUTS);
+        for (int i = 0; i < CHECKOUTS; i++) {
+            carts.add(new Object[]{"oversell" + i, sku});
+        }
+        jdbcTemplate.batchUpdate("""
+                insert into cart_item (username, product_id, quantity, name_snapshot, price_snapshot, product_version,
+                    last_modified, version)
+                select ?, id, 1, name, price, version, current_timestamp, 0 from product where id = ?
+                """, carts);
+
+        var placed = new AtomicInteger();
+        var soldOut = new AtomicInteger();
+        var otherErrors = new ConcurrentLinkedQueue<Throwable>();
+        var start = new CountDownLatch(1);
+        try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < CHECKOUTS; i++) {
+                String username = "oversell" + i;
+                executor.execute(() -> {
+                    try {
+                        start.await();
+                        checkoutService.checkout(username);
+                        placed.incrementAndGet();
+                    } catch (InsufficientStockException e) {
+                        soldOut.incrementAndGet();
+                    } catch (Throwable e) {
+                        otherErrors.add(e);
+                    }
+                });
+            }
+            start.countDown();
+        }
+
+        assertThat(otherErrors).isEmpty();
+        assertThat(placed).hasValue(STOCK);
+        assertThat(soldOut).hasValue(CHECKOUTS - STOCK);
+        assertThat(jdbcTemplate.queryForObject(
+                "select coalesce(sum(quantity), 0) from order_item where product_id = ?", Integer.class, sku))
+                .isEqualTo(STOCK);
+        assertThat(inventoryService.available(sku)).hasValue(0);
+        assertThat(jdbcTemplate.queryForObject(
+                "select count(*) from stock_shard where product_id = ? and available < 0", Integer.class, sku))
+                .isZero();
+    }
+
+    @Test
+    void settingStockKeepsHeldUnitsSold() {
+        jdbcTemplate.update("insert into product (name, description, price) values ('Held Drop', 'one SKU', 25.00)");
+        Long sku = jdbcTemplate.queryForObject("select id from product where name = 'Held Drop'", Long.class);
+        inventoryService.setStock(sku, 10);
+        inventoryService.hold("holder", "pending", Map.of(sku, 4));
+
+        // 10 on hand, 4 of them waiting for a checkout to be placed
+        assertThat(inventoryService.setStock(sku, 10)).hasValue(6);
+        assertThat(inventoryService.available(sku)).hasValue(6);
+        assertThatThrownBy(() -> inventoryService.setStock(sku, 3)).isInstanceOf(InsufficientStockException.class);
+
+        inventoryService.release("holder", "pending");
+        assertThat(inventoryService.available(sku)).hasValue(10);
+        assertThat(inventoryService.setStock(Long.MAX_VALUE, 10)).isEmpty();
+    }
+}
@@ -0,0 +1,138 @@
+package com.shop.order;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Checkout must cost a fixed number of SQL statements whatever the size of the cart: one query for the lines, one
+ * for their stock tracking, the order and its items as batched inserts, the cart cleared with one delete and the
+ * outbox event. Every statement the checkout thread prepares is recorded through a wrapper around the DataSource,
+ * so JdbcTemplate statements count as well as Hibernate's. The products are not stock-tracked; each tracked line
+ * costs one conditional decrement of its own.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:checkout-statements-test;DB_CLOSE_DELAY=-1",
+        "spring.h2.console.enabled=false"})
+class CheckoutStatementCountTest {
+
+    @TestConfiguration
+    static class Recording {
+        @Bean
+        static BeanPostProcessor recordStatements() {
+            return new BeanPostProcessor() {
+                @Override
+                public Object postProcessAfterInitialization(Object bean, String beanName) {
+                    return bean instanceof DataSource dataSource ? new RecordingDataSource(dataSource) : bean;
+                }
+            };
+        }
+    }
+
+    // What checkout costs today; raise it deliberately, not because a new per-line query slipped in
+    private static final int MAX_STATEMENTS = 10;
+
+    // SQL prepared on the current thread while a checkout is recorded
+    private static final ThreadLocal<List<String>> RECORDED = new ThreadLocal<>();
+
+    // Unwrapping still reaches the Hikari pool, so the pool metrics keep working
+    static final class RecordingDataSource extends DelegatingDataSource {
+        RecordingDataSource(DataSource target) {
+            super(target);
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            Connection connection = super.getConnection();
+            return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{Connection.class},
+                    (proxy, method, args) -> {
+                        List<String> recorded = RECORDED.get();
+                        if (recorded != null && method.getName().startsWith("prepare")) {
+                            recorded.add((String) args[0]);
+                        }
+                        try {
+                            return method.invoke(connection, args);
+                        } catch (InvocationTargetException e) {
+                            throw e.getCause();
+                        }
+                    });
+        }
+    }
+
+    @Autowired
+    private CheckoutService checkoutService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void checkoutRunsTheSameStatementsForAnyCartSize() {
+        List<Long> products = seedProducts(120);
+
+        List<String> small = checkoutStatements(products, 1);
+        List<String> medium = checkoutStatements(products, 10);
+        List<String> large = checkoutStatements(products, 120);
+
+        assertThat(withoutIdAllocation(small)).hasSizeLessThanOrEqualTo(MAX_STATEMENTS);
+        assertThat(withoutIdAllocation(medium)).containsExactlyElementsOf(withoutIdAllocation(small));
+        assertThat(withoutIdAllocation(large)).containsExactlyElementsOf(withoutIdAllocation(small));
+        // All 120 order items go through one prepared INSERT, executed as JDBC batches
+        assertThat(large).filteredOn(sql -> sql.startsWith("insert into order_item")).hasSize(1);
+        // Pooled sequences hand out 50 ids per call: at most one call per 50 items plus the order and outbox ids
+        assertThat(large.size() - withoutIdAllocation(large).size()).isLessThanOrEqualTo(2 + (120 + 49) / 50);
+    }
+
+    private List<Long> seedProducts(int count) {
+        List<Object[]> rows = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            rows.add(new Object[]{"Statement Count " + i, BigDecimal.valueOf(100 + i, 2)});
+        }
+        jdbcTemplate.batchUpdate("insert into product (name, description, price) values (?, '', ?)", rows);
+        return jdbcTemplate.queryForList(
+                "select id from product where name like 'Statement Count %' order by id", Long.class);
+    }
+
+    // Fills a new user's cart with the first "lines" products and returns the SQL its checkout prepared
+    private List<String> checkoutStatements(List<Long> products, int lines) {
+        String username = "statements-" + lines;
+        List<Object[]> rows = new ArrayList<>(lines);
+        for (int i = 0; i < lines; i++) {
+            rows.add(new Object[]{username, products.get(i)});
+        }
+        jdbcTemplate.batchUpdate("""
+                insert into cart_item (username, product_id, quantity, name_snapshot, price_snapshot, product_version,
+                    last_modified, version)
+                select ?, id, 1, name, price, version, current_timestamp, 0 from product where id = ?
+                """, rows);
+
+        List<String> recorded = new ArrayList<>();
+        RECORDED.set(recorded);
+        try {
+            checkoutService.checkout(username);
+        } finally {
+            RECORDED.remove();
+        }
+        // An IN list has one parameter per line but is still one statement
+        return recorded.stream().map(sql -> sql.replaceAll("\\s+", " ").replaceAll("\\(\\?(,\\?)*\\)", "(?)")).toList();
+    }
+
+    private static List<String> withoutIdAllocation(List<String> statements) {
+        return statements.stream().filter(sql -> !sql.startsWith("select next value for")).toList();
+    }
+}
@@ -0,0 +1,109 @@
+package com.shop.product;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * CSV imports in chunks of two rows: invalid rows are reported and skipped without stopping the import, and an
+ * import cut off by a failing stream resumes after its last committed chunk without inserting anything twice.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:product-importer-test;DB_CLOSE_DELAY=-1",
+        "spring.h2.console.enabled=false",
+        "shop.catalog-import.chunk-size=2"})
+class ProductImporterTest {
+
+    @Autowired
+    private ProductImporter importer;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void invalidRowsAreRejectedAndReported() throws IOException {
+        String csv = """
+                price,name,description
+                12.50,Reject Test Mug,"Stoneware, 300 ml"
+                lots,Reject Test Kettle,
+                4.00,,Nameless
+                -1,Reject Test Sieve,
+                7.25,Reject Test Filter,
+                """;
+
+        ProductImportReport report = importer.importProducts(stream(csv), ProductImporter.Format.CSV, "rejects");
+
+        assertThat(report.rowsRead()).isEqualTo(5);
+        assertThat(report.accepted()).isEqualTo(2);
+        assertThat(report.rejected()).isEqualTo(3);
+        assertThat(report.rejectedRows()).extracting(ProductImportReport.RejectedRow::row).containsExactly(2L, 3L, 4L);
+        assertThat(report.rejectedRows().get(0).reason()).isEqualTo("Price is not a number: lots");
+        assertThat(jdbcTemplate.queryForList(
+                "select name from product where name like 'Reject Test %' order by name", String.class))
+                .containsExactly("Reject Test Filter", "Reject Test Mug");
+        assertThat(jdbcTemplate.queryForObject(
+                "select description from product where name = 'Reject Test Mug'", String.class))
+                .isEqualTo("Stoneware, 300 ml");
+    }
+
+    @Test
+    void interruptedImportResumesAfterTheLastCommittedChunk() throws IOException {
+        int rows = 2000;
+        StringBuilder csv = new StringBuilder("name,price\n");
+        for (int i = 1; i <= rows; i++) {
+            csv.append("Resume Test ").append(i).append(',').append(i).append(".00\n");
+        }
+        byte[] bytes = csv.toString().getBytes(StandardCharsets.UTF_8);
+
+        // The stream breaks half way, past what the readers buffer, so some chunks have committed by then
+        assertThatThrownBy(() -> importer.importProducts(failingAfter(bytes, bytes.length / 2), ProductImporter.Format.CSV, "resume"))
+                .isInstanceOf(IOException.class);
+        int committed = resumeTestProducts();
+        assertThat(committed).isPositive().isLessThan(rows);
+
+        ProductImportReport resumed = importer.importProducts(new ByteArrayInputStream(bytes), ProductImporter.Format.CSV, "resume");
+        assertThat(resumed.resumedAfterRow()).isEqualTo(committed);
+        assertThat(resumed.rowsRead()).isEqualTo(rows - committed);
+        assertThat(resumed.totalAccepted()).isEqualTo(rows);
+        assertThat(resumeTestProducts()).isEqualTo(rows);
+        assertThat(jdbcTemplate.queryForObject(
+                "select count(distinct name) from product where name like 'Resume Test %'", Integer.class)).isEqualTo(rows);
+
+        // A completed import reads nothing when it is run again
+        ProductImportReport again = importer.importProducts(new ByteArrayInputStream(bytes), ProductImporter.Format.CSV, "resume");
+        assertThat(again.rowsRead()).isZero();
+        assertThat(resumeTestProducts()).isEqualTo(rows);
+    }
+
+    private int resumeTestProducts() {
+        return jdbcTemplate.queryForObject("select count(*) from product where name like 'Resume Test %'", Integer.class);
+    }
+
+    private static InputStream stream(String text) {
+        return new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    // Serves the first limit bytes, then fails like a dropped upload
+    private static InputStream failingAfter(byte[] bytes, int limit) {
+        return new FilterInputStream(new ByteArrayInputStream(bytes, 0, limit)) {
+            @Override
+            public int read(byte[] buffer, int offset, int length) throws IOException {
+                int read = super.read(buffer, offset, length);
+                if (read < 0) {
+                    throw new IOException("Connection reset");
+                }
+                return read;
+            }
+        };
+    }
+}
@@ -0,0 +1,65 @@
+package com.shop.product;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * How query terms expand: the last term also as a prefix, unknown long terms to their one-edit neighbours, and
+ * neither beyond MAX_EXPANSIONS variants; words after MAX_QUERY_TERMS are dropped along with the prefix match.
+ */
+class ProductSearchIndexTest {
+
+    private final ProductSearchIndex index = new ProductSearchIndex();
+
+    @Test
+    void onlyTheLastTermMatchesAsAPrefix() {
+        index.put(1, "Espresso Machine", "Dual boiler");
+        index.put(2, "Milk Jug", "For espresso drinks");
+
+        assertThat(index.search("espresso mach", 0, 10).hits())
+                .extracting(ProductSearchIndex.Hit::productId).containsExactly(1L);
+        assertThat(index.search("mach espresso", 0, 10).totalHits()).isZero();
+        // Ranked by name weight: the name match comes first
+        assertThat(index.search("espr", 0, 10).hits())
+                .extracting(ProductSearchIndex.Hit::productId).containsExactly(1L, 2L);
+    }
+
+    @Test
+    void unknownTermsMatchTheirOneEditNeighbours() {
+        index.put(1, "Espresso Machine", null);
+
+        assertThat(index.search("expresso", 0, 10).totalHits()).isEqualTo(1);
+        assertThat(index.search("machien", 0, 10).totalHits()).isEqualTo(1);
+        // Below MIN_TYPO_LENGTH a term must be exact (or the prefix of the last one)
+        assertThat(index.search("xspresso mch", 0, 10).totalHits()).isZero();
+    }
+
+    @Test
+    void prefixExpansionStopsAtMaxExpansions() {
+        int products = ProductSearchIndex.MAX_EXPANSIONS + 36;
+        for (int i = 0; i < products; i++) {
+            index.put(i, "Mug model%03d".formatted(i), null);
+        }
+
+        // Each product has its own "model..." term; only the first MAX_EXPANSIONS of them are searched
+        ProductSearchIndex.Result result = index.search("model", 0, products);
+        assertThat(result.totalHits()).isEqualTo(ProductSearchIndex.MAX_EXPANSIONS);
+        assertThat(result.hits()).extracting(ProductSearchIndex.Hit::productId)
+                .allMatch(id -> id < ProductSearchIndex.MAX_EXPANSIONS);
+        // An exact term counts as one of the variants
+        index.put(products, "Mug model", null);
+        assertThat(index.search("model", 0, products).totalHits()).isEqualTo(ProductSearchIndex.MAX_EXPANSIONS);
+    }
+
+    @Test
+    void wordsAfterMaxQueryTermsAreIgnored() {
+        index.put(1, "one two three four five six seven eight", null);
+        assertThat(ProductSearchIndex.MAX_QUERY_TERMS).isEqualTo(8);
+
+        assertThat(index.search("one two three four five six seven eig", 0, 10).totalHits()).isEqualTo(1);
+        assertThat(index.search("one two three four five six seven eight unknown", 0, 10).totalHits()).isEqualTo(1);
+        // Cut to eight terms, the query no longer ends in the word being typed: "eig" must match exactly
+        assertThat(index.search("one two three four five six seven eig nine", 0, 10).totalHits()).isZero();
+    }
+}
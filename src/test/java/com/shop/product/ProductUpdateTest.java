@@ -0,0 +1,111 @@
+package com.shop.product;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * PUT /api/products/{id} must not leave stale copies behind: neither the cached product the carts price from
+ * nor the cached catalog page that lists it. No replica lag is configured, so a page rendered right after the
+ * write is cached again.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:product-update-test;DB_CLOSE_DELAY=-1",
+        "spring.h2.console.enabled=false",
+        "shop.rate-limit.enabled=false",
+        "shop.datasource.replica-max-lag=0s"})
+@AutoConfigureMockMvc
+class ProductUpdateTest {
+
+    private static final String UPDATE = """
+            {"name": "Updated Grinder", "price": 149.50, "description": "Conical burrs"}
+            """;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ProductCatalogCache productCatalogCache;
+
+    @Autowired
+    private CatalogResponseCache catalogResponseCache;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private Long productId;
+
+    @BeforeEach
+    void setUp() {
+        productId = jdbcTemplate.queryForObject("select min(id) from product", Long.class);
+    }
+
+    @Test
+    void updateInvalidatesTheCachedProductAndCatalogPages() throws Exception {
+        CatalogProduct before = productCatalogCache.get(productId).orElseThrow();
+        String etagBefore = firstPage().getResponse().getHeader(HttpHeaders.ETAG);
+        long hits = catalogResponseCache.stats().hits();
+        firstPage();
+        assertThat(catalogResponseCache.stats().hits()).isEqualTo(hits + 1);
+
+        mockMvc.perform(as("admin", put("/api/products/{id}", productId).contentType(MediaType.APPLICATION_JSON).content(UPDATE)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.name").value("Updated Grinder"));
+
+        CatalogProduct after = productCatalogCache.get(productId).orElseThrow();
+        assertThat(after.name()).isEqualTo("Updated Grinder");
+        assertThat(after.price()).isEqualByComparingTo(new BigDecimal("149.50"));
+        assertThat(after.version()).isGreaterThan(before.version());
+
+        long misses = catalogResponseCache.stats().misses();
+        MvcResult page = firstPage();
+        assertThat(catalogResponseCache.stats().misses()).isEqualTo(misses + 1);
+        assertThat(page.getResponse().getHeader(HttpHeaders.ETAG)).isNotEqualTo(etagBefore);
+        assertThat(page.getResponse().getContentAsString(StandardCharsets.UTF_8)).contains("Updated Grinder");
+        // The new page is cached in turn
+        hits = catalogResponseCache.stats().hits();
+        firstPage();
+        assertThat(catalogResponseCache.stats().hits()).isEqualTo(hits + 1);
+    }
+
+    @Test
+    void updateOfAnUnknownOrInvalidProductIsRefused() throws Exception {
+        mockMvc.perform(as("admin", put("/api/products/{id}", Long.MAX_VALUE).contentType(MediaType.APPLICATION_JSON).content(UPDATE)))
+                .andExpect(status().isNotFound());
+        mockMvc.perform(as("admin", put("/api/products/{id}", productId).contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"name\": \"\", \"price\": 10.00}")))
+                .andExpect(status().isBadRequest());
+        assertThat(productCatalogCache.get(productId).orElseThrow().name()).isNotBlank();
+    }
+
+    private MvcResult firstPage() throws Exception {
+        return mockMvc.perform(get("/api/products").param("limit", "20"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items[0].id").value(productId))
+                .andReturn();
+    }
+
+    private static MockHttpServletRequestBuilder as(String username, MockHttpServletRequestBuilder request) {
+        String credentials = username + ":password";
+        return request.header(HttpHeaders.AUTHORIZATION,
+                "Basic " + Base64.getEncoder().encodeToString(credentials.getBytes(StandardCharsets.UTF_8)));
+    }
+}
@@ -0,0 +1,78 @@
+package com.shop.ratelimit;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * The limits apply to the path Spring MVC routes on: an encoded spelling of a limited path reaches the same
+ * controller, so it has to draw from the same buckets. Each user gets one token that does not come back during the
+ * test.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:rate-limit-filter-test;DB_CLOSE_DELAY=-1",
+        "spring.h2.console.enabled=false",
+        "shop.rate-limit.endpoints.cart-items.per-user.capacity=1",
+        "shop.rate-limit.endpoints.cart-items.per-user.refill-per-second=0.001",
+        "shop.rate-limit.endpoints.checkout.per-user.capacity=1",
+        "shop.rate-limit.endpoints.checkout.per-user.refill-per-second=0.001"})
+@AutoConfigureMockMvc
+class RateLimitFilterTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private Long productId;
+
+    @BeforeEach
+    void setUp() {
+        productId = jdbcTemplate.queryForObject("select min(id) from product", Long.class);
+    }
+
+    @Test
+    void encodedCartPathIsLimited() throws Exception {
+        String item = "{\"productId\": " + productId + ", \"quantity\": 1}";
+        mockMvc.perform(as("alice", post("/api/cart/items").contentType(MediaType.APPLICATION_JSON).content(item)))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(as("alice", post(URI.create("/api/cart/%69tems"))
+                        .contentType(MediaType.APPLICATION_JSON).content(item)))
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().exists(HttpHeaders.RETRY_AFTER));
+    }
+
+    @Test
+    void encodedCheckoutPathIsLimited() throws Exception {
+        String item = "{\"productId\": " + productId + ", \"quantity\": 1}";
+        mockMvc.perform(as("bob", post("/api/cart/items").contentType(MediaType.APPLICATION_JSON).content(item)))
+                .andExpect(status().isOk());
+        mockMvc.perform(as("bob", post("/api/orders/checkout"))).andExpect(status().isOk());
+
+        mockMvc.perform(as("bob", post(URI.create("/api/orders/%63heckout"))))
+                .andExpect(status().isTooManyRequests());
+    }
+
+    private static MockHttpServletRequestBuilder as(String username, MockHttpServletRequestBuilder request) {
+        String credentials = username + ":password";
+        return request.header(HttpHeaders.AUTHORIZATION,
+                "Basic " + Base64.getEncoder().encodeToString(credentials.getBytes(StandardCharsets.UTF_8)));
+    }
+}
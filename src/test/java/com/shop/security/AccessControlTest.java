@@ -0,0 +1,189 @@
+package com.shop.security;
+
+import com.jayway.jsonpath.JsonPath;
+import com.shop.analytics.SalesAnalyticsService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.provisioning.UserDetailsManager;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Base64;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Who may call what: the catalog is public to read, the back-office endpoints need the ADMIN role that only the
+ * seeded admin user has, and a shopper like bob gets 403 there. Bearer tokens are only issued for a password,
+ * and a password is only changed by someone who knows the old one.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:access-control-test;DB_CLOSE_DELAY=-1",
+        "spring.h2.console.enabled=false",
+        "shop.rate-limit.enabled=false"})
+@AutoConfigureMockMvc
+class AccessControlTest {
+
+    private static final String PRODUCT_UPDATE = """
+            {"name": "French Press", "price": 219.00, "description": "1 litre"}
+            """;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private SalesAnalyticsService salesAnalytics;
+
+    @Autowired
+    private UserDetailsManager users;
+
+    @Autowired
+    private PasswordEncoder passwordEncoder;
+
+    private Long productId;
+
+    @BeforeEach
+    void setUp() {
+        productId = jdbcTemplate.queryForObject("select min(id) from product", Long.class);
+    }
+
+    @Test
+    void catalogIsPublicToRead() throws Exception {
+        mockMvc.perform(get("/api/products")).andExpect(status().isOk());
+        mockMvc.perform(get("/api/products/search").param("q", "coffee")).andExpect(status().isOk());
+    }
+
+    @Test
+    void onlyAdminsChangeProducts() throws Exception {
+        mockMvc.perform(json(put("/api/products/{id}", productId), PRODUCT_UPDATE))
+                .andExpect(status().isUnauthorized());
+        mockMvc.perform(as("bob", json(put("/api/products/{id}", productId), PRODUCT_UPDATE)))
+                .andExpect(status().isForbidden());
+        mockMvc.perform(as("admin", json(put("/api/products/{id}", productId), PRODUCT_UPDATE)))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void onlyAdminsImportProducts() throws Exception {
+        String csv = "name,price\nAccess Control Grinder,89.90\n";
+        mockMvc.perform(as("bob", post("/api/products/import").contentType("text/csv").content(csv)))
+                .andExpect(status().isForbidden());
+        assertThat(imported("Access Control Grinder")).isZero();
+
+        mockMvc.perform(as("admin", post("/api/products/import").contentType("text/csv").content(csv)))
+                .andExpect(status().isOk());
+        assertThat(imported("Access Control Grinder")).isEqualTo(1);
+    }
+
+    @Test
+    void onlyAdminsSetStock() throws Exception {
+        mockMvc.perform(as("bob", put("/api/inventory/{id}", productId).param("quantity", "1000")))
+                .andExpect(status().isForbidden());
+        mockMvc.perform(as("bob", get("/api/inventory/{id}", productId)))
+                .andExpect(status().is2xxSuccessful());
+
+        mockMvc.perform(as("admin", put("/api/inventory/{id}", productId).param("quantity", "7")))
+                .andExpect(status().isOk());
+        mockMvc.perform(as("bob", get("/api/inventory/{id}", productId)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.available").value(7));
+        mockMvc.perform(as("admin", put("/api/inventory/{id}", Long.MAX_VALUE).param("quantity", "7")))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void onlyAdminsReadSalesReports() throws Exception {
+        for (String report : new String[]{"/api/analytics/top-sellers", "/api/analytics/sales",
+                "/api/analytics/products/" + productId}) {
+            mockMvc.perform(as("bob", get(report))).andExpect(status().isForbidden());
+        }
+
+        // Reports answer 503 until the startup rebuild is done
+        long deadline = System.nanoTime() + Duration.ofSeconds(30).toNanos();
+        while (!salesAnalytics.stats().ready()) {
+            assertThat(System.nanoTime()).as("analytics rebuild finished").isLessThan(deadline);
+            Thread.sleep(50);
+        }
+        mockMvc.perform(as("admin", get("/api/analytics/top-sellers")))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$").isArray());
+        mockMvc.perform(as("admin", get("/api/analytics/sales").param("last", "7")))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(7));
+        mockMvc.perform(as("admin", get("/api/analytics/products/{id}", productId).param("days", "7")))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.productId").value(productId))
+                .andExpect(jsonPath("$.days.length()").value(7));
+    }
+
+    @Test
+    void tokensAreIssuedForPasswordsOnly() throws Exception {
+        String body = mockMvc.perform(as("bob", post("/api/auth/token")))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        String bearer = "Bearer " + JsonPath.read(body, "$.token");
+
+        // Renewing with the token itself would keep a stolen one alive forever
+        mockMvc.perform(post("/api/auth/token").header(HttpHeaders.AUTHORIZATION, bearer))
+                .andExpect(status().isUnauthorized());
+        mockMvc.perform(get("/api/cart").header(HttpHeaders.AUTHORIZATION, bearer))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void passwordChangesNeedTheOldPassword() throws Exception {
+        users.createUser(User.withUsername("carol").password(passwordEncoder.encode("password")).roles("USER").build());
+        // Signed in, as with a bearer token, without having given the password
+        SecurityContextHolder.getContext().setAuthentication(
+                UsernamePasswordAuthenticationToken.authenticated("carol", null, users.loadUserByUsername("carol").getAuthorities()));
+        try {
+            assertThatThrownBy(() -> users.changePassword("guessed", passwordEncoder.encode("stolen")))
+                    .isInstanceOf(BadCredentialsException.class);
+            users.changePassword("password", passwordEncoder.encode("changed"));
+        } finally {
+            SecurityContextHolder.clearContext();
+        }
+
+        mockMvc.perform(as("carol", get("/api/cart"))).andExpect(status().isUnauthorized());
+        String credentials = "carol:changed";
+        mockMvc.perform(get("/api/cart").header(HttpHeaders.AUTHORIZATION,
+                        "Basic " + Base64.getEncoder().encodeToString(credentials.getBytes(StandardCharsets.UTF_8))))
+                .andExpect(status().isOk());
+    }
+
+    private int imported(String name) {
+        return jdbcTemplate.queryForObject("select count(*) from product where name = ?", Integer.class, name);
+    }
+
+    private static MockHttpServletRequestBuilder json(MockHttpServletRequestBuilder request, String body) {
+        return request.contentType(MediaType.APPLICATION_JSON).content(body);
+    }
+
+    private static MockHttpServletRequestBuilder as(String username, MockHttpServletRequestBuilder request) {
+        String credentials = username + ":password";
+        return request.header(HttpHeaders.AUTHORIZATION,
+                "Basic " + Base64.getEncoder().encodeToString(credentials.getBytes(StandardCharsets.UTF_8)));
+    }
+}